@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) www.bugull.com
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bugull.mongo.benchmark;
+
+import com.bugull.mongo.cache.FieldAccessorCache;
+import com.bugull.mongo.cache.FieldsCache;
+import com.bugull.mongo.entity.User;
+import com.bugull.mongo.mapper.FieldAccessor;
+import java.lang.reflect.Field;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * FieldAccessor used by EntityPlan, compared with plain reflection.
+ * 
+ * @author Frank Wen(xbwen@hotmail.com)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AccessorBenchmark {
+    
+    private User user;
+    
+    private Field ageField;
+    private Field nameField;
+    
+    private FieldAccessor ageAccessor;
+    private FieldAccessor nameAccessor;
+    
+    private int value;
+    
+    @Setup
+    public void setup(){
+        user = new User();
+        ageField = FieldsCache.getInstance().getField(User.class, "age");
+        nameField = FieldsCache.getInstance().getField(User.class, "username");
+        ageAccessor = FieldAccessorCache.getInstance().get(ageField);
+        nameAccessor = FieldAccessorCache.getInstance().get(nameField);
+    }
+    
+    @Benchmark
+    public int accessorInt(){
+        ageAccessor.setInt(user, ++value);
+        return ageAccessor.getInt(user);
+    }
+    
+    @Benchmark
+    public int reflectInt() throws IllegalAccessException {
+        ageField.setInt(user, ++value);
+        return ageField.getInt(user);
+    }
+    
+    @Benchmark
+    public Object reflectBoxedInt() throws IllegalAccessException {
+        ageField.set(user, ++value);
+        return ageField.get(user);
+    }
+    
+    @Benchmark
+    public Object accessorObject(){
+        nameAccessor.set(user, "frank");
+        return nameAccessor.get(user);
+    }
+    
+    @Benchmark
+    public Object reflectObject() throws IllegalAccessException {
+        nameField.set(user, "frank");
+        return nameField.get(user);
+    }
+    
+}
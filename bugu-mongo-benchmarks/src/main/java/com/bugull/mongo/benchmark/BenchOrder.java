@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) www.bugull.com
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bugull.mongo.benchmark;
+
+import com.bugull.mongo.SimpleEntity;
+import com.bugull.mongo.annotations.Entity;
+import com.bugull.mongo.annotations.RefList;
+import java.util.List;
+
+/**
+ * The entity of query and cascade benchmark. No @EnsureIndex, so its dao can be created without mongoDB server.
+ * 
+ * @author Frank Wen(xbwen@hotmail.com)
+ */
+@Entity(name = "bench_order")
+public class BenchOrder extends SimpleEntity {
+    
+    private String customer;
+    private int status;
+    private double money;
+    @RefList(cascade="R")
+    private List<BenchItem> itemList;
+
+    public String getCustomer() {
+        return customer;
+    }
+
+    public void setCustomer(String customer) {
+        this.customer = customer;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public void setStatus(int status) {
+        this.status = status;
+    }
+
+    public double getMoney() {
+        return money;
+    }
+
+    public void setMoney(double money) {
+        this.money = money;
+    }
+
+    public List<BenchItem> getItemList() {
+        return itemList;
+    }
+
+    public void setItemList(List<BenchItem> itemList) {
+        this.itemList = itemList;
+    }
+    
+}
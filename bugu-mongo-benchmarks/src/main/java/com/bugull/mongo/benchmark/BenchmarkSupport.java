@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) www.bugull.com
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bugull.mongo.benchmark;
+
+import com.bugull.mongo.BuguConnection;
+import com.bugull.mongo.BuguFramework;
+import com.mongodb.DBCollection;
+import com.mongodb.DBObject;
+import com.mongodb.DefaultDBDecoder;
+import com.mongodb.DefaultDBEncoder;
+import org.bson.io.BasicOutputBuffer;
+
+/**
+ * Things shared by the benchmarks.
+ * 
+ * @author Frank Wen(xbwen@hotmail.com)
+ */
+public final class BenchmarkSupport {
+    
+    /**
+     * Create the default connection, so that dao can be created. 
+     * The driver connects lazily, and the benchmarks never send a command, so no mongoDB server is needed.
+     */
+    public static synchronized void connect(){
+        BuguConnection conn = BuguFramework.getInstance().createConnection();
+        if(conn.getDB() == null){
+            conn.connect("localhost", 27017, "bugu_benchmark");
+        }
+    }
+    
+    /**
+     * Encode to BSON and decode back, so the values are of the types read from mongoDB, e.g. arrays become lists.
+     * @param dbo
+     * @return 
+     */
+    public static DBObject roundTrip(DBObject dbo){
+        BasicOutputBuffer buffer = new BasicOutputBuffer();
+        new DefaultDBEncoder().writeObject(buffer, dbo);
+        return new DefaultDBDecoder().decode(buffer.toByteArray(), (DBCollection)null);
+    }
+    
+}
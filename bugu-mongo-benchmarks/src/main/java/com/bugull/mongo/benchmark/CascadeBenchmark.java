@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) www.bugull.com
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bugull.mongo.benchmark;
+
+import com.bugull.mongo.BuguSession;
+import com.bugull.mongo.cache.DaoCache;
+import com.bugull.mongo.utils.MapperUtil;
+import com.mongodb.DBObject;
+import java.util.ArrayList;
+import java.util.List;
+import org.bson.types.ObjectId;
+import org.openjdk.jmh.annotations.TearDown;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Decoding the cascade @RefList field by RefListConverter. 
+ * The referenced entities are kept in a BuguSession, which stands in for mongoDB, so no query is sent.
+ * 
+ * @author Frank Wen(xbwen@hotmail.com)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CascadeBenchmark {
+    
+    private static final int ITEMS = 20;
+    
+    private DBObject orderDbo;
+    
+    private BuguSession session;
+    
+    @Setup
+    public void setup(){
+        BenchmarkSupport.connect();
+        String collectionName = DaoCache.getInstance().get(BenchItem.class).getCollection().getFullName();
+        //the session is bound to the benchmark thread
+        session = BuguSession.open();
+        List<BenchItem> itemList = new ArrayList<>();
+        for(int i=0; i<ITEMS; i++){
+            BenchItem item = new BenchItem();
+            item.setId(new ObjectId().toString());
+            item.setName("item" + i);
+            item.setPrice(i);
+            itemList.add(item);
+            session.put(collectionName, item);
+        }
+        BenchOrder order = new BenchOrder();
+        order.setId(new ObjectId().toString());
+        order.setCustomer("frank");
+        order.setMoney(100.0);
+        order.setItemList(itemList);
+        orderDbo = BenchmarkSupport.roundTrip(MapperUtil.toDBObject(order));
+    }
+    
+    @TearDown
+    public void tearDown(){
+        session.close();
+    }
+    
+    @Benchmark
+    public BenchOrder decodeCascade(){
+        return MapperUtil.fromDBObject(BenchOrder.class, orderDbo);
+    }
+    
+    @Benchmark
+    public BenchOrder decodeWithoutCascade(){
+        return MapperUtil.fromDBObject(BenchOrder.class, orderDbo, true);
+    }
+    
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) www.bugull.com
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bugull.mongo.benchmark;
+
+import com.bugull.mongo.cache.FieldsCache;
+import com.bugull.mongo.entity.User;
+import java.lang.reflect.Field;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Looking up fields by FieldsCache, which is done for every key of a query condition.
+ * 
+ * @author Frank Wen(xbwen@hotmail.com)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FieldsCacheBenchmark {
+    
+    @Setup
+    public void setup(){
+        //warm the cache, only the lookup is measured
+        FieldsCache.getInstance().get(User.class);
+    }
+    
+    @Benchmark
+    public Field getField(){
+        return FieldsCache.getInstance().getField(User.class, "username");
+    }
+    
+    @Benchmark
+    public Field getEmbedField(){
+        return FieldsCache.getInstance().getField(User.class, "contact");
+    }
+    
+    @Benchmark
+    public Field getIdField(){
+        return FieldsCache.getInstance().getIdField(User.class);
+    }
+    
+    @Benchmark
+    public Field[] getFields(){
+        return FieldsCache.getInstance().get(User.class);
+    }
+    
+}
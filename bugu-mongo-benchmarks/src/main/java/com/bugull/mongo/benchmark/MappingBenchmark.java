@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) www.bugull.com
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bugull.mongo.benchmark;
+
+import com.bugull.mongo.entity.Address;
+import com.bugull.mongo.entity.ArrayMock;
+import com.bugull.mongo.entity.Contact;
+import com.bugull.mongo.entity.ListMock;
+import com.bugull.mongo.entity.User;
+import com.bugull.mongo.utils.MapperUtil;
+import com.mongodb.DBObject;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.bson.types.ObjectId;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * MapperUtil.fromDBObject() and toDBObject() over the test entities: 
+ * flat fields, @Embed, @EmbedList and map in User, arrays in ArrayMock, collections in ListMock.
+ * 
+ * @author Frank Wen(xbwen@hotmail.com)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MappingBenchmark {
+    
+    private User flatUser;
+    private DBObject flatUserDbo;
+    
+    private User user;
+    private DBObject userDbo;
+    
+    private ArrayMock arrayMock;
+    private DBObject arrayMockDbo;
+    
+    private ListMock listMock;
+    private DBObject listMockDbo;
+    
+    @Setup
+    public void setup(){
+        flatUser = new User();
+        flatUser.setId(new ObjectId().toString());
+        flatUser.setUsername("frank");
+        flatUser.setAge(30);
+        flatUser.setValid(true);
+        flatUser.setRegisterTime(new Date());
+        flatUserDbo = BenchmarkSupport.roundTrip(MapperUtil.toDBObject(flatUser));
+        
+        user = new User();
+        user.setId(new ObjectId().toString());
+        user.setUsername("frank");
+        user.setAge(30);
+        user.setValid(true);
+        user.setRegisterTime(new Date());
+        Contact contact = new Contact();
+        contact.setEmail("frank@bugull.com");
+        contact.setPhone("13800000000");
+        user.setContact(contact);
+        List<Address> addressList = new ArrayList<>();
+        for(int i=0; i<5; i++){
+            Address address = new Address();
+            address.setProvince("Zhejiang");
+            address.setCity("Hangzhou");
+            address.setDetailAddress("Road " + i);
+            addressList.add(address);
+        }
+        user.setAddressList(addressList);
+        Map<String, List<Integer>> permissions = new HashMap<>();
+        permissions.put("order", Arrays.asList(1, 2, 3));
+        permissions.put("user", Arrays.asList(1, 2));
+        user.setPermissions(permissions);
+        user.setScores(new float[]{90.5f, 85f, 77.5f, 60f});
+        userDbo = BenchmarkSupport.roundTrip(MapperUtil.toDBObject(user));
+        
+        arrayMock = new ArrayMock();
+        arrayMock.setId(new ObjectId().toString());
+        arrayMock.setBinary(new byte[256]);
+        arrayMock.setOne(new int[]{1, 2, 3, 4, 5, 6, 7, 8});
+        arrayMock.setTwo(new double[][]{{1.0, 2.0}, {3.0, 4.0}, {5.0, 6.0}});
+        arrayMock.setThree(new String[][][]{{{"a", "b"}, {"c"}}, {{"d", "e", "f"}}});
+        arrayMockDbo = BenchmarkSupport.roundTrip(MapperUtil.toDBObject(arrayMock));
+        
+        listMock = new ListMock();
+        listMock.setId(new ObjectId().toString());
+        listMock.setSet(new HashSet<>(Arrays.asList(1, 2, 3, 4)));
+        List<Boolean[]> list = new ArrayList<>();
+        list.add(new Boolean[]{true, false});
+        list.add(new Boolean[]{false});
+        listMock.setList(list);
+        List<List<String>> listlist = new ArrayList<>();
+        listlist.add(Arrays.asList("a", "b"));
+        listlist.add(Arrays.asList("c"));
+        listMock.setListlist(listlist);
+        listMock.setCollection(Arrays.asList("x", "y", "z"));
+        listMockDbo = BenchmarkSupport.roundTrip(MapperUtil.toDBObject(listMock));
+    }
+    
+    @Benchmark
+    public User decodeFlat(){
+        return MapperUtil.fromDBObject(User.class, flatUserDbo);
+    }
+    
+    @Benchmark
+    public DBObject encodeFlat(){
+        return MapperUtil.toDBObject(flatUser);
+    }
+    
+    @Benchmark
+    public User decodeEmbedAndMap(){
+        return MapperUtil.fromDBObject(User.class, userDbo);
+    }
+    
+    @Benchmark
+    public DBObject encodeEmbedAndMap(){
+        return MapperUtil.toDBObject(user);
+    }
+    
+    @Benchmark
+    public ArrayMock decodeArray(){
+        return MapperUtil.fromDBObject(ArrayMock.class, arrayMockDbo);
+    }
+    
+    @Benchmark
+    public DBObject encodeArray(){
+        return MapperUtil.toDBObject(arrayMock);
+    }
+    
+    @Benchmark
+    public ListMock decodeCollection(){
+        return MapperUtil.fromDBObject(ListMock.class, listMockDbo);
+    }
+    
+    @Benchmark
+    public DBObject encodeCollection(){
+        return MapperUtil.toDBObject(listMock);
+    }
+    
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) www.bugull.com
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bugull.mongo.benchmark;
+
+import com.bugull.mongo.BuguDao;
+import com.bugull.mongo.BuguQuery;
+import com.mongodb.DBObject;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Building the condition of BuguQuery. The query is not executed.
+ * 
+ * @author Frank Wen(xbwen@hotmail.com)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class QueryBenchmark {
+    
+    private BuguDao<BenchOrder> dao;
+    
+    @Setup
+    public void setup(){
+        BenchmarkSupport.connect();
+        dao = new BuguDao<>(BenchOrder.class);
+    }
+    
+    @Benchmark
+    public DBObject simple(){
+        return dao.query().is("customer", "frank").getCondition();
+    }
+    
+    @Benchmark
+    public DBObject compound(){
+        return dao.query().is("customer", "frank").greaterThan("money", 100.0).lessThan("money", 1000.0)
+                .in("status", 1, 2, 3).notEquals("customer", "tom").getCondition();
+    }
+    
+    @Benchmark
+    public DBObject or(){
+        BuguQuery<BenchOrder> q1 = dao.query().is("status", 1);
+        BuguQuery<BenchOrder> q2 = dao.query().is("status", 2).greaterThan("money", 100.0);
+        return dao.query().is("customer", "frank").or(q1, q2).getCondition();
+    }
+    
+}
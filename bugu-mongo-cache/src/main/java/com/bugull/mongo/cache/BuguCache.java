@@ -15,10 +15,15 @@
  */
 package com.bugull.mongo.cache;
 
+import com.bugull.mongo.cache.transport.CacheTransport;
+import com.bugull.mongo.cache.transport.ZooKeeperTransport;
 import com.bugull.mongo.utils.StringUtil;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
 import org.apache.curator.framework.CuratorFramework;
 import org.apache.curator.framework.CuratorFrameworkFactory;
 import org.apache.curator.retry.ExponentialBackoffRetry;
@@ -38,6 +43,11 @@ public class BuguCache {
     
     private final Map<String, List> data = new ConcurrentHashMap<>();
     
+    private ScheduledExecutorService scheduler;
+    
+    private CacheTransport transport;
+    private boolean zkTransport;  //the transport is created by init()
+    
     private BuguCache(){
         
     }
@@ -62,9 +72,26 @@ public class BuguCache {
         } catch (InterruptedException ex) {
             throw new BuguCacheException(ex.getMessage());
         }
+        if(transport == null){
+            transport = new ZooKeeperTransport(zkClient);
+            zkTransport = true;
+        }
     }
     
     public void destroy(){
+        synchronized(this){
+            if(scheduler != null){
+                scheduler.shutdownNow();
+                scheduler = null;
+            }
+        }
+        if(transport != null){
+            transport.close();
+            if(zkTransport){
+                transport = null;
+                zkTransport = false;
+            }
+        }
         if(StringUtil.isEmpty(zkConnectString)){
             return;
         }
@@ -81,6 +108,42 @@ public class BuguCache {
         data.put(key, value);
     }
     
+    public void removeValue(String key) {
+        data.remove(key);
+    }
+    
+    /**
+     * Get the scheduler shared by all CacheableDao, which runs the delayed reload, the change notification and the consistency sweep.
+     * It has a single daemon thread, and is created at the first time it's used.
+     * @return 
+     */
+    public synchronized ScheduledExecutorService getScheduler(){
+        if(scheduler == null){
+            scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory(){
+                @Override
+                public Thread newThread(Runnable r){
+                    Thread t = new Thread(r, "bugu-cache-scheduler");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+        return scheduler;
+    }
+    
+    /**
+     * Set the transport to notify the changes between JVMs in cluster. 
+     * It should be set before creating CacheableDao. If not set, ZooKeeper is used when zkConnectString is set.
+     * @param transport 
+     */
+    public void setTransport(CacheTransport transport) {
+        this.transport = transport;
+    }
+
+    public CacheTransport getTransport() {
+        return transport;
+    }
+    
     public void setZkConnectString(String zkConnectString) {
         this.zkConnectString = zkConnectString;
     }
@@ -0,0 +1,336 @@
+/*
+ * Copyright (c) www.bugull.com
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bugull.mongo.cache;
+
+import com.bugull.mongo.BuguEntity;
+import com.bugull.mongo.utils.FieldUtil;
+import com.bugull.mongo.utils.Operator;
+import com.bugull.mongo.utils.SortUtil;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An immutable snapshot of the cache data, with the hash indexes and sorted indexes on it.
+ * The indexes map a field's value to the positions of entities in the list, in ascending order.
+ * 
+ * @author Frank Wen(xbwen@hotmail.com)
+ */
+final class CacheIndex<T> {
+    
+    private static final int[] EMPTY = new int[0];
+    
+    private static final Map<String, Field[]> PATHS = new ConcurrentHashMap<>();
+    
+    private static final Comparator<Object> VALUE_COMPARATOR = new Comparator<Object>(){
+        @Override
+        public int compare(Object a, Object b){
+            return SortUtil.compareValue(a, b);
+        }
+    };
+    
+    private final Class<T> clazz;
+    
+    private final List<T> list;
+    
+    private final Map<String, Map<Object, int[]>> hashIndexes = new HashMap<>();
+    
+    //sorted indexes are separated by type, because range query only matches the values of the same type
+    private final Map<String, Map<Class<?>, TreeMap<Object, int[]>>> sortedIndexes = new HashMap<>();
+    
+    CacheIndex(Class<T> clazz, List<T> list, Set<String> hashFields, Set<String> sortedFields){
+        this.clazz = clazz;
+        this.list = list;
+        for(String key : hashFields){
+            Map<Object, List<Integer>> positions = new HashMap<>();
+            for(int i=0; i<list.size(); i++){
+                for(Object value : getValues(list.get(i), key)){
+                    addPosition(positions, value, i);
+                }
+            }
+            hashIndexes.put(key, toArrays(positions, new HashMap<Object, int[]>()));
+        }
+        for(String key : sortedFields){
+            Map<Class<?>, Map<Object, List<Integer>>> positions = new HashMap<>();
+            for(int i=0; i<list.size(); i++){
+                for(Object value : getValues(list.get(i), key)){
+                    if(value == null){
+                        continue;
+                    }
+                    Map<Object, List<Integer>> typed = positions.get(typeOf(value));
+                    if(typed == null){
+                        typed = new HashMap<>();
+                        positions.put(typeOf(value), typed);
+                    }
+                    addPosition(typed, value, i);
+                }
+            }
+            Map<Class<?>, TreeMap<Object, int[]>> index = new HashMap<>();
+            for(Map.Entry<Class<?>, Map<Object, List<Integer>>> entry : positions.entrySet()){
+                index.put(entry.getKey(), toArrays(entry.getValue(), new TreeMap<Object, int[]>(VALUE_COMPARATOR)));
+            }
+            sortedIndexes.put(key, index);
+        }
+    }
+    
+    List<T> getList(){
+        return list;
+    }
+    
+    Class<T> getEntityClass(){
+        return clazz;
+    }
+    
+    boolean hasHashIndex(String key){
+        return hashIndexes.containsKey(key);
+    }
+    
+    boolean hasSortedIndex(String key){
+        return sortedIndexes.containsKey(key);
+    }
+    
+    /**
+     * Positions of the entities whose field equals one of the values, by hash index or sorted index.
+     * @param key
+     * @param values normalized values
+     * @return 
+     */
+    int[] findIn(String key, Collection<Object> values){
+        Map<Object, int[]> hash = hashIndexes.get(key);
+        List<int[]> found = new ArrayList<>();
+        for(Object value : values){
+            int[] positions;
+            if(hash != null){
+                positions = hash.get(value);
+            }else{
+                TreeMap<Object, int[]> sorted = value == null ? null : sortedIndexes.get(key).get(typeOf(value));
+                positions = sorted == null ? null : sorted.get(value);
+            }
+            if(positions != null){
+                found.add(positions);
+            }
+        }
+        return union(found);
+    }
+    
+    /**
+     * Positions of the entities whose field is in the range, by sorted index.
+     * @param key
+     * @param min normalized value, null means no lower bound
+     * @param minInclusive
+     * @param max normalized value, null means no upper bound
+     * @param maxInclusive
+     * @return 
+     */
+    int[] findRange(String key, Object min, boolean minInclusive, Object max, boolean maxInclusive){
+        Object bound = min != null ? min : max;
+        NavigableMap<Object, int[]> range = sortedIndexes.get(key).get(typeOf(bound));
+        if(range == null){
+            return EMPTY;
+        }
+        if(min != null){
+            range = range.tailMap(min, minInclusive);
+        }
+        if(max != null){
+            range = range.headMap(max, maxInclusive);
+        }
+        return union(new ArrayList<>(range.values()));
+    }
+    
+    /**
+     * Get the normalized values of a field. The elements of a collection field are returned one by one, as mongoDB matches array.
+     * @param obj
+     * @param key
+     * @return 
+     */
+    static List<Object> getValues(Object obj, String key){
+        Object value = getValue(obj, key);
+        if(value instanceof Collection){
+            List<Object> values = new ArrayList<>();
+            for(Object o : (Collection)value){
+                values.add(normalize(o));
+            }
+            return values;
+        }
+        if(value instanceof Object[]){
+            List<Object> values = new ArrayList<>();
+            for(Object o : (Object[])value){
+                values.add(normalize(o));
+            }
+            return values;
+        }
+        return Collections.singletonList(value);
+    }
+    
+    /**
+     * Get the normalized value of a field. The key can be a dotted path of embed fields.
+     * @param obj
+     * @param key
+     * @return 
+     */
+    static Object getValue(Object obj, String key){
+        if(obj == null){
+            return null;
+        }
+        Field[] path = getPath(obj.getClass(), key);
+        Object value = obj;
+        for(Field f : path){
+            if(value == null){
+                return null;
+            }
+            value = FieldUtil.get(value, f);
+        }
+        return normalize(value);
+    }
+    
+    private static Field[] getPath(Class<?> clazz, String key){
+        String cacheKey = clazz.getName() + "#" + key;
+        Field[] path = PATHS.get(cacheKey);
+        if(path == null){
+            FieldsCache cache = FieldsCache.getInstance();
+            String[] names = key.split("\\.");
+            path = new Field[names.length];
+            Class<?> type = clazz;
+            for(int i=0; i<names.length; i++){
+                if(i == 0 && names[i].equals(Operator.ID)){
+                    path[i] = cache.getIdField(type);
+                }else{
+                    path[i] = cache.getField(type, names[i]);
+                }
+                type = path[i].getType();
+            }
+            PATHS.put(cacheKey, path);
+        }
+        return path;
+    }
+    
+    /**
+     * Convert a value to the form stored in index: enum to its name, entity to its id, 
+     * integer and whole floating number to long, other floating number to double. 
+     * Numbers of different types are equal in mongoDB if they have the same value.
+     * @param value
+     * @return 
+     */
+    static Object normalize(Object value){
+        if(value instanceof Enum){
+            return ((Enum)value).name();
+        }
+        if(value instanceof BuguEntity){
+            return ((BuguEntity)value).getId();
+        }
+        if(value instanceof Integer || value instanceof Short || value instanceof Byte){
+            return ((Number)value).longValue();
+        }
+        if(value instanceof Double || value instanceof Float){
+            double d = ((Number)value).doubleValue();
+            if(d == Math.rint(d) && !Double.isInfinite(d)){
+                return (long)d;
+            }
+            return d;
+        }
+        return value;
+    }
+    
+    /**
+     * The type of a value in range comparing. All numbers are the same type.
+     * @param value not null
+     * @return 
+     */
+    static Class<?> typeOf(Object value){
+        return value instanceof Number ? Number.class : value.getClass();
+    }
+    
+    static int[] intersect(int[] a, int[] b){
+        int[] result = new int[Math.min(a.length, b.length)];
+        int i = 0, j = 0, n = 0;
+        while(i < a.length && j < b.length){
+            if(a[i] == b[j]){
+                result[n++] = a[i];
+                i++;
+                j++;
+            }else if(a[i] < b[j]){
+                i++;
+            }else{
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, n);
+    }
+    
+    private static int[] union(List<int[]> arrays){
+        if(arrays.isEmpty()){
+            return EMPTY;
+        }
+        if(arrays.size() == 1){
+            return arrays.get(0);
+        }
+        int size = 0;
+        for(int[] a : arrays){
+            size += a.length;
+        }
+        int[] result = new int[size];
+        int n = 0;
+        for(int[] a : arrays){
+            System.arraycopy(a, 0, result, n, a.length);
+            n += a.length;
+        }
+        Arrays.sort(result);
+        //remove duplicated positions, from the elements of collection field
+        n = 0;
+        for(int i=0; i<result.length; i++){
+            if(i == 0 || result[i] != result[i-1]){
+                result[n++] = result[i];
+            }
+        }
+        return Arrays.copyOf(result, n);
+    }
+    
+    private static void addPosition(Map<Object, List<Integer>> positions, Object value, int position){
+        List<Integer> list = positions.get(value);
+        if(list == null){
+            list = new ArrayList<>();
+            positions.put(value, list);
+        }
+        //a collection field may contain the same value twice
+        if(list.isEmpty() || list.get(list.size() - 1) != position){
+            list.add(position);
+        }
+    }
+    
+    private static <M extends Map<Object, int[]>> M toArrays(Map<Object, List<Integer>> positions, M result){
+        for(Map.Entry<Object, List<Integer>> entry : positions.entrySet()){
+            List<Integer> list = entry.getValue();
+            int[] arr = new int[list.size()];
+            for(int i=0; i<arr.length; i++){
+                arr[i] = list.get(i);
+            }
+            result.put(entry.getKey(), arr);
+        }
+        return result;
+    }
+    
+}
@@ -0,0 +1,318 @@
+/*
+ * Copyright (c) www.bugull.com
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bugull.mongo.cache;
+
+import com.bugull.mongo.utils.Operator;
+import com.bugull.mongo.utils.SortUtil;
+import com.mongodb.DBObject;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Query on the cache data of CacheableDao, in memory. It has the same style as BuguQuery.
+ * 
+ * <p>The conditions on the fields with hash index or sorted index are evaluated by index, 
+ * the others are evaluated by comparing the entities one by one.</p>
+ * 
+ * @author Frank Wen(xbwen@hotmail.com)
+ */
+@SuppressWarnings("unchecked")
+public class CacheQuery<T> {
+    
+    private final CacheableDao<T> dao;
+    
+    private final String region;
+    
+    private final List<Condition> conditions = new ArrayList<>();
+    
+    private String orderBy;
+    
+    private int limit;  //default value is zero, means no limit
+    
+    public CacheQuery(CacheableDao<T> dao){
+        this(dao, CacheableDao.DEFAULT_REGION);
+    }
+    
+    public CacheQuery(CacheableDao<T> dao, String region){
+        this.dao = dao;
+        this.region = region;
+    }
+    
+    public CacheQuery<T> is(String key, Object value){
+        conditions.add(new Condition(key, null, CacheIndex.normalize(value)));
+        return this;
+    }
+    
+    public CacheQuery<T> notEquals(String key, Object value){
+        conditions.add(new Condition(key, Operator.NE, CacheIndex.normalize(value)));
+        return this;
+    }
+    
+    public CacheQuery<T> in(String key, List list){
+        if(list == null || list.isEmpty()){
+            throw new IllegalArgumentException("$in query with empty value is not allowed.");
+        }
+        return in(key, list.toArray());
+    }
+    
+    public CacheQuery<T> in(String key, Object... values){
+        if(values == null || values.length == 0){
+            throw new IllegalArgumentException("$in query with empty value is not allowed.");
+        }
+        Set<Object> set = new HashSet<>();
+        for(Object value : values){
+            set.add(CacheIndex.normalize(value));
+        }
+        conditions.add(new Condition(key, Operator.IN, set));
+        return this;
+    }
+    
+    public CacheQuery<T> greaterThan(String key, Object value){
+        conditions.add(new Condition(key, Operator.GT, CacheIndex.normalize(value)));
+        return this;
+    }
+    
+    public CacheQuery<T> greaterThanEquals(String key, Object value){
+        conditions.add(new Condition(key, Operator.GTE, CacheIndex.normalize(value)));
+        return this;
+    }
+    
+    public CacheQuery<T> lessThan(String key, Object value){
+        conditions.add(new Condition(key, Operator.LT, CacheIndex.normalize(value)));
+        return this;
+    }
+    
+    public CacheQuery<T> lessThanEquals(String key, Object value){
+        conditions.add(new Condition(key, Operator.LTE, CacheIndex.normalize(value)));
+        return this;
+    }
+    
+    /**
+     * Match: greaterThanEquals minValue and lessThanEquals maxValue.
+     * @param key
+     * @param minValue
+     * @param maxValue
+     * @return 
+     */
+    public CacheQuery<T> between(String key, Object minValue, Object maxValue){
+        greaterThanEquals(key, minValue);
+        lessThanEquals(key, maxValue);
+        return this;
+    }
+    
+    /**
+     * Sort the results. The orderBy is the same as BuguQuery, such as: {'order':1, 'name':-1}
+     * @param orderBy
+     * @return 
+     */
+    public CacheQuery<T> sort(String orderBy){
+        this.orderBy = orderBy;
+        return this;
+    }
+    
+    public CacheQuery<T> sortAsc(String key){
+        this.orderBy = SortUtil.asc(key);
+        return this;
+    }
+    
+    public CacheQuery<T> sortDesc(String key){
+        this.orderBy = SortUtil.desc(key);
+        return this;
+    }
+    
+    /**
+     * Max number of results.
+     * @param limit
+     * @return 
+     */
+    public CacheQuery<T> limit(int limit){
+        this.limit = limit;
+        return this;
+    }
+    
+    public T result(){
+        List<T> list = find(1);
+        return list.isEmpty() ? null : list.get(0);
+    }
+    
+    /**
+     * Get the matched entities. The returned list is a new list, in the order of cache data if not sorted.
+     * @return 
+     */
+    public List<T> results(){
+        return find(limit);
+    }
+    
+    public long count(){
+        return find(0).size();
+    }
+    
+    public boolean exists(){
+        return !find(1).isEmpty();
+    }
+    
+    private List<T> find(int max){
+        CacheIndex<T> index = dao.getCacheIndex(region);
+        List<T> data = index.getList();
+        //evaluate the conditions by index first
+        int[] positions = null;
+        List<Condition> others = new ArrayList<>();
+        for(Condition c : conditions){
+            int[] found = findByIndex(index, c);
+            if(found == null){
+                others.add(c);
+            }else if(positions == null){
+                positions = found;
+            }else{
+                positions = CacheIndex.intersect(positions, found);
+            }
+        }
+        //without sorting, can stop at the limit
+        int stop = orderBy == null && max > 0 ? max : Integer.MAX_VALUE;
+        List<T> list = new ArrayList<>();
+        int size = positions == null ? data.size() : positions.length;
+        for(int i=0; i<size && list.size()<stop; i++){
+            T t = data.get(positions == null ? i : positions[i]);
+            if(matches(t, others)){
+                list.add(t);
+            }
+        }
+        if(orderBy != null){
+            sort(list);
+            if(max > 0 && list.size() > max){
+                list = new ArrayList<>(list.subList(0, max));
+            }
+        }
+        return list;
+    }
+    
+    /**
+     * @return null if the condition can't be evaluated by index
+     */
+    private int[] findByIndex(CacheIndex<T> index, Condition c){
+        String key = c.key;
+        if(c.op == null && (index.hasHashIndex(key) || (index.hasSortedIndex(key) && c.value != null))){
+            return index.findIn(key, Collections.singleton(c.value));
+        }
+        if(Operator.IN.equals(c.op) && index.hasHashIndex(key)){
+            return index.findIn(key, (Set<Object>)c.value);
+        }
+        if(c.value != null && index.hasSortedIndex(key)){
+            if(Operator.GT.equals(c.op) || Operator.GTE.equals(c.op)){
+                return index.findRange(key, c.value, Operator.GTE.equals(c.op), null, false);
+            }
+            if(Operator.LT.equals(c.op) || Operator.LTE.equals(c.op)){
+                return index.findRange(key, null, false, c.value, Operator.LTE.equals(c.op));
+            }
+        }
+        return null;
+    }
+    
+    private boolean matches(T t, List<Condition> list){
+        for(Condition c : list){
+            if(!c.matches(t)){
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private void sort(List<T> list){
+        final DBObject sort = SortUtil.getSort(orderBy);
+        Collections.sort(list, new Comparator<T>(){
+            @Override
+            public int compare(T a, T b){
+                for(String key : sort.keySet()){
+                    boolean desc = Integer.parseInt(sort.get(key).toString()) < 0;
+                    int result = SortUtil.compareValue(getSortKey(a, key, desc), getSortKey(b, key, desc));
+                    if(result != 0){
+                        return desc ? -result : result;
+                    }
+                }
+                return 0;
+            }
+        });
+    }
+    
+    /**
+     * A collection field is sorted by its smallest or largest element, as mongoDB does.
+     */
+    private static Object getSortKey(Object obj, String key, boolean desc){
+        Object value = CacheIndex.getValue(obj, key);
+        if(value instanceof Collection || value instanceof Object[]){
+            value = CacheIndex.getValues(obj, key);
+        }
+        return SortUtil.getSortKey(value, desc);
+    }
+    
+    private static class Condition {
+        
+        final String key;
+        final String op;  //null means equals
+        final Object value;
+        
+        Condition(String key, String op, Object value){
+            this.key = key;
+            this.op = op;
+            this.value = value;
+        }
+        
+        boolean matches(Object obj){
+            List<Object> values = CacheIndex.getValues(obj, key);
+            if(Operator.NE.equals(op)){
+                return !values.contains(value);
+            }
+            //a collection field matches if any element matches
+            for(Object v : values){
+                if(matchesValue(v)){
+                    return true;
+                }
+            }
+            return false;
+        }
+        
+        private boolean matchesValue(Object v){
+            if(op == null){
+                return v == null ? value == null : v.equals(value);
+            }
+            if(Operator.IN.equals(op)){
+                return ((Set<Object>)value).contains(v);
+            }
+            //range only matches the values of the same type
+            if(v == null || value == null || CacheIndex.typeOf(v) != CacheIndex.typeOf(value)){
+                return false;
+            }
+            int result = SortUtil.compareValue(v, value);
+            if(Operator.GT.equals(op)){
+                return result > 0;
+            }else if(Operator.GTE.equals(op)){
+                return result >= 0;
+            }else if(Operator.LT.equals(op)){
+                return result < 0;
+            }else{
+                return result <= 0;
+            }
+        }
+        
+    }
+    
+}
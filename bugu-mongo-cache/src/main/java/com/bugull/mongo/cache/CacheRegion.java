@@ -0,0 +1,408 @@
+/*
+ * Copyright (c) www.bugull.com
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bugull.mongo.cache;
+
+import com.bugull.mongo.BuguEntity;
+import com.bugull.mongo.BuguQuery;
+import com.bugull.mongo.exception.FieldException;
+import com.bugull.mongo.utils.FieldUtil;
+import com.bugull.mongo.utils.IdUtil;
+import com.bugull.mongo.utils.MapperUtil;
+import com.bugull.mongo.utils.Operator;
+import com.bugull.mongo.utils.SortUtil;
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+import org.bson.types.ObjectId;
+
+/**
+ * A region of cache data in CacheableDao, which holds the results of one query.
+ * 
+ * <p>The cached entities are indexed by id. The changes are applied in place, and the list view is rebuilt copy-on-write. 
+ * All the methods which change the region must be called when holding the lock of CacheableDao.</p>
+ * 
+ * @author Frank Wen(xbwen@hotmail.com)
+ */
+@SuppressWarnings("unchecked")
+final class CacheRegion<T> {
+    
+    private final CacheableDao<T> dao;
+    
+    private final String name;
+    
+    private final String key;  //key in BuguCache
+    
+    private BuguQuery<T> query;  //null means all entities
+    
+    //the equality and $in conditions of query, by field. used to tell whether a changed document may match.
+    private Map<String, Set<Object>> filters;
+    
+    //the cached entities by id, in the order of query results. null means not loaded yet.
+    private volatile Map<String, T> entities;
+    
+    //the sort fields' values of cached entities, only used when query is sorted
+    private Map<String, DBObject> sortKeys;
+    
+    //the top level fields of the sort, and their names in the sort key
+    private Field[] sortFields;
+    private String[] sortNames;
+    
+    private volatile CacheIndex<T> cacheIndex;
+    
+    private volatile long lastAccess;
+    
+    CacheRegion(CacheableDao<T> dao, String name, String key, BuguQuery<T> query){
+        this.dao = dao;
+        this.name = name;
+        this.key = key;
+        setQuery(query);
+    }
+    
+    String getName(){
+        return name;
+    }
+    
+    void setQuery(BuguQuery<T> query){
+        this.query = query;
+        this.filters = getFilters(query);
+        DBObject sort = query == null ? null : query.getSort();
+        if(sort == null){
+            sortFields = null;
+            sortNames = null;
+            return;
+        }
+        Class<T> clazz = dao.getEntityClass();
+        List<Field> fields = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        for(String field : sort.keySet()){
+            String top = field.split("\\.")[0];
+            if(names.contains(top)){
+                continue;
+            }
+            names.add(top);
+            Field f = null;
+            if(top.equals(Operator.ID)){
+                f = FieldsCache.getInstance().getIdField(clazz);
+            }else{
+                try{
+                    f = FieldsCache.getInstance().getField(clazz, top);
+                }catch(FieldException ex){
+                    //not a mapped field, mongoDB sorts it as null
+                }
+            }
+            fields.add(f);
+        }
+        sortFields = fields.toArray(new Field[fields.size()]);
+        sortNames = names.toArray(new String[names.size()]);
+    }
+    
+    boolean isLoaded(){
+        return entities != null;
+    }
+    
+    int size(){
+        return entities == null ? 0 : entities.size();
+    }
+    
+    long getLastAccess(){
+        return lastAccess;
+    }
+    
+    void touch(long tick){
+        lastAccess = tick;
+    }
+    
+    /**
+     * @return null if not loaded, or evicted
+     */
+    List<T> getData(){
+        return (List<T>)BuguCache.getInstance().getValue(key);
+    }
+    
+    CacheIndex<T> getCacheIndex(List<T> data){
+        CacheIndex<T> index = cacheIndex;
+        if(index == null || index.getList() != data){
+            index = new CacheIndex<>(dao.getEntityClass(), data, dao.getHashFields(), dao.getSortedFields());
+            cacheIndex = index;
+        }
+        return index;
+    }
+    
+    boolean contains(String id){
+        return entities != null && entities.containsKey(id);
+    }
+    
+    /**
+     * Whether the query has equality conditions to pre-filter the changed documents.
+     * @return 
+     */
+    boolean hasFilters(){
+        return !filters.isEmpty();
+    }
+    
+    /**
+     * Whether the changed document may match the query, by comparing its fields with the equality conditions.
+     * @param dbo the document of changed entity read from database, null if it doesn't exist any more
+     * @return 
+     */
+    boolean mayMatch(DBObject dbo){
+        if(dbo == null){
+            return false;
+        }
+        for(Map.Entry<String, Set<Object>> entry : filters.entrySet()){
+            Object value = dbo.get(entry.getKey());
+            if(value instanceof Collection){
+                //array field matches if any element matches
+                boolean found = false;
+                for(Object o : (Collection)value){
+                    if(entry.getValue().contains(CacheIndex.normalize(o))){
+                        found = true;
+                        break;
+                    }
+                }
+                if(!found){
+                    return false;
+                }
+            }else if(!entry.getValue().contains(CacheIndex.normalize(value))){
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Whether the changes should be applied by reloading all, rather than one by one.
+     * @param count number of changes
+     * @return 
+     */
+    boolean shouldReload(int count){
+        //can't tell which entity moves into the page or the limit. and when most entities changed, reloading is cheaper.
+        return (query != null && query.isLimited()) || count > entities.size() / 2;
+    }
+    
+    /**
+     * Reload all the data from database.
+     * @return the new list view
+     */
+    List<T> reload(){
+        List<T> value;
+        if(query == null){
+            value = dao.findAll();
+        }else{
+            value = query.results();
+        }
+        DBObject sort = query == null ? null : query.getSort();
+        entities = new LinkedHashMap<>();
+        sortKeys = sort == null ? null : new HashMap<String, DBObject>();
+        for(T t : value){
+            String id = ((BuguEntity)t).getId();
+            entities.put(id, t);
+            if(sortKeys != null){
+                sortKeys.put(id, getSortKey(t));
+            }
+        }
+        List<T> view = Collections.unmodifiableList(value);
+        cacheIndex = new CacheIndex<>(dao.getEntityClass(), view, dao.getHashFields(), dao.getSortedFields());
+        BuguCache.getInstance().setValue(key, view);
+        return view;
+    }
+    
+    /**
+     * Drop the data, it's loaded again at the next time it's used.
+     */
+    void evict(){
+        entities = null;
+        sortKeys = null;
+        cacheIndex = null;
+        BuguCache.getInstance().removeValue(key);
+    }
+    
+    /**
+     * Apply the changes to the cache data: insert, replace or remove the entities by id. 
+     * The entities are read again by id, because the changes are notified asynchronously and may be out of order, 
+     * and because the new value may not match the query any more.
+     * @param changes 
+     */
+    void applyChanges(Map<String, ChangeType> changes){
+        List<String> ids = new ArrayList<>();
+        for(Map.Entry<String, ChangeType> entry : changes.entrySet()){
+            if(entry.getValue() != ChangeType.DELETE){
+                ids.add(entry.getKey());
+            }
+        }
+        Map<String, T> found = readCached(ids);
+        boolean changed = false;
+        for(String id : changes.keySet()){
+            T t = found.get(id);
+            if(t == null){
+                if(entities.remove(id) == null){
+                    continue;
+                }
+                if(sortKeys != null){
+                    sortKeys.remove(id);
+                }
+            }else{
+                //an existing id keeps its position in LinkedHashMap
+                entities.put(id, t);
+                if(sortKeys != null){
+                    sortKeys.put(id, getSortKey(t));
+                }
+            }
+            changed = true;
+        }
+        if(changed){
+            publish();
+        }
+    }
+    
+    /**
+     * Read the entities by id with one $in query, in the same way as the query.
+     * @param ids
+     * @return the entities exist and match the query, by id
+     */
+    private Map<String, T> readCached(List<String> ids){
+        Map<String, T> map = new HashMap<>();
+        if(ids.isEmpty()){
+            return map;
+        }
+        //the query is held by caller and may be running, so it's copied rather than changed
+        BuguQuery<T> q = (query == null) ? dao.query() : query.copy();
+        q.and(dao.query().in(Operator.ID, ids));
+        List<T> list = q.results();
+        for(T t : list){
+            map.put(((BuguEntity)t).getId(), t);
+        }
+        return map;
+    }
+    
+    /**
+     * Rebuild the list view from the entities, and replace the old one.
+     */
+    private void publish(){
+        List<T> list = new ArrayList<>(entities.values());
+        if(sortKeys != null){
+            final Comparator<DBObject> comparator = SortUtil.getComparator(query.getSort());
+            Collections.sort(list, new Comparator<T>(){
+                @Override
+                public int compare(T a, T b){
+                    return comparator.compare(sortKeys.get(((BuguEntity)a).getId()), sortKeys.get(((BuguEntity)b).getId()));
+                }
+            });
+        }
+        List<T> view = Collections.unmodifiableList(list);
+        cacheIndex = new CacheIndex<>(dao.getEntityClass(), view, dao.getHashFields(), dao.getSortedFields());
+        BuguCache.getInstance().setValue(key, view);
+    }
+    
+    /**
+     * Read only the sort fields of the entity, and convert them to the values stored in database.
+     */
+    private DBObject getSortKey(T t){
+        DBObject sortKey = new BasicDBObject();
+        for(int i=0; i<sortFields.length; i++){
+            Object value = sortFields[i] == null ? null : FieldUtil.get(t, sortFields[i]);
+            if(sortNames[i].equals(Operator.ID) && value != null){
+                value = IdUtil.toDbId(dao.getEntityClass(), (String)value);
+            }
+            sortKey.put(sortNames[i], toSortValue(value));
+        }
+        return sortKey;
+    }
+    
+    private static Object toSortValue(Object value){
+        if(value == null || value instanceof Number || value instanceof String || value instanceof Boolean 
+                || value instanceof Date || value instanceof ObjectId || value instanceof Map){
+            return value;
+        }
+        if(value instanceof Enum){
+            return ((Enum)value).name();
+        }
+        if(value instanceof BuguEntity){
+            return ((BuguEntity)value).getId();
+        }
+        if(value instanceof Character){
+            return value.toString();
+        }
+        if(value instanceof Collection){
+            List<Object> list = new ArrayList<>();
+            for(Object o : (Collection)value){
+                list.add(toSortValue(o));
+            }
+            return list;
+        }
+        if(value.getClass().isArray()){
+            int len = Array.getLength(value);
+            List<Object> list = new ArrayList<>(len);
+            for(int i=0; i<len; i++){
+                list.add(toSortValue(Array.get(value, i)));
+            }
+            return list;
+        }
+        //embedded object
+        return MapperUtil.toDBObject(value, true);
+    }
+    
+    /**
+     * Get the top level equality and $in conditions of a query.
+     */
+    private static Map<String, Set<Object>> getFilters(BuguQuery<?> query){
+        Map<String, Set<Object>> map = new HashMap<>();
+        if(query == null){
+            return map;
+        }
+        DBObject condition = query.getCondition();
+        for(String field : condition.keySet()){
+            //operators and embedded fields are not evaluated
+            if(field.startsWith("$") || field.indexOf(".") != -1){
+                continue;
+            }
+            Object value = condition.get(field);
+            if(value instanceof DBObject){
+                DBObject dbo = (DBObject)value;
+                Object in = dbo.get(Operator.IN);
+                if(in instanceof Object[]){
+                    in = Arrays.asList((Object[])in);
+                }
+                if(dbo.keySet().size() == 1 && in instanceof Collection){
+                    Set<Object> set = new HashSet<>();
+                    for(Object o : (Collection)in){
+                        set.add(CacheIndex.normalize(o));
+                    }
+                    map.put(field, set);
+                }
+            }else if(!(value instanceof List) && !(value instanceof Pattern)){
+                map.put(field, Collections.singleton(CacheIndex.normalize(value)));
+            }
+        }
+        return map;
+    }
+    
+}
@@ -16,136 +16,538 @@
 package com.bugull.mongo.cache;
 
 import com.bugull.mongo.BuguDao;
+import com.bugull.mongo.BuguEntity;
 import com.bugull.mongo.BuguQuery;
+import com.bugull.mongo.cache.transport.CacheTransport;
+import com.bugull.mongo.cache.transport.InvalidationListener;
+import com.bugull.mongo.cache.transport.InvalidationMessage;
+import com.bugull.mongo.utils.IdUtil;
+import com.bugull.mongo.utils.Operator;
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBCursor;
+import com.mongodb.DBObject;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Timer;
-import java.util.TimerTask;
-import org.apache.curator.framework.CuratorFramework;
-import org.apache.curator.framework.recipes.cache.NodeCache;
-import org.apache.curator.framework.recipes.cache.NodeCacheListener;
-import org.apache.zookeeper.CreateMode;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * DAO that can cache data.
  * 
+ * <p>The cached entities are indexed by id. A changed entity is applied in place, and the list view is rebuilt 
+ * copy-on-write, so the cache is not reloaded from database on every change. 
+ * A full reload only happens in the periodic consistency sweep, see setSweepInterval().</p>
+ * 
+ * <p>Besides the default cache data of cacheQuery, more named regions can be added by addCacheRegion(), 
+ * each of them holds the results of its own query.</p>
+ * 
  * @author Frank Wen(xbwen@hotmail.com)
  */
 @SuppressWarnings("unchecked")
 public class CacheableDao <T> extends BuguDao<T> {
+    
+    private static final Logger LOGGER = Logger.getLogger("com.bugull.mongo");
+    
+    //more changed ids than this are sent as a reload message
+    private static final int MAX_MESSAGE_IDS = 1000;
 
-    private BuguQuery<T> cacheQuery;
+    public final static String DEFAULT_REGION = "";
     
     private long reloadDelay;
     
+    private IdCache<T> idCache;
+    
+    private long sweepInterval;
+    
+    private ScheduledFuture<?> sweepTask;
+    
+    private final Object lock = new Object();
+    
+    //the regions by name. the default region holds the results of cacheQuery.
+    private final Map<String, CacheRegion<T>> regions = new ConcurrentHashMap<>();
+    
+    private int maxCacheSize;
+    
+    private final AtomicLong accessTick = new AtomicLong();
+    
+    //the changes waiting to be applied, and the flags of pending tasks. guarded by pendingChanges.
+    private final Map<String, ChangeType> pendingChanges = new LinkedHashMap<>();
+    private boolean pendingReload;
+    private boolean flushArmed;
+    
+    //the changes made in this JVM, waiting to be sent to the other JVMs. guarded by pendingChanges.
+    private final Map<String, ChangeType> outgoingChanges = new LinkedHashMap<>();
+    private boolean outgoingReload;
+    
+    //the fields to build index on cache data
+    private final Set<String> hashFields = new LinkedHashSet<>();
+    private final Set<String> sortedFields = new LinkedHashSet<>();
+    
     public CacheableDao(Class<T> clazz){
         super(clazz);
         super.addEntityListener(new DataChangeListener(this));
-        BuguCache cache = BuguCache.getInstance();
-        CuratorFramework zkClient = cache.getZkClient();
-        if(zkClient != null){
-            String path = BuguCache.ZK_PREFIX + clazz.getName();
-            //create node if not exists
-            try {
-                if(zkClient.checkExists().forPath(path) == null){
-                    zkClient.create().withMode(CreateMode.PERSISTENT).forPath(path);
-                }
-            } catch (Exception ex) {
-                throw new BuguCacheException(ex.getMessage());
-            }
-            //create and start NodeCache
-            NodeCache nodeCache = new NodeCache(zkClient, path);
-            try {
-                nodeCache.start();
-            } catch (Exception ex) {
-                throw new BuguCacheException(ex.getMessage());
-            }
-            //add NodeCache listener
-            nodeCache.getListenable().addListener(new NodeCacheListener(){
+        EntityCache entityCache = getClass().getAnnotation(EntityCache.class);
+        if(entityCache == null){
+            entityCache = clazz.getAnnotation(EntityCache.class);
+        }
+        if(entityCache != null){
+            idCache = new IdCache<>(entityCache.maxSize(), entityCache.expire(), entityCache.reference());
+        }
+        regions.put(DEFAULT_REGION, new CacheRegion<>(this, DEFAULT_REGION, clazz.getName(), null));
+        CacheTransport transport = BuguCache.getInstance().getTransport();
+        if(transport != null){
+            transport.subscribe(clazz.getName(), new InvalidationListener(){
                 @Override
-                public void nodeChanged() throws Exception {
-                    reloadCacheData();
+                public void onMessage(InvalidationMessage message){
+                    remoteChanged(message);
                 }
             });
         }
     }
 
     protected void setCacheQuery(BuguQuery<T> cacheQuery) {
-        this.cacheQuery = cacheQuery;
+        synchronized(lock){
+            regions.get(DEFAULT_REGION).setQuery(cacheQuery);
+        }
+    }
+    
+    /**
+     * Add a named region of cache data, which holds the results of the query. 
+     * The region is loaded at the first time it's used.
+     * @param name the region's name
+     * @param query the query of cache data
+     */
+    protected void addCacheRegion(String name, BuguQuery<T> query) {
+        if(regions.containsKey(name)){
+            throw new BuguCacheException("Cache region already exists: " + name);
+        }
+        regions.put(name, new CacheRegion<>(this, name, clazz.getName() + ":" + name, query));
+    }
+    
+    /**
+     * Set the max number of entities in all regions. When it's exceeded, 
+     * the least recently used regions are evicted, and are loaded again at the next time they are used.
+     * @param maxCacheSize max number of entities, 0 means no limit
+     */
+    protected void setMaxCacheSize(int maxCacheSize) {
+        this.maxCacheSize = maxCacheSize;
     }
     
+    /**
+     * Set the delay before the changes are applied. The changes in this window are coalesced into one refresh, 
+     * and one message to the other JVMs in cluster.
+     * @param reloadDelay delay in milliseconds
+     */
     protected void setReloadDelay(long reloadDelay) {
         this.reloadDelay = reloadDelay;
     }
     
+    /**
+     * Set the interval of consistency sweep, which reloads all the cache data from database periodically. 
+     * It corrects the changes that are not made by this DAO, such as the write from mongo shell.
+     * @param sweepInterval interval in milliseconds, 0 means no sweep
+     */
+    protected void setSweepInterval(long sweepInterval) {
+        this.sweepInterval = sweepInterval;
+    }
+    
+    /**
+     * Build hash index on cache data, for is() and in() of CacheQuery.
+     * @param fieldNames 
+     */
+    protected void addHashIndex(String... fieldNames) {
+        hashFields.addAll(Arrays.asList(fieldNames));
+    }
+    
+    /**
+     * Build sorted index on cache data, for greaterThan(), lessThan(), between() and is() of CacheQuery.
+     * @param fieldNames 
+     */
+    protected void addSortedIndex(String... fieldNames) {
+        sortedFields.addAll(Arrays.asList(fieldNames));
+    }
+    
+    /**
+     * Enable the id cache, which caches the result of findOne(id).
+     * @param maxSize max number of entities
+     * @param expire time to live in milliseconds after put, 0 means never expire
+     * @param reference how the entities are referenced
+     */
+    protected void setIdCache(int maxSize, long expire, ValueReference reference) {
+        this.idCache = new IdCache<>(maxSize, expire, reference);
+    }
+    
+    /**
+     * Get the id cache, to read the hit/miss/eviction counters.
+     * @return null if the id cache is not enabled
+     */
+    public IdCache<T> getIdCache() {
+        return idCache;
+    }
+    
+    /**
+     * Find a single document by id. If the id cache is enabled, the entity is read from cache first.
+     * @param id
+     * @return 
+     */
+    @Override
+    public T findOne(String id){
+        if(idCache == null){
+            return super.findOne(id);
+        }
+        T t = idCache.get(id);
+        if(t == null){
+            long stamp = idCache.getStamp();
+            t = super.findOne(id);
+            idCache.put(id, t, stamp);
+        }
+        return t;
+    }
+    
+    @Override
+    protected void evictCached(String id){
+        super.evictCached(id);
+        if(idCache != null){
+            idCache.remove(id);
+        }
+    }
+    
+    @Override
+    protected void evictCached(){
+        super.evictCached();
+        if(idCache != null){
+            idCache.clear();
+        }
+    }
+    
     /**
      * Get data from cache. If not exists, will query from database.
+     * <p>The returned list is read-only. It's a snapshot, and is not changed by the later changes.</p>
      * @return 
      */
     public List<T> getCacheData(){
-        BuguCache cache = BuguCache.getInstance();
-        String key = clazz.getName();
-        List<T> value = (List<T>)cache.getValue(key);
-        if(value == null){
-            if(cacheQuery == null){
-                value = this.findAll();
-            }else{
-                value = cacheQuery.results();
+        return getCacheData(DEFAULT_REGION);
+    }
+    
+    /**
+     * Get data of a region from cache. If not exists, will query from database.
+     * <p>The returned list is read-only. It's a snapshot, and is not changed by the later changes.</p>
+     * @param region the region's name
+     * @return 
+     */
+    public List<T> getCacheData(String region){
+        CacheRegion<T> r = getRegion(region);
+        List<T> value = r.getData();
+        if(value == null || !r.isLoaded()){
+            synchronized(lock){
+                value = r.getData();
+                if(value == null || !r.isLoaded()){
+                    value = r.reload();
+                    startSweep();
+                    evictRegions(r);
+                }
             }
-            cache.setValue(key, value);
         }
+        r.touch(accessTick.incrementAndGet());
         return value;
     }
     
     /**
-     * used in DataChangeListener, call this to refresh cache data.
+     * Drop the data of a region. It's loaded again at the next time it's used.
+     * @param region the region's name
+     */
+    public void evictCacheData(String region){
+        CacheRegion<T> r = getRegion(region);
+        synchronized(lock){
+            r.evict();
+        }
+    }
+    
+    /**
+     * Create a query on cache data, which is evaluated in memory by the indexes.
+     * @return 
+     */
+    public CacheQuery<T> queryCache(){
+        return new CacheQuery<>(this);
+    }
+    
+    /**
+     * Create a query on cache data of a region, which is evaluated in memory by the indexes.
+     * @param region the region's name
+     * @return 
+     */
+    public CacheQuery<T> queryCache(String region){
+        return new CacheQuery<>(this, region);
+    }
+    
+    /**
+     * Get the cache data of a region and the indexes on it. The indexes are rebuilt when the cache data is replaced.
+     * @param region
+     * @return 
+     */
+    CacheIndex<T> getCacheIndex(String region){
+        List<T> data = getCacheData(region);
+        return getRegion(region).getCacheIndex(data);
+    }
+    
+    Set<String> getHashFields(){
+        return hashFields;
+    }
+    
+    Set<String> getSortedFields(){
+        return sortedFields;
+    }
+    
+    private CacheRegion<T> getRegion(String name){
+        CacheRegion<T> r = regions.get(name);
+        if(r == null){
+            throw new BuguCacheException("Cache region not found: " + name);
+        }
+        return r;
+    }
+    
+    /**
+     * Evict the least recently used regions, until the number of entities is under the limit. Must be called when holding the lock.
+     * @param keep the region not to evict, may be null
+     */
+    private void evictRegions(CacheRegion<T> keep){
+        if(maxCacheSize <= 0){
+            return;
+        }
+        int total = 0;
+        for(CacheRegion<T> r : regions.values()){
+            total += r.size();
+        }
+        while(total > maxCacheSize){
+            CacheRegion<T> lru = null;
+            for(CacheRegion<T> r : regions.values()){
+                if(r != keep && r.isLoaded() && (lru == null || r.getLastAccess() < lru.getLastAccess())){
+                    lru = r;
+                }
+            }
+            if(lru == null){
+                break;
+            }
+            total -= lru.size();
+            lru.evict();
+        }
+    }
+    
+    /**
+     * used in DataChangeListener, call this to refresh all the cache data.
      */
     public void dataChanged(){
-        BuguCache cache = BuguCache.getInstance();
-        CuratorFramework zkClient = cache.getZkClient();
-        //process single JVM
-        if(zkClient == null){
-            reloadCacheData();
-        }
-        //process cluster JVM, by ZooKeeper/curator
-        else{
-            //set new value to ZK node, in order to trigger nodeChanged event
-            String path = BuguCache.ZK_PREFIX + clazz.getName();
-            String data = String.valueOf(System.currentTimeMillis());
-            try {
-                zkClient.setData().inBackground().forPath(path, data.getBytes());
-            } catch (Exception ex) {
-                throw new BuguCacheException(ex.getMessage());
+        enqueue(null, null, true);
+    }
+    
+    /**
+     * used in DataChangeListener, call this to apply the changed entity to cache data, 
+     * and to notify the other JVMs in cluster.
+     * <p>The changes are coalesced: the first change arms a task after reloadDelay, 
+     * and all the changes before the task runs are applied together, and sent in one message.</p>
+     * @param entity the changed entity
+     * @param type the kind of change
+     */
+    public void dataChanged(BuguEntity entity, ChangeType type){
+        if(entity == null || entity.getId() == null){
+            dataChanged();
+            return;
+        }
+        enqueue(entity.getId(), type, true);
+    }
+    
+    /**
+     * Apply the changes made in another JVM. The changed ids are evicted from id cache and re-read, 
+     * or all are reloaded if the message asks to.
+     * @param message 
+     */
+    private void remoteChanged(InvalidationMessage message){
+        if(message.isReload()){
+            evictCached();
+            enqueue(null, null, false);
+            return;
+        }
+        for(Map.Entry<String, ChangeType> entry : message.getChanges().entrySet()){
+            evictCached(entry.getKey());
+            enqueue(entry.getKey(), entry.getValue(), false);
+        }
+    }
+    
+    /**
+     * Add a change to the pending changes, and arm the flush task if it's not armed.
+     * @param id the changed id, null means reloading all
+     * @param type 
+     * @param publish whether to notify the other JVMs, false for the changes received from them
+     */
+    private void enqueue(String id, ChangeType type, boolean publish){
+        synchronized(pendingChanges){
+            if(id == null){
+                pendingReload = true;
+                outgoingReload |= publish;
+            }else{
+                pendingChanges.put(id, type);
+                if(publish){
+                    outgoingChanges.put(id, type);
+                }
+            }
+            if(flushArmed){
+                return;
             }
+            flushArmed = true;
         }
+        schedule(new Runnable(){
+            @Override
+            public void run(){
+                flushChanges();
+            }
+        });
     }
     
-    private void reloadCacheData(){
-        if(reloadDelay > 0){
-            final Timer timer = new Timer();
-            TimerTask task = new TimerTask(){
-                @Override
-                public void run(){
-                    doReload();
-                    timer.cancel();
+    private void schedule(Runnable task){
+        BuguCache.getInstance().getScheduler().schedule(task, reloadDelay, TimeUnit.MILLISECONDS);
+    }
+    
+    private void flushChanges(){
+        Map<String, ChangeType> changes;
+        boolean reload;
+        Map<String, ChangeType> outgoing;
+        boolean outgoingAll;
+        synchronized(pendingChanges){
+            changes = new LinkedHashMap<>(pendingChanges);
+            pendingChanges.clear();
+            reload = pendingReload;
+            pendingReload = false;
+            outgoing = new LinkedHashMap<>(outgoingChanges);
+            outgoingChanges.clear();
+            outgoingAll = outgoingReload;
+            outgoingReload = false;
+            flushArmed = false;
+        }
+        publish(outgoing, outgoingAll);
+        synchronized(lock){
+            Map<String, DBObject> documents = null;
+            for(CacheRegion<T> r : regions.values()){
+                //not loaded yet, will be read from database at the first time
+                if(!r.isLoaded()){
+                    continue;
+                }
+                try{
+                    if(reload){
+                        r.reload();
+                        continue;
+                    }
+                    //the changes that may affect this region: the cached ids, and the documents may match the query
+                    Map<String, ChangeType> affected = new LinkedHashMap<>();
+                    for(Map.Entry<String, ChangeType> entry : changes.entrySet()){
+                        String id = entry.getKey();
+                        if(r.contains(id)){
+                            affected.put(id, entry.getValue());
+                        }else if(entry.getValue() != ChangeType.DELETE){
+                            if(!r.hasFilters()){
+                                affected.put(id, entry.getValue());
+                                continue;
+                            }
+                            if(documents == null){
+                                documents = readDocuments(changes);
+                            }
+                            if(r.mayMatch(documents.get(id))){
+                                affected.put(id, entry.getValue());
+                            }
+                        }
+                    }
+                    if(affected.isEmpty()){
+                        continue;
+                    }
+                    if(r.shouldReload(affected.size())){
+                        r.reload();
+                    }else{
+                        r.applyChanges(affected);
+                    }
+                }catch(RuntimeException ex){
+                    LOGGER.log(Level.WARNING, "Can not refresh the cache data of " + clazz.getName() + ", region: " + r.getName(), ex);
                 }
-            };
-            timer.schedule(task, reloadDelay);
+            }
+            evictRegions(null);
+        }
+    }
+    
+    /**
+     * Read the current documents of the changed ids by one $in query, for the region filters. 
+     * The entities passed by listeners are not used, because they may arrive out of order.
+     * @param changes
+     * @return the documents still exist, by id
+     */
+    private Map<String, DBObject> readDocuments(Map<String, ChangeType> changes){
+        Map<String, DBObject> map = new HashMap<>();
+        List<Object> dbIds = new ArrayList<>();
+        for(Map.Entry<String, ChangeType> entry : changes.entrySet()){
+            if(entry.getValue() != ChangeType.DELETE){
+                dbIds.add(IdUtil.toDbId(clazz, entry.getKey()));
+            }
         }
-        else{
-            doReload();
+        if(dbIds.isEmpty()){
+            return map;
         }
+        DBCursor cursor = getCollection().find(new BasicDBObject(Operator.ID, new BasicDBObject(Operator.IN, dbIds)));
+        try{
+            for(DBObject dbo : cursor){
+                map.put(dbo.get(Operator.ID).toString(), dbo);
+            }
+        }finally{
+            cursor.close();
+        }
+        return map;
     }
     
-    private void doReload() {
-        BuguCache cache = BuguCache.getInstance();
-        String key = clazz.getName();
-        List<T> value = null;
-        if(cacheQuery == null){
-            value = this.findAll();
+    private void publish(Map<String, ChangeType> changes, boolean reload){
+        CacheTransport transport = BuguCache.getInstance().getTransport();
+        if(transport == null || (changes.isEmpty() && !reload)){
+            return;
+        }
+        InvalidationMessage message;
+        if(reload || changes.size() > MAX_MESSAGE_IDS){
+            message = InvalidationMessage.reload(clazz.getName());
         }else{
-            value = cacheQuery.results();
+            message = new InvalidationMessage(clazz.getName(), changes, false);
         }
-        cache.setValue(key, value);
+        try{
+            transport.publish(message);
+        }catch(RuntimeException ex){
+            LOGGER.log(Level.WARNING, "Can not notify the change of " + clazz.getName(), ex);
+        }
+    }
+    
+    private void startSweep(){
+        if(sweepInterval <= 0 || sweepTask != null){
+            return;
+        }
+        sweepTask = BuguCache.getInstance().getScheduler().scheduleWithFixedDelay(new Runnable(){
+            @Override
+            public void run(){
+                synchronized(lock){
+                    for(CacheRegion<T> r : regions.values()){
+                        if(!r.isLoaded()){
+                            continue;
+                        }
+                        try{
+                            r.reload();
+                        }catch(RuntimeException ex){
+                            LOGGER.log(Level.WARNING, "Can not sweep the cache data of " + clazz.getName() + ", region: " + r.getName(), ex);
+                        }
+                    }
+                }
+            }
+        }, sweepInterval, sweepInterval, TimeUnit.MILLISECONDS);
     }
     
 }
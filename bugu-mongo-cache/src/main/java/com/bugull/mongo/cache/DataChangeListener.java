@@ -32,17 +32,17 @@ public class DataChangeListener implements EntityListener {
 
     @Override
     public void entityInserted(BuguEntity entity) {
-        dao.dataChanged();
+        dao.dataChanged(entity, ChangeType.INSERT);
     }
 
     @Override
     public void entityUpdated(BuguEntity entity) {
-        dao.dataChanged();
+        dao.dataChanged(entity, ChangeType.UPDATE);
     }
 
     @Override
     public void entityDeleted(BuguEntity entity) {
-        dao.dataChanged();
+        dao.dataChanged(entity, ChangeType.DELETE);
     }
     
 }
@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) www.bugull.com
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bugull.mongo.cache;
+
+import java.lang.ref.Reference;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Cache of entities keyed by id, with bounded size and LRU eviction.
+ * 
+ * <p>The cached entity is shared by all readers, it should not be modified.</p>
+ * 
+ * @author Frank Wen(xbwen@hotmail.com)
+ */
+@SuppressWarnings("unchecked")
+public class IdCache<T> {
+    
+    private final int maxSize;
+    private final long expire;
+    private final ValueReference reference;
+    
+    //in access order, the eldest is the least recently used
+    private final LinkedHashMap<String, CacheEntry> map = new LinkedHashMap<>(16, 0.75f, true);
+    
+    //changed on every removal, to drop the value read from database before the removal
+    private long stamp;
+    
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+    
+    /**
+     * @param maxSize max number of entities
+     * @param expire time to live in milliseconds after put, 0 means never expire
+     * @param reference how the entities are referenced
+     */
+    public IdCache(int maxSize, long expire, ValueReference reference){
+        this.maxSize = maxSize;
+        this.expire = expire;
+        this.reference = reference;
+    }
+    
+    /**
+     * Get the cached entity.
+     * @param id
+     * @return null if not cached, expired, or cleared by GC
+     */
+    public synchronized T get(String id){
+        CacheEntry entry = map.get(id);
+        if(entry == null){
+            missCount++;
+            return null;
+        }
+        T value = entry.getValue();
+        if(value == null || entry.isExpired()){
+            map.remove(id);
+            evictionCount++;
+            missCount++;
+            return null;
+        }
+        hitCount++;
+        return value;
+    }
+    
+    /**
+     * Get the current stamp. Call this before reading the entity from database.
+     * @return 
+     */
+    public synchronized long getStamp(){
+        return stamp;
+    }
+    
+    /**
+     * Put the entity read from database. 
+     * It is ignored if any entity is removed from the cache after the stamp is got, 
+     * because the value may be older than the database.
+     * @param id
+     * @param value
+     * @param stamp the stamp got before reading
+     */
+    public synchronized void put(String id, T value, long stamp){
+        if(value == null || stamp != this.stamp){
+            return;
+        }
+        map.put(id, new CacheEntry(value));
+        if(map.size() > maxSize){
+            evict();
+        }
+    }
+    
+    public synchronized void remove(String id){
+        stamp++;
+        map.remove(id);
+    }
+    
+    public synchronized void clear(){
+        stamp++;
+        map.clear();
+    }
+    
+    public synchronized int size(){
+        return map.size();
+    }
+    
+    private void evict(){
+        //the entries cleared by GC go first, then the least recently used
+        Iterator<CacheEntry> it = map.values().iterator();
+        while(it.hasNext()){
+            if(it.next().getValue() == null){
+                it.remove();
+                evictionCount++;
+            }
+        }
+        it = map.values().iterator();
+        while(map.size() > maxSize && it.hasNext()){
+            it.next();
+            it.remove();
+            evictionCount++;
+        }
+    }
+
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+    
+    private final class CacheEntry {
+        
+        final Object value;  //the entity, or a reference to it
+        final long time;
+        
+        CacheEntry(T entity){
+            switch(reference){
+                case SOFT:
+                    value = new SoftReference<>(entity);
+                    break;
+                case WEAK:
+                    value = new WeakReference<>(entity);
+                    break;
+                default:
+                    value = entity;
+                    break;
+            }
+            time = System.currentTimeMillis();
+        }
+        
+        T getValue(){
+            if(value instanceof Reference){
+                return ((Reference<T>)value).get();
+            }
+            return (T)value;
+        }
+        
+        boolean isExpired(){
+            return expire > 0 && System.currentTimeMillis() - time > expire;
+        }
+        
+    }
+    
+}
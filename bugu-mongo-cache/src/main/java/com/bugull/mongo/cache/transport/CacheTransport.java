@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) www.bugull.com
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bugull.mongo.cache.transport;
+
+/**
+ * The transport to deliver the invalidation messages of cache data between the JVMs of a cluster.
+ * 
+ * <p>A transport skips the messages published by itself, because the changes have been applied locally.</p>
+ * 
+ * @author Frank Wen(xbwen@hotmail.com)
+ */
+public interface CacheTransport {
+    
+    /**
+     * Receive the messages of a cache, published by the other JVMs.
+     * @param cacheName the name of cache, usually the entity's class name
+     * @param listener 
+     */
+    public void subscribe(String cacheName, InvalidationListener listener);
+    
+    /**
+     * Send a message to the other JVMs.
+     * @param message 
+     */
+    public void publish(InvalidationMessage message);
+    
+    /**
+     * Stop receiving messages and release the resources.
+     */
+    public void close();
+    
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) www.bugull.com
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bugull.mongo.cache.transport;
+
+import com.bugull.mongo.cache.ChangeType;
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The message of changed entities, sent between JVMs. 
+ * It carries the ids and the kinds of changes, so the receiver can apply them one by one, 
+ * or it asks the receiver to reload all when the changes are unknown.
+ * 
+ * @author Frank Wen(xbwen@hotmail.com)
+ */
+public class InvalidationMessage {
+    
+    private String cacheName;
+    
+    private String source;
+    
+    private boolean reload;
+    
+    private Map<String, ChangeType> changes = new LinkedHashMap<>();
+    
+    public InvalidationMessage(){
+        
+    }
+    
+    public InvalidationMessage(String cacheName, Map<String, ChangeType> changes, boolean reload){
+        this.cacheName = cacheName;
+        this.changes = changes;
+        this.reload = reload;
+    }
+    
+    /**
+     * Create a message which asks the receiver to reload all cache data.
+     * @param cacheName
+     * @return 
+     */
+    public static InvalidationMessage reload(String cacheName){
+        return new InvalidationMessage(cacheName, Collections.<String, ChangeType>emptyMap(), true);
+    }
+    
+    public DBObject toDBObject(){
+        List<String> ids = new ArrayList<>();
+        List<String> types = new ArrayList<>();
+        //ids are not used as keys, because they may contain '.'
+        for(Map.Entry<String, ChangeType> entry : changes.entrySet()){
+            ids.add(entry.getKey());
+            types.add(entry.getValue().name());
+        }
+        DBObject dbo = new BasicDBObject();
+        dbo.put("cache", cacheName);
+        dbo.put("source", source);
+        dbo.put("reload", reload);
+        dbo.put("ids", ids);
+        dbo.put("types", types);
+        return dbo;
+    }
+    
+    public static InvalidationMessage fromDBObject(DBObject dbo){
+        InvalidationMessage message = new InvalidationMessage();
+        message.cacheName = (String)dbo.get("cache");
+        message.source = (String)dbo.get("source");
+        message.reload = Boolean.TRUE.equals(dbo.get("reload"));
+        List ids = (List)dbo.get("ids");
+        List types = (List)dbo.get("types");
+        if(ids != null && types != null){
+            for(int i=0; i<ids.size(); i++){
+                message.changes.put(ids.get(i).toString(), ChangeType.valueOf(types.get(i).toString()));
+            }
+        }
+        return message;
+    }
+
+    public String getCacheName() {
+        return cacheName;
+    }
+
+    public void setCacheName(String cacheName) {
+        this.cacheName = cacheName;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public void setSource(String source) {
+        this.source = source;
+    }
+
+    public boolean isReload() {
+        return reload;
+    }
+
+    public void setReload(boolean reload) {
+        this.reload = reload;
+    }
+
+    public Map<String, ChangeType> getChanges() {
+        return changes;
+    }
+
+    public void setChanges(Map<String, ChangeType> changes) {
+        this.changes = changes;
+    }
+    
+}
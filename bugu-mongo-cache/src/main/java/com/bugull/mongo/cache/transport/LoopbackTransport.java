@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) www.bugull.com
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bugull.mongo.cache.transport;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * The transport in a single JVM, mainly for test. The messages are delivered synchronously to the peers.
+ * <p>Create the first transport with new LoopbackTransport(), and the peers with new LoopbackTransport(first).</p>
+ * 
+ * @author Frank Wen(xbwen@hotmail.com)
+ */
+public class LoopbackTransport implements CacheTransport {
+    
+    private final String source = UUID.randomUUID().toString();
+    
+    private final List<LoopbackTransport> peers;
+    
+    private final ConcurrentHashMap<String, List<InvalidationListener>> listeners = new ConcurrentHashMap<>();
+    
+    public LoopbackTransport(){
+        peers = new CopyOnWriteArrayList<>();
+        peers.add(this);
+    }
+    
+    /**
+     * Create a transport which exchanges messages with the given one and its peers.
+     * @param peer 
+     */
+    public LoopbackTransport(LoopbackTransport peer){
+        peers = peer.peers;
+        peers.add(this);
+    }
+
+    @Override
+    public void subscribe(String cacheName, InvalidationListener listener) {
+        List<InvalidationListener> list = listeners.get(cacheName);
+        if(list == null){
+            list = new CopyOnWriteArrayList<>();
+            List<InvalidationListener> old = listeners.putIfAbsent(cacheName, list);
+            if(old != null){
+                list = old;
+            }
+        }
+        list.add(listener);
+    }
+
+    @Override
+    public void publish(InvalidationMessage message) {
+        message.setSource(source);
+        for(LoopbackTransport peer : peers){
+            if(peer != this){
+                peer.deliver(message);
+            }
+        }
+    }
+    
+    private void deliver(InvalidationMessage message){
+        List<InvalidationListener> list = listeners.get(message.getCacheName());
+        if(list != null){
+            for(InvalidationListener listener : list){
+                listener.onMessage(message);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        peers.remove(this);
+        listeners.clear();
+    }
+    
+}
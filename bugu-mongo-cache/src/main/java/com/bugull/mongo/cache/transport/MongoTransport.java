@@ -0,0 +1,259 @@
+/*
+ * Copyright (c) www.bugull.com
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bugull.mongo.cache.transport;
+
+import com.bugull.mongo.access.SequenceAllocator;
+import com.bugull.mongo.utils.Operator;
+import com.mongodb.BasicDBObject;
+import com.mongodb.CursorType;
+import com.mongodb.DB;
+import com.mongodb.DBCollection;
+import com.mongodb.DBCursor;
+import com.mongodb.DBObject;
+import com.mongodb.MongoCommandException;
+import com.mongodb.client.model.DBCollectionFindOptions;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The transport by a capped collection of MongoDB. Messages are inserted into the collection, 
+ * and read by a tailable cursor in a daemon thread. It needs no other service than MongoDB.
+ * 
+ * <p>Every message has a sequence number from a counter in bugu_counters. The cursor filters on it, not on _id, 
+ * because ObjectId is generated by client and is not in insertion order across JVMs. 
+ * When the cursor is re-opened, a window of recent sequences is read again, to cover the messages 
+ * whose sequence was taken before but inserted after, and the duplicates are skipped.</p>
+ * 
+ * @author Frank Wen(xbwen@hotmail.com)
+ */
+public class MongoTransport implements CacheTransport {
+    
+    private static final Logger LOGGER = Logger.getLogger("com.bugull.mongo");
+    
+    public final static String DEFAULT_COLLECTION = "bugu_cache_bus";
+    
+    public final static long DEFAULT_SIZE = 16L * 1024L * 1024L;
+    
+    private final static int NAMESPACE_EXISTS = 48;
+    
+    private final static long RETRY_DELAY = 1000L;
+    
+    private final static String SEQ = "seq";
+    
+    private final static int RESUME_WINDOW = 1000;
+    
+    private final String source = UUID.randomUUID().toString();
+    
+    private final DB db;
+    private final String collectionName;
+    private final long size;
+    
+    private final ConcurrentHashMap<String, List<InvalidationListener>> listeners = new ConcurrentHashMap<>();
+    
+    private DBCollection coll;
+    private DBCollection counters;
+    private Thread thread;
+    private volatile boolean closed;
+    private volatile DBCursor cursor;
+    
+    public MongoTransport(DB db){
+        this(db, DEFAULT_COLLECTION, DEFAULT_SIZE);
+    }
+    
+    /**
+     * @param db the database of the capped collection
+     * @param collectionName the name of the capped collection, it's created if not exists
+     * @param size the max size of the capped collection in bytes
+     */
+    public MongoTransport(DB db, String collectionName, long size){
+        this.db = db;
+        this.collectionName = collectionName;
+        this.size = size;
+    }
+
+    @Override
+    public void subscribe(String cacheName, InvalidationListener listener) {
+        List<InvalidationListener> list = listeners.get(cacheName);
+        if(list == null){
+            list = new CopyOnWriteArrayList<>();
+            List<InvalidationListener> old = listeners.putIfAbsent(cacheName, list);
+            if(old != null){
+                list = old;
+            }
+        }
+        list.add(listener);
+        startTailing();
+    }
+
+    @Override
+    public void publish(InvalidationMessage message) {
+        message.setSource(source);
+        DBObject dbo = message.toDBObject();
+        dbo.put(SEQ, nextSeq());
+        getCollection().insert(dbo);
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        DBCursor c = cursor;
+        if(c != null){
+            c.close();
+        }
+        synchronized(this){
+            if(thread != null){
+                thread.interrupt();
+                thread = null;
+            }
+        }
+        listeners.clear();
+    }
+    
+    private synchronized DBCollection getCollection(){
+        if(coll == null){
+            if(!db.collectionExists(collectionName)){
+                DBObject options = new BasicDBObject("capped", true).append("size", size);
+                try{
+                    db.createCollection(collectionName, options);
+                }catch(MongoCommandException ex){
+                    //created by another JVM at the same time
+                    if(ex.getErrorCode() != NAMESPACE_EXISTS){
+                        throw ex;
+                    }
+                }
+            }
+            coll = db.getCollection(collectionName);
+            counters = db.getCollection(SequenceAllocator.COUNTERS);
+        }
+        return coll;
+    }
+    
+    private long nextSeq(){
+        getCollection();
+        DBObject query = new BasicDBObject(Operator.ID, collectionName);
+        DBObject inc = new BasicDBObject(Operator.INC, new BasicDBObject(SEQ, 1L));
+        DBObject result = counters.findAndModify(query, null, null, false, inc, true, true);
+        return ((Number)result.get(SEQ)).longValue();
+    }
+    
+    private long currentSeq(){
+        getCollection();
+        DBObject result = counters.findOne(new BasicDBObject(Operator.ID, collectionName));
+        return result == null ? 0L : ((Number)result.get(SEQ)).longValue();
+    }
+    
+    private synchronized void startTailing(){
+        if(thread != null || closed){
+            return;
+        }
+        thread = new Thread(new Runnable(){
+            @Override
+            public void run(){
+                tail();
+            }
+        }, "bugu-cache-transport");
+        thread.setDaemon(true);
+        thread.start();
+    }
+    
+    private void tail(){
+        long lastSeq = -1;
+        long from = -1;
+        //the recent sequences read, to skip the duplicates when the cursor is re-opened
+        Set<Long> seen = new LinkedHashSet<>();
+        while(!closed){
+            try{
+                DBCollection c = getCollection();
+                if(lastSeq < 0){
+                    //only the messages after subscribing
+                    lastSeq = currentSeq();
+                    from = lastSeq;
+                    ensureNotEmpty(c);
+                }
+                DBObject query = new BasicDBObject(SEQ, new BasicDBObject(Operator.GT, from));
+                cursor = c.find(query, new DBCollectionFindOptions().cursorType(CursorType.TailableAwait));
+                //hasNext() blocks until new message arrives, and returns false when the cursor is dead
+                while(!closed && cursor.hasNext()){
+                    DBObject dbo = cursor.next();
+                    long seq = ((Number)dbo.get(SEQ)).longValue();
+                    if(!seen.add(seq)){
+                        continue;
+                    }
+                    if(seen.size() > RESUME_WINDOW){
+                        Iterator<Long> it = seen.iterator();
+                        it.next();
+                        it.remove();
+                    }
+                    lastSeq = Math.max(lastSeq, seq);
+                    dispatch(dbo);
+                }
+            }catch(RuntimeException ex){
+                if(!closed){
+                    LOGGER.log(Level.WARNING, "Error when tailing " + collectionName, ex);
+                }
+            }finally{
+                DBCursor c = cursor;
+                if(c != null){
+                    c.close();
+                }
+            }
+            from = Math.max(0L, lastSeq - RESUME_WINDOW);
+            //the cursor is dead, such as the collection is empty or the network is broken
+            try{
+                Thread.sleep(RETRY_DELAY);
+            }catch(InterruptedException ex){
+                break;
+            }
+        }
+    }
+    
+    /**
+     * A tailable cursor on empty capped collection is dead at once, so a placeholder without sequence is inserted.
+     */
+    private void ensureNotEmpty(DBCollection c){
+        if(c.findOne() == null){
+            c.insert(new BasicDBObject("source", source));
+        }
+    }
+    
+    private void dispatch(DBObject dbo){
+        String cacheName = (String)dbo.get("cache");
+        if(cacheName == null || source.equals(dbo.get("source"))){
+            return;
+        }
+        List<InvalidationListener> list = listeners.get(cacheName);
+        if(list == null){
+            return;
+        }
+        InvalidationMessage message = InvalidationMessage.fromDBObject(dbo);
+        for(InvalidationListener listener : list){
+            try{
+                listener.onMessage(message);
+            }catch(RuntimeException ex){
+                LOGGER.log(Level.WARNING, "Error when processing the message of " + cacheName, ex);
+            }
+        }
+    }
+    
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) www.bugull.com
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bugull.mongo.cache.transport;
+
+import com.bugull.mongo.cache.BuguCache;
+import com.bugull.mongo.cache.BuguCacheException;
+import com.mongodb.BasicDBObject;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.recipes.cache.ChildData;
+import org.apache.curator.framework.recipes.cache.NodeCache;
+import org.apache.curator.framework.recipes.cache.NodeCacheListener;
+import org.apache.curator.utils.CloseableUtils;
+import org.apache.zookeeper.CreateMode;
+
+/**
+ * The transport by ZooKeeper. Every cache has a node /bugu:cache:cacheName, and the message is written as the node's data.
+ * 
+ * <p>NodeCache only sees the latest data, so the messages may be merged when they come fast. 
+ * When the node's version shows some messages are missed, the receiver is asked to reload all.</p>
+ * 
+ * @author Frank Wen(xbwen@hotmail.com)
+ */
+public class ZooKeeperTransport implements CacheTransport {
+    
+    private static final Logger LOGGER = Logger.getLogger("com.bugull.mongo");
+    
+    private final String source = UUID.randomUUID().toString();
+    
+    private final CuratorFramework client;
+    
+    private final List<NodeCache> nodeCaches = new CopyOnWriteArrayList<>();
+    
+    public ZooKeeperTransport(CuratorFramework client){
+        this.client = client;
+    }
+
+    @Override
+    public void subscribe(final String cacheName, final InvalidationListener listener) {
+        String path = getPath(cacheName);
+        //create node if not exists
+        try {
+            if(client.checkExists().forPath(path) == null){
+                client.create().withMode(CreateMode.PERSISTENT).forPath(path);
+            }
+        } catch (Exception ex) {
+            throw new BuguCacheException(ex.getMessage());
+        }
+        //create and start NodeCache
+        final NodeCache nodeCache = new NodeCache(client, path);
+        try {
+            nodeCache.start(true);
+        } catch (Exception ex) {
+            throw new BuguCacheException(ex.getMessage());
+        }
+        nodeCaches.add(nodeCache);
+        ChildData initial = nodeCache.getCurrentData();
+        final int[] lastVersion = {initial == null ? -1 : initial.getStat().getVersion()};
+        //add NodeCache listener
+        nodeCache.getListenable().addListener(new NodeCacheListener(){
+            @Override
+            public void nodeChanged() throws Exception {
+                ChildData data = nodeCache.getCurrentData();
+                if(data == null){
+                    return;
+                }
+                int version = data.getStat().getVersion();
+                boolean missed = lastVersion[0] >= 0 && version > lastVersion[0] + 1;
+                lastVersion[0] = version;
+                InvalidationMessage message = parse(cacheName, data.getData());
+                if(missed || message == null){
+                    listener.onMessage(InvalidationMessage.reload(cacheName));
+                }
+                else if(!source.equals(message.getSource())){
+                    listener.onMessage(message);
+                }
+            }
+        });
+    }
+
+    @Override
+    public void publish(InvalidationMessage message) {
+        message.setSource(source);
+        byte[] data = message.toDBObject().toString().getBytes(StandardCharsets.UTF_8);
+        try {
+            client.setData().inBackground().forPath(getPath(message.getCacheName()), data);
+        } catch (Exception ex) {
+            throw new BuguCacheException(ex.getMessage());
+        }
+    }
+
+    @Override
+    public void close() {
+        for(NodeCache nodeCache : nodeCaches){
+            CloseableUtils.closeQuietly(nodeCache);
+        }
+        nodeCaches.clear();
+    }
+    
+    private String getPath(String cacheName){
+        return BuguCache.ZK_PREFIX + cacheName;
+    }
+    
+    /**
+     * @return null if the data is not a message, such as the timestamp written by old version
+     */
+    private InvalidationMessage parse(String cacheName, byte[] data){
+        if(data == null || data.length == 0){
+            return null;
+        }
+        try{
+            InvalidationMessage message = InvalidationMessage.fromDBObject(BasicDBObject.parse(new String(data, StandardCharsets.UTF_8)));
+            return cacheName.equals(message.getCacheName()) ? message : null;
+        }catch(RuntimeException ex){
+            LOGGER.log(Level.FINE, "Not an invalidation message on " + getPath(cacheName), ex);
+            return null;
+        }
+    }
+    
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) www.bugull.com
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bugull.mongo.cache;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+/**
+ *
+ * @author Frank Wen(xbwen@hotmail.com)
+ */
+public class CacheIndexTest {
+    
+    @Test
+    public void testNormalize(){
+        assertEquals(20L, CacheIndex.normalize(20));
+        assertEquals(20L, CacheIndex.normalize(20.0));
+        assertEquals(20L, CacheIndex.normalize(20.0f));
+        assertEquals(20.5, CacheIndex.normalize(20.5f));
+        assertEquals(Double.POSITIVE_INFINITY, CacheIndex.normalize(Double.POSITIVE_INFINITY));
+    }
+    
+    @Test
+    public void testHashIndex(){
+        CacheIndex<Category> index = new CacheIndex<>(Category.class, getList(), Collections.singleton("order"), Collections.<String>emptySet());
+        //a whole double matches an int field
+        assertArrayEquals(new int[]{1, 2}, index.findIn("order", Collections.singleton(CacheIndex.normalize(2.0))));
+        assertArrayEquals(new int[]{0}, index.findIn("order", Collections.singleton(CacheIndex.normalize(1))));
+        assertArrayEquals(new int[0], index.findIn("order", Collections.singleton(CacheIndex.normalize(2.5))));
+    }
+    
+    @Test
+    public void testSortedIndex(){
+        CacheIndex<Category> index = new CacheIndex<>(Category.class, getList(), Collections.<String>emptySet(), Collections.singleton("order"));
+        assertArrayEquals(new int[]{1, 2, 3}, index.findRange("order", CacheIndex.normalize(1.5f), false, CacheIndex.normalize(3.0), true));
+        assertArrayEquals(new int[]{0, 1, 2}, index.findRange("order", null, false, CacheIndex.normalize(3), false));
+        assertArrayEquals(new int[]{1, 2}, index.findIn("order", Collections.singleton(CacheIndex.normalize(2.0f))));
+    }
+    
+    @Test
+    public void testIntersect(){
+        assertArrayEquals(new int[]{2, 5}, CacheIndex.intersect(new int[]{1, 2, 5, 7}, new int[]{2, 3, 5}));
+        assertArrayEquals(new int[0], CacheIndex.intersect(new int[]{1}, new int[0]));
+    }
+    
+    private List<Category> getList(){
+        List<Category> list = new ArrayList<>();
+        int[] orders = {1, 2, 2, 3};
+        for(int i=0; i<orders.length; i++){
+            Category c = new Category();
+            c.setId(String.valueOf(i));
+            c.setOrder(orders[i]);
+            list.add(c);
+        }
+        return list;
+    }
+    
+}
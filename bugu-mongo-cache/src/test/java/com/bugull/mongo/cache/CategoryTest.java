@@ -15,6 +15,7 @@
  */
 package com.bugull.mongo.cache;
 
+import com.bugull.mongo.utils.SortUtil;
 import java.util.List;
 import org.junit.Test;
 
@@ -92,6 +93,72 @@ public class CategoryTest extends ReplicaSetBaseTest {
         disconnectDB();
     }
     
+    //@Test
+    public void testQueryCache(){
+        connectDB();
+        
+        BuguCache.getInstance().init();
+        
+        CacheableDao<Category> dao = new CacheableDao<Category>(Category.class){
+            {
+                addHashIndex("name");
+                addSortedIndex("order");
+            }
+        };
+        
+        List<Category> list1 = dao.queryCache().is("name", "Food").results();
+        System.out.println("Food size: " + list1.size());
+        
+        List<Category> list2 = dao.queryCache().in("name", "Food", "Books").between("order", 1, 3).sortDesc("order").results();
+        for(Category c : list2){
+            System.out.println("  name:" + c.getName());
+            System.out.println("  order:" + c.getOrder());
+        }
+        
+        long count = dao.queryCache().is("valid", Boolean.TRUE).greaterThan("order", 2).count();
+        System.out.println("count: " + count);
+        
+        BuguCache.getInstance().destroy();
+        
+        disconnectDB();
+    }
+    
+    //@Test
+    public void testCacheRegion() throws Exception {
+        connectDB();
+        
+        BuguCache cache = BuguCache.getInstance();
+        cache.init();
+        
+        //one region per name, at most 1000 entities in all regions
+        CacheableDao<Category> dao = new CacheableDao<Category>(Category.class){
+            {
+                addCacheRegion("food", query().is("name", "Food").sort(SortUtil.asc("order")));
+                addCacheRegion("books", query().is("name", "Books"));
+                setMaxCacheSize(1000);
+            }
+        };
+        
+        System.out.println("food size: " + dao.getCacheData("food").size());
+        System.out.println("books size: " + dao.getCacheData("books").size());
+        
+        //only the region "food" is refreshed
+        Category c = new Category();
+        c.setName("Food");
+        c.setOrder(99);
+        c.setValid(true);
+        dao.save(c);
+        Thread.sleep(1000);
+        System.out.println("food size: " + dao.getCacheData("food").size());
+        System.out.println("books size: " + dao.getCacheData("books").size());
+        
+        dao.remove(c);
+        
+        cache.destroy();
+        
+        disconnectDB();
+    }
+    
     //@Test
     public void testStandaloneChanged() throws Exception {
         connectDB();
@@ -126,6 +193,83 @@ public class CategoryTest extends ReplicaSetBaseTest {
         disconnectDB();
     }
     
+    //@Test
+    public void testDeltaChanged() throws Exception {
+        connectDB();
+        
+        BuguCache cache = BuguCache.getInstance();
+        cache.init();
+        
+        //no pagination, so the changes are applied in place, without reloading
+        CacheableDao<Category> dao = new CacheableDao<Category>(Category.class){
+            {
+                setCacheQuery(query().is("valid", Boolean.TRUE).sort(SortUtil.asc("order")));
+                setSweepInterval(60L * 1000L);
+            }
+        };
+        
+        List<Category> list1 = dao.getCacheData();
+        System.out.println("list size: " + list1.size());
+        
+        Category c = new Category();
+        c.setName("Toys");
+        c.setOrder(0);
+        c.setValid(true);
+        dao.save(c);
+        Thread.sleep(1000);
+        List<Category> list2 = dao.getCacheData();
+        System.out.println("list size after insert: " + list2.size());
+        System.out.println("first name: " + list2.get(0).getName());
+        
+        dao.update().set("valid", Boolean.FALSE).execute(c);
+        Thread.sleep(1000);
+        System.out.println("list size after invalid: " + dao.getCacheData().size());
+        
+        dao.remove(c);
+        Thread.sleep(1000);
+        System.out.println("list size after remove: " + dao.getCacheData().size());
+        
+        cache.destroy();
+        
+        disconnectDB();
+    }
+    
+    //@Test
+    public void testBurstChanged() throws Exception {
+        connectDB();
+        
+        BuguCache cache = BuguCache.getInstance();
+        cache.init();
+        
+        //the burst of changes in 500ms is applied by one refresh
+        CacheableDao<Category> dao = new CacheableDao<Category>(Category.class){
+            {
+                setReloadDelay(500L);
+            }
+        };
+        
+        List<Category> list1 = dao.getCacheData();
+        System.out.println("list size: " + list1.size());
+        
+        Category c = new Category();
+        c.setName("Toys");
+        c.setValid(true);
+        dao.save(c);
+        for(int i=0; i<1000; i++){
+            dao.update().set("order", i).execute(c);
+        }
+        Thread.sleep(3000);
+        
+        List<Category> list2 = dao.getCacheData();
+        System.out.println("list size: " + list2.size());
+        
+        dao.remove(c);
+        
+        cache.destroy();
+        
+        disconnectDB();
+    }
+    
     //@Test
     public void testClusterChanged() throws Exception {
         connectDB();
@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) www.bugull.com
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bugull.mongo.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import org.junit.Test;
+
+/**
+ *
+ * @author Frank Wen(xbwen@hotmail.com)
+ */
+public class IdCacheTest {
+    
+    @Test
+    public void testEviction(){
+        IdCache<Category> cache = new IdCache<>(2, 0, ValueReference.STRONG);
+        Category c1 = new Category();
+        Category c2 = new Category();
+        Category c3 = new Category();
+        cache.put("1", c1, cache.getStamp());
+        cache.put("2", c2, cache.getStamp());
+        //"1" becomes the most recently used
+        assertSame(c1, cache.get("1"));
+        cache.put("3", c3, cache.getStamp());
+        assertNull(cache.get("2"));
+        assertSame(c1, cache.get("1"));
+        assertSame(c3, cache.get("3"));
+        assertEquals(3, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1, cache.getEvictionCount());
+    }
+    
+    @Test
+    public void testStamp(){
+        IdCache<Category> cache = new IdCache<>(10, 0, ValueReference.SOFT);
+        long stamp = cache.getStamp();
+        //the entity is written while reading it from database
+        cache.remove("1");
+        cache.put("1", new Category(), stamp);
+        assertNull(cache.get("1"));
+        assertEquals(0, cache.size());
+    }
+    
+    @Test
+    public void testExpire() throws Exception {
+        IdCache<Category> cache = new IdCache<>(10, 50, ValueReference.STRONG);
+        cache.put("1", new Category(), cache.getStamp());
+        Thread.sleep(100);
+        assertNull(cache.get("1"));
+        assertEquals(1, cache.getEvictionCount());
+    }
+    
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) www.bugull.com
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bugull.mongo.cache.transport;
+
+import com.bugull.mongo.BuguFramework;
+import com.bugull.mongo.cache.ChangeType;
+import com.bugull.mongo.cache.ReplicaSetBaseTest;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ *
+ * @author Frank Wen(xbwen@hotmail.com)
+ */
+public class TransportTest extends ReplicaSetBaseTest {
+    
+    @Test
+    public void testMessage(){
+        Map<String, ChangeType> changes = new LinkedHashMap<>();
+        changes.put("a.1", ChangeType.INSERT);
+        changes.put("b", ChangeType.DELETE);
+        InvalidationMessage message = new InvalidationMessage("Category", changes, false);
+        message.setSource("node");
+        InvalidationMessage copy = InvalidationMessage.fromDBObject(message.toDBObject());
+        assertEquals("Category", copy.getCacheName());
+        assertEquals("node", copy.getSource());
+        assertEquals(changes, copy.getChanges());
+        assertTrue(InvalidationMessage.fromDBObject(InvalidationMessage.reload("Category").toDBObject()).isReload());
+    }
+    
+    @Test
+    public void testLoopback(){
+        LoopbackTransport node1 = new LoopbackTransport();
+        LoopbackTransport node2 = new LoopbackTransport(node1);
+        final List<InvalidationMessage> received1 = new ArrayList<>();
+        final List<InvalidationMessage> received2 = new ArrayList<>();
+        node1.subscribe("Category", new InvalidationListener(){
+            @Override
+            public void onMessage(InvalidationMessage message) {
+                received1.add(message);
+            }
+        });
+        node2.subscribe("Category", new InvalidationListener(){
+            @Override
+            public void onMessage(InvalidationMessage message) {
+                received2.add(message);
+            }
+        });
+        node1.publish(InvalidationMessage.reload("Category"));
+        node1.publish(InvalidationMessage.reload("Product"));
+        //the message is not delivered to the sender itself
+        assertEquals(0, received1.size());
+        assertEquals(1, received2.size());
+        node2.close();
+        node1.publish(InvalidationMessage.reload("Category"));
+        assertEquals(1, received2.size());
+    }
+    
+    //@Test
+    public void testMongoTransport() throws Exception {
+        connectDB();
+        
+        MongoTransport node1 = new MongoTransport(BuguFramework.getInstance().getConnection().getDB());
+        MongoTransport node2 = new MongoTransport(BuguFramework.getInstance().getConnection().getDB());
+        node2.subscribe("Category", new InvalidationListener(){
+            @Override
+            public void onMessage(InvalidationMessage message) {
+                System.out.println("received: " + message.getChanges());
+            }
+        });
+        //wait for the tailable cursor
+        Thread.sleep(1000);
+        
+        Map<String, ChangeType> changes = new LinkedHashMap<>();
+        changes.put("5c2f3a0e8d1c2a0001a1b2c3", ChangeType.UPDATE);
+        node1.publish(new InvalidationMessage("Category", changes, false));
+        Thread.sleep(1000);
+        
+        node1.close();
+        node2.close();
+        
+        disconnectDB();
+    }
+    
+}
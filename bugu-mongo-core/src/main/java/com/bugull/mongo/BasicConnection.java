@@ -15,13 +15,17 @@
  */
 package com.bugull.mongo;
 
+import com.bugull.mongo.codec.EntityCodecProvider;
 import com.bugull.mongo.exception.BuguException;
+import com.bugull.mongo.instrument.InstrumentCommandListener;
 import com.mongodb.DB;
 import com.mongodb.MongoClient;
 import com.mongodb.MongoClientOptions;
 import com.mongodb.MongoCredential;
 import com.mongodb.ServerAddress;
 import java.util.List;
+import org.bson.codecs.configuration.CodecRegistries;
+import org.bson.codecs.configuration.CodecRegistry;
 
 /**
  * Basic implement of BuguConnection, create by BuguFramework.
@@ -109,27 +113,31 @@ class BasicConnection implements BuguConnection {
         if(options == null){
             options = MongoClientOptions.builder().build();
         }
+        //register codec for entity classes, so that MongoCollection<T> can read and write entity directly.
+        CodecRegistry registry = CodecRegistries.fromRegistries(CodecRegistries.fromProviders(new EntityCodecProvider()), options.getCodecRegistry());
+        //the listener does nothing until an instrumentation is registered to Instrumentor
+        MongoClientOptions clientOptions = MongoClientOptions.builder(options).codecRegistry(registry).addCommandListener(new InstrumentCommandListener()).build();
         if(host != null){
             ServerAddress sa = new ServerAddress(host, port);
             if(credentialList != null){
-                mongoClient = new MongoClient(sa, credentialList, options);
+                mongoClient = new MongoClient(sa, credentialList, clientOptions);
             }
             else if(credential != null){
-                mongoClient = new MongoClient(sa, credential, options);
+                mongoClient = new MongoClient(sa, credential, clientOptions);
             }
             else{
-                mongoClient = new MongoClient(sa, options);
+                mongoClient = new MongoClient(sa, clientOptions);
             }
         }
         else if(serverList != null){
             if(credentialList != null){
-                mongoClient = new MongoClient(serverList, credentialList, options);
+                mongoClient = new MongoClient(serverList, credentialList, clientOptions);
             }
             else if(credential != null){
-                mongoClient = new MongoClient(serverList, credential, options);
+                mongoClient = new MongoClient(serverList, credential, clientOptions);
             }
             else{
-                mongoClient = new MongoClient(serverList, options);
+                mongoClient = new MongoClient(serverList, clientOptions);
             }
         }
         else{
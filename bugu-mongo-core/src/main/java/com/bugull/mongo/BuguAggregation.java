@@ -29,6 +29,9 @@ import com.mongodb.DBObject;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.stream.Stream;
 
 /**
  * Convenient class for creating aggregating operation.
@@ -41,6 +44,7 @@ public class BuguAggregation<T> implements Parallelable {
     private final List<DBObject> pipeline = new ArrayList<>();
     
     private AggregationOptions options;
+    private int batchSize;  //default value is zero, means decided by server
     
     public BuguAggregation(DBCollection coll){
         this.coll = coll;
@@ -51,6 +55,16 @@ public class BuguAggregation<T> implements Parallelable {
         return this;
     }
     
+    /**
+     * Number of documents to return per batch. It's ignored if AggregationOptions is set.
+     * @param batchSize
+     * @return 
+     */
+    public BuguAggregation batchSize(int batchSize){
+        this.batchSize = batchSize;
+        return this;
+    }
+    
     /**
      * @since mongoDB 3.4
      * @param dbo
@@ -264,12 +278,20 @@ public class BuguAggregation<T> implements Parallelable {
         return this;
     }
     
+    private AggregationOptions getOptions(){
+        if(options != null){
+            return options;
+        }
+        AggregationOptions.Builder builder = AggregationOptions.builder();
+        if(batchSize > 0){
+            builder.batchSize(batchSize);
+        }
+        return builder.build();
+    }
+    
     @Override
     public Iterable<DBObject> results(){
-        if(options == null){
-            options = AggregationOptions.builder().build();
-        }
-        final Iterator<DBObject> it = coll.aggregate(pipeline, options);
+        final Iterator<DBObject> it = coll.aggregate(pipeline, getOptions());
         return new Iterable<DBObject>() {
             @Override
             public Iterator<DBObject> iterator() {
@@ -278,6 +300,49 @@ public class BuguAggregation<T> implements Parallelable {
         };
     }
     
+    /**
+     * Get the results as a closeable cursor. Remember to close the cursor if you don't read all the results.
+     * @return 
+     */
+    public BuguCursor<DBObject> cursor(){
+        return new BuguCursor<DBObject>(coll.aggregate(pipeline, getOptions()), 0){
+            @Override
+            protected DBObject decode(Object item) {
+                return (DBObject)item;
+            }
+        };
+    }
+    
+    /**
+     * Get the results as a stream. Close the stream(or use try-with-resources) if you don't read all the results.
+     * @return 
+     */
+    public Stream<DBObject> stream(){
+        return cursor().stream();
+    }
+    
+    /**
+     * Get the results as a Reactive Streams publisher. The documents are read on demand, by the executor of BuguFramework.
+     * @return 
+     */
+    public BuguPublisher<DBObject> publisher(){
+        return publisher(BuguFramework.getInstance().getExecutor());
+    }
+    
+    /**
+     * Get the results as a Reactive Streams publisher. The documents are read on demand.
+     * @param executor the executor to read the cursor and send signals
+     * @return 
+     */
+    public BuguPublisher<DBObject> publisher(Executor executor){
+        return new BuguPublisher<DBObject>(new Callable<BuguCursor<DBObject>>(){
+            @Override
+            public BuguCursor<DBObject> call(){
+                return cursor();
+            }
+        }, executor);
+    }
+    
     @Override
     public String toString(){
         StringBuilder sb = new StringBuilder();
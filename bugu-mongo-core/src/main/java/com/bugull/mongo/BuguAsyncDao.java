@@ -0,0 +1,291 @@
+/*
+ * Copyright (c) www.bugull.com
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bugull.mongo;
+
+import com.bugull.mongo.mapper.CascadeFetcher;
+import com.mongodb.DBObject;
+import com.mongodb.WriteResult;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+
+/**
+ * Asynchronous mirror of BuguDao. Every method returns a CompletableFuture at once.
+ * 
+ * <p>The operations run on the shared executor of BuguFramework, which uses virtual threads where the JDK supports, 
+ * so a waiting operation does not hold a platform thread. The BuguSession of the calling thread is bound 
+ * to the operation too.</p>
+ * 
+ * <pre>
+ * BuguAsyncDao&lt;Order&gt; asyncDao = orderDao.async();
+ * asyncDao.resultsAsync(orderDao.query().is("status", 1), "user", "productList")
+ *         .thenAccept(list -&gt; ...);
+ * </pre>
+ * 
+ * @author Frank Wen(xbwen@hotmail.com)
+ */
+public class BuguAsyncDao<T> {
+    
+    private final BuguDao<T> dao;
+    
+    private final Executor executor;
+    
+    public BuguAsyncDao(BuguDao<T> dao){
+        this(dao, BuguFramework.getInstance().getExecutor());
+    }
+    
+    public BuguAsyncDao(BuguDao<T> dao, Executor executor){
+        this.dao = dao;
+        this.executor = executor;
+    }
+    
+    public BuguDao<T> getDao() {
+        return dao;
+    }
+    
+    public CompletableFuture<T> findOneAsync(final String id){
+        return supply(new Callable<T>(){
+            @Override
+            public T call(){
+                return dao.findOne(id);
+            }
+        });
+    }
+    
+    public CompletableFuture<T> findOneAsync(final String key, final Object value){
+        return supply(new Callable<T>(){
+            @Override
+            public T call(){
+                return dao.findOne(key, value);
+            }
+        });
+    }
+    
+    public CompletableFuture<T> resultAsync(final BuguQuery<T> query){
+        return supply(new Callable<T>(){
+            @Override
+            public T call(){
+                return query.result();
+            }
+        });
+    }
+    
+    public CompletableFuture<List<T>> resultsAsync(final BuguQuery<T> query){
+        return supply(new Callable<List<T>>(){
+            @Override
+            public List<T> call(){
+                return query.results();
+            }
+        });
+    }
+    
+    /**
+     * Query, then fetch the cascade fields of the result list. 
+     * @param query
+     * @param names the cascade fields' names, as BuguMapper.fetchCascade()
+     * @return 
+     */
+    public CompletableFuture<List<T>> resultsAsync(BuguQuery<T> query, final String... names){
+        return resultsAsync(query).thenCompose(new Function<List<T>, CompletableFuture<List<T>>>(){
+            @Override
+            public CompletableFuture<List<T>> apply(List<T> list){
+                return fetchCascadeAsync(list, names);
+            }
+        });
+    }
+    
+    public CompletableFuture<Long> countAsync(final BuguQuery<T> query){
+        return supply(new Callable<Long>(){
+            @Override
+            public Long call(){
+                return query.count();
+            }
+        });
+    }
+    
+    public CompletableFuture<WriteResult> insertAsync(final T t){
+        return supply(new Callable<WriteResult>(){
+            @Override
+            public WriteResult call(){
+                return dao.insert(t);
+            }
+        });
+    }
+    
+    public CompletableFuture<WriteResult> insertAsync(final List<T> list){
+        return supply(new Callable<WriteResult>(){
+            @Override
+            public WriteResult call(){
+                return dao.insert(list);
+            }
+        });
+    }
+    
+    public CompletableFuture<WriteResult> saveAsync(final T t){
+        return supply(new Callable<WriteResult>(){
+            @Override
+            public WriteResult call(){
+                return dao.save(t);
+            }
+        });
+    }
+    
+    public CompletableFuture<WriteResult> removeAsync(final String id){
+        return supply(new Callable<WriteResult>(){
+            @Override
+            public WriteResult call(){
+                return dao.remove(id);
+            }
+        });
+    }
+    
+    public CompletableFuture<WriteResult> removeAsync(final BuguQuery<T> query){
+        return supply(new Callable<WriteResult>(){
+            @Override
+            public WriteResult call(){
+                return dao.remove(query);
+            }
+        });
+    }
+    
+    /**
+     * Execute the update operation on a single entity.
+     * @param updater
+     * @param id
+     * @return 
+     */
+    public CompletableFuture<WriteResult> executeAsync(final BuguUpdater<T> updater, final String id){
+        return supply(new Callable<WriteResult>(){
+            @Override
+            public WriteResult call(){
+                return updater.execute(id);
+            }
+        });
+    }
+    
+    /**
+     * Execute the update operation on the entities match the query.
+     * @param updater
+     * @param query
+     * @return 
+     */
+    public CompletableFuture<WriteResult> executeAsync(final BuguUpdater<T> updater, final BuguQuery<T> query){
+        return supply(new Callable<WriteResult>(){
+            @Override
+            public WriteResult call(){
+                return updater.execute(query);
+            }
+        });
+    }
+    
+    /**
+     * Execute the aggregation. All the results are read in the executor, so the cursor is not used by the caller's thread.
+     * @param aggregation
+     * @return 
+     */
+    public CompletableFuture<List<DBObject>> aggregateAsync(final BuguAggregation<T> aggregation){
+        return supply(new Callable<List<DBObject>>(){
+            @Override
+            public List<DBObject> call(){
+                List<DBObject> list = new ArrayList<>();
+                for(DBObject dbo : aggregation.results()){
+                    list.add(dbo);
+                }
+                return list;
+            }
+        });
+    }
+    
+    /**
+     * Fetch the cascade fields of a list. The paths under different fields are fetched concurrently, 
+     * each level by one query per entity class.
+     * @param list
+     * @param names the cascade fields' names, as BuguMapper.fetchCascade()
+     * @return the future of the same list
+     */
+    public CompletableFuture<List<T>> fetchCascadeAsync(final List<T> list, String... names){
+        if(list == null || list.isEmpty() || names.length == 0){
+            return CompletableFuture.completedFuture(list);
+        }
+        //the paths under the same top field set the same field, so they are fetched together
+        Map<String, List<String>> groups = new LinkedHashMap<>();
+        for(String name : names){
+            int index = name.indexOf(".");
+            String top = index > 0 ? name.substring(0, index) : name;
+            List<String> group = groups.get(top);
+            if(group == null){
+                group = new ArrayList<>();
+                groups.put(top, group);
+            }
+            group.add(name);
+        }
+        List<CompletableFuture<List<T>>> futures = new ArrayList<>();
+        for(List<String> group : groups.values()){
+            final CascadeFetcher fetcher = new CascadeFetcher(group.toArray(new String[group.size()]));
+            futures.add(supply(new Callable<List<T>>(){
+                @Override
+                public List<T> call(){
+                    fetcher.fetch(list);
+                    return list;
+                }
+            }));
+        }
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[futures.size()])).thenApply(new Function<Void, List<T>>(){
+            @Override
+            public List<T> apply(Void v){
+                return list;
+            }
+        });
+    }
+    
+    private <R> CompletableFuture<R> supply(final Callable<R> task){
+        final BuguSession session = BuguSession.current();
+        final CompletableFuture<R> future = new CompletableFuture<>();
+        try{
+            executor.execute(new Runnable(){
+                @Override
+                public void run(){
+                    //the executor may run the task in a thread which has its own session, such as the caller's thread
+                    BuguSession previous = BuguSession.current();
+                    if(session != null){
+                        session.bind();
+                    }
+                    try{
+                        future.complete(task.call());
+                    }catch(Throwable ex){
+                        future.completeExceptionally(ex);
+                    }finally{
+                        if(previous != null){
+                            previous.bind();
+                        }else if(session != null){
+                            session.unbind();
+                        }
+                    }
+                }
+            });
+        }catch(RuntimeException ex){
+            future.completeExceptionally(ex);
+        }
+        return future;
+    }
+    
+}
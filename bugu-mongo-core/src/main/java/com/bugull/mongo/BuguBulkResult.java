@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) www.bugull.com
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bugull.mongo;
+
+import com.mongodb.BulkWriteResult;
+
+/**
+ * The aggregated result of all the flushes of a BuguBulkWriter.
+ * 
+ * @author Frank Wen(xbwen@hotmail.com)
+ */
+public class BuguBulkResult {
+    
+    private int insertedCount;
+    private int matchedCount;
+    private int modifiedCount;
+    private int removedCount;
+    private int upsertedCount;
+    private int flushCount;
+    
+    void add(BulkWriteResult wr){
+        flushCount++;
+        //no count for unacknowledged write
+        if(!wr.isAcknowledged()){
+            return;
+        }
+        insertedCount += wr.getInsertedCount();
+        matchedCount += wr.getMatchedCount();
+        removedCount += wr.getRemovedCount();
+        upsertedCount += wr.getUpserts().size();
+        if(wr.isModifiedCountAvailable()){
+            modifiedCount += wr.getModifiedCount();
+        }
+    }
+
+    public int getInsertedCount() {
+        return insertedCount;
+    }
+
+    public int getMatchedCount() {
+        return matchedCount;
+    }
+
+    public int getModifiedCount() {
+        return modifiedCount;
+    }
+
+    public int getRemovedCount() {
+        return removedCount;
+    }
+
+    public int getUpsertedCount() {
+        return upsertedCount;
+    }
+
+    public int getFlushCount() {
+        return flushCount;
+    }
+    
+}
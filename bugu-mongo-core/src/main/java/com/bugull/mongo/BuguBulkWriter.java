@@ -0,0 +1,488 @@
+/*
+ * Copyright (c) www.bugull.com
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bugull.mongo;
+
+import com.bugull.mongo.annotations.Id;
+import com.bugull.mongo.annotations.IdType;
+import com.bugull.mongo.cache.FieldsCache;
+import com.bugull.mongo.utils.IdUtil;
+import com.bugull.mongo.utils.MapperUtil;
+import com.bugull.mongo.utils.Operator;
+import com.bugull.mongo.utils.StringUtil;
+import com.mongodb.BasicDBObject;
+import com.mongodb.BulkUpdateRequestBuilder;
+import com.mongodb.BulkWriteError;
+import com.mongodb.BulkWriteException;
+import com.mongodb.BulkWriteOperation;
+import com.mongodb.BulkWriteRequestBuilder;
+import com.mongodb.BulkWriteResult;
+import com.mongodb.DBCollection;
+import com.mongodb.DBCursor;
+import com.mongodb.DBObject;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Accumulate write operations, and send them to mongoDB by bulk write.
+ * 
+ * <p>The operations are flushed automatically when the number of them reaches the batch size. 
+ * Call flush() at the end to send the rest. The listeners are notified after each flush.</p>
+ * 
+ * <pre>
+ * BuguBulkWriter&lt;Foo&gt; writer = dao.bulkWriter().ordered(false).batchSize(500);
+ * writer.insert(foo1);
+ * writer.update(id, dao.update().inc("count", 1));
+ * writer.remove(foo2);
+ * BuguBulkResult result = writer.flush();
+ * </pre>
+ * 
+ * <p>The writer is not thread-safe.</p>
+ * 
+ * @author Frank Wen(xbwen@hotmail.com)
+ */
+@SuppressWarnings("unchecked")
+public class BuguBulkWriter<T> {
+    
+    private final BuguDao<T> dao;
+    
+    private boolean ordered = true;
+    
+    private int batchSize = 1000;
+    
+    private List<Operation> pending = new ArrayList<>();
+    
+    private final BuguBulkResult result = new BuguBulkResult();
+    
+    public BuguBulkWriter(BuguDao<T> dao){
+        this.dao = dao;
+    }
+    
+    /**
+     * If true, the operations are executed in order, and stop at the first error. 
+     * If false, mongoDB may execute them in any order, and continue after error. Default is true.
+     * @param ordered
+     * @return 
+     */
+    public BuguBulkWriter<T> ordered(boolean ordered){
+        this.ordered = ordered;
+        return this;
+    }
+    
+    /**
+     * Number of operations to send by one flush. Default is 1000.
+     * @param batchSize
+     * @return 
+     */
+    public BuguBulkWriter<T> batchSize(int batchSize){
+        this.batchSize = batchSize;
+        return this;
+    }
+    
+    /**
+     * Insert an entity. The id is set to the entity at once.
+     * @param t
+     * @return 
+     */
+    public BuguBulkWriter<T> insert(T t){
+        BuguEntity ent = (BuguEntity)t;
+        DBObject dbo = MapperUtil.toDBObject(t);
+        ent.setId(dbo.get(Operator.ID).toString());
+        Operation op = new Operation(Operation.INSERT);
+        op.id = ent.getId();
+        op.doc = dbo;
+        op.entity = ent;
+        return add(op);
+    }
+    
+    /**
+     * Insert a list of entities.
+     * @param list
+     * @return 
+     */
+    public BuguBulkWriter<T> insert(List<T> list){
+        if(getIdType() == IdType.AUTO_INCREASE){
+            dao.assignIncreaseIds(list);
+        }
+        for(T t : list){
+            insert(t);
+        }
+        return this;
+    }
+    
+    /**
+     * Save an entity. If no id in it, insert it, otherwise replace the document with the same id, or insert if not exists.
+     * @param t
+     * @return 
+     */
+    public BuguBulkWriter<T> save(T t){
+        BuguEntity ent = (BuguEntity)t;
+        if(StringUtil.isEmpty(ent.getId())){
+            return insert(t);
+        }
+        Operation op = new Operation(Operation.REPLACE);
+        op.id = ent.getId();
+        op.query = idQuery(op.id);
+        op.doc = MapperUtil.toDBObject(t);
+        op.entity = ent;
+        return add(op);
+    }
+    
+    /**
+     * Update an entity by the modifier of BuguUpdater.
+     * @param id
+     * @param updater
+     * @return 
+     */
+    public BuguBulkWriter<T> update(String id, BuguUpdater<T> updater){
+        Operation op = new Operation(Operation.UPDATE);
+        op.id = id;
+        op.query = idQuery(id);
+        op.doc = updater.getModifier();
+        return add(op);
+    }
+    
+    /**
+     * Update an entity by the modifier of BuguUpdater.
+     * @param t
+     * @param updater
+     * @return 
+     */
+    public BuguBulkWriter<T> update(T t, BuguUpdater<T> updater){
+        return update(((BuguEntity)t).getId(), updater);
+    }
+    
+    /**
+     * Update all entities match the query.
+     * @param query
+     * @param updater
+     * @return 
+     */
+    public BuguBulkWriter<T> update(BuguQuery<T> query, BuguUpdater<T> updater){
+        Operation op = new Operation(Operation.UPDATE);
+        op.multi = true;
+        op.query = query.getCondition();
+        op.doc = updater.getModifier();
+        return add(op);
+    }
+    
+    /**
+     * Update an entity by the modifier of BuguUpdater, or insert one if not exists.
+     * @param id
+     * @param updater
+     * @return 
+     */
+    public BuguBulkWriter<T> upsert(String id, BuguUpdater<T> updater){
+        Operation op = new Operation(Operation.UPDATE);
+        op.upsert = true;
+        op.id = id;
+        op.query = idQuery(id);
+        op.doc = updater.getModifier();
+        return add(op);
+    }
+    
+    /**
+     * Remove an entity.
+     * @param t
+     * @return 
+     */
+    public BuguBulkWriter<T> remove(T t){
+        return remove(((BuguEntity)t).getId());
+    }
+    
+    /**
+     * Remove an entity by id.
+     * @param id
+     * @return 
+     */
+    public BuguBulkWriter<T> remove(String id){
+        Operation op = new Operation(Operation.REMOVE);
+        op.id = id;
+        op.query = idQuery(id);
+        return add(op);
+    }
+    
+    /**
+     * Remove all entities match the query.
+     * @param query
+     * @return 
+     */
+    public BuguBulkWriter<T> remove(BuguQuery<T> query){
+        Operation op = new Operation(Operation.REMOVE);
+        op.multi = true;
+        op.query = query.getCondition();
+        return add(op);
+    }
+    
+    /**
+     * Number of operations not flushed.
+     * @return 
+     */
+    public int getPendingCount(){
+        return pending.size();
+    }
+    
+    /**
+     * Send all pending operations to mongoDB.
+     * <p>The entities to notify on remove are read before the write. So the operations are sent by more than one bulk write, 
+     * split at the remove or multi update which may touch the documents inserted earlier in the same flush. 
+     * If a bulk write fails, the later ones are not sent.</p>
+     * @return the aggregated result of all flushes
+     */
+    public BuguBulkResult flush(){
+        if(pending.isEmpty()){
+            return result;
+        }
+        List<Operation> ops = pending;
+        pending = new ArrayList<>();
+        int from = 0;
+        Set<String> written = new HashSet<>();  //ids inserted or upserted in current bulk
+        boolean inserted = false;
+        for(int i=0; i<ops.size(); i++){
+            Operation op = ops.get(i);
+            boolean depends;
+            if(op.multi){
+                depends = (op.type == Operation.REMOVE || op.type == Operation.UPDATE) && inserted;
+            }else{
+                depends = op.type == Operation.REMOVE && written.contains(op.id);
+            }
+            if(depends){
+                execute(ops.subList(from, i));
+                from = i;
+                written.clear();
+                inserted = false;
+            }
+            if(op.type == Operation.INSERT || op.type == Operation.REPLACE || op.upsert){
+                inserted = true;
+                if(op.id != null){
+                    written.add(op.id);
+                }
+            }
+        }
+        execute(ops.subList(from, ops.size()));
+        return result;
+    }
+    
+    /**
+     * Get the aggregated result of all flushes.
+     * @return 
+     */
+    public BuguBulkResult getResult(){
+        return result;
+    }
+    
+    private void execute(List<Operation> ops){
+        DBCollection coll = dao.getCollection();
+        boolean notifyUpdated = dao.hasCustomListener;
+        boolean notifyDeleted = !dao.listenerList.isEmpty();
+        //the entities to notify after remove are read before the write
+        List<Object> removedIds = new ArrayList<>();
+        BulkWriteOperation bulk = ordered ? coll.initializeOrderedBulkOperation() : coll.initializeUnorderedBulkOperation();
+        for(Operation op : ops){
+            switch(op.type){
+                case Operation.INSERT:
+                    bulk.insert(op.doc);
+                    break;
+                case Operation.REPLACE:
+                    bulk.find(op.query).upsert().replaceOne(op.doc);
+                    break;
+                case Operation.UPDATE:
+                    if(notifyUpdated && op.multi){
+                        op.updatedIds = coll.distinct(Operator.ID, op.query);
+                    }
+                    addUpdate(bulk.find(op.query), op);
+                    break;
+                case Operation.REMOVE:
+                    if(notifyDeleted){
+                        if(op.multi){
+                            op.removed = MapperUtil.toList(dao.getEntityClass(), coll.find(op.query));
+                        }else{
+                            removedIds.add(op.query.get(Operator.ID));
+                        }
+                    }
+                    if(op.multi){
+                        bulk.find(op.query).remove();
+                    }else{
+                        bulk.find(op.query).removeOne();
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+        if(!removedIds.isEmpty()){
+            Map<String, T> map = new HashMap<>();
+            for(T t : findByIds(coll, removedIds)){
+                map.put(((BuguEntity)t).getId(), t);
+            }
+            for(Operation op : ops){
+                if(op.type == Operation.REMOVE && !op.multi && map.containsKey(op.id)){
+                    op.removed = Collections.singletonList(map.get(op.id));
+                }
+            }
+        }
+        BulkWriteResult wr;
+        try{
+            wr = bulk.execute();
+        }catch(BulkWriteException ex){
+            //the operations without error are written
+            evict(ops);
+            result.add(ex.getWriteResult());
+            try{
+                notifyListeners(coll, ops, getFailed(ex, ops.size()));
+            }catch(RuntimeException notifyEx){
+                //keep the write errors, which tell the operations not written
+                ex.addSuppressed(notifyEx);
+            }
+            throw ex;
+        }catch(RuntimeException ex){
+            evict(ops);
+            throw ex;
+        }
+        evict(ops);
+        result.add(wr);
+        notifyListeners(coll, ops, null);
+    }
+    
+    /**
+     * Get the operations not written. An ordered bulk write stops at the first error.
+     */
+    private boolean[] getFailed(BulkWriteException ex, int size){
+        boolean[] failed = new boolean[size];
+        for(BulkWriteError error : ex.getWriteErrors()){
+            int end = ordered ? size : error.getIndex() + 1;
+            for(int i=error.getIndex(); i<end; i++){
+                failed[i] = true;
+            }
+        }
+        return failed;
+    }
+    
+    private BuguBulkWriter<T> add(Operation op){
+        pending.add(op);
+        if(pending.size() >= batchSize){
+            flush();
+        }
+        return this;
+    }
+    
+    private void addUpdate(BulkWriteRequestBuilder builder, Operation op){
+        if(op.upsert){
+            BulkUpdateRequestBuilder upsertBuilder = builder.upsert();
+            if(op.multi){
+                upsertBuilder.update(op.doc);
+            }else{
+                upsertBuilder.updateOne(op.doc);
+            }
+        }else{
+            if(op.multi){
+                builder.update(op.doc);
+            }else{
+                builder.updateOne(op.doc);
+            }
+        }
+    }
+    
+    private void evict(List<Operation> ops){
+        boolean multi = false;
+        for(Operation op : ops){
+            if(op.multi){
+                multi = true;
+            }else if(op.id != null){
+                dao.evictCached(op.id);
+            }
+        }
+        if(multi){
+            dao.evictCached();
+        }
+    }
+    
+    private void notifyListeners(DBCollection coll, List<Operation> ops, boolean[] failed){
+        List<Object> updatedIds = new ArrayList<>();
+        for(int i=0; i<ops.size(); i++){
+            Operation op = ops.get(i);
+            if(failed != null && failed[i]){
+                continue;
+            }
+            if(dao.hasCustomListener){
+                if(op.type == Operation.INSERT){
+                    dao.notifyInserted(op.entity);
+                }else if(op.type == Operation.REPLACE){
+                    dao.notifyUpdated(op.entity);
+                }else if(op.type == Operation.UPDATE){
+                    if(op.multi){
+                        updatedIds.addAll(op.updatedIds);
+                    }else{
+                        updatedIds.add(op.query.get(Operator.ID));
+                    }
+                }
+            }
+            if(op.removed != null){
+                for(T t : op.removed){
+                    dao.notifyDeleted((BuguEntity)t);
+                }
+            }
+        }
+        if(!updatedIds.isEmpty()){
+            for(T t : findByIds(coll, updatedIds)){
+                dao.notifyUpdated((BuguEntity)t);
+            }
+        }
+    }
+    
+    private List<T> findByIds(DBCollection coll, List<Object> ids){
+        DBObject in = new BasicDBObject(Operator.IN, ids);
+        DBCursor cursor = coll.find(new BasicDBObject(Operator.ID, in));
+        return MapperUtil.toList(dao.getEntityClass(), cursor);
+    }
+    
+    private DBObject idQuery(String id){
+        return new BasicDBObject(Operator.ID, IdUtil.toDbId(dao.getEntityClass(), id));
+    }
+    
+    private IdType getIdType(){
+        return FieldsCache.getInstance().getIdField(dao.getEntityClass()).getAnnotation(Id.class).type();
+    }
+    
+    private final class Operation {
+        
+        static final int INSERT = 1;
+        static final int REPLACE = 2;
+        static final int UPDATE = 3;
+        static final int REMOVE = 4;
+        
+        final int type;
+        String id;  //for the operation on single entity
+        DBObject query;
+        DBObject doc;  //the document to insert or replace, or the modifier to update
+        BuguEntity entity;  //for INSERT and REPLACE
+        boolean multi;
+        boolean upsert;
+        List updatedIds;  //ids matched by multi update, read before the write
+        List<T> removed;  //entities to remove, read before the write
+        
+        Operation(int type){
+            this.type = type;
+        }
+        
+    }
+    
+}
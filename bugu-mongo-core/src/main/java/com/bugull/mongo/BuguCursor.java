@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) www.bugull.com
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bugull.mongo;
+
+import com.bugull.mongo.utils.StreamUtil;
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Streaming result of a query. 
+ * 
+ * <p>Documents are converted one by one as the cursor advances, so only the current batch is held in memory. 
+ * The underlying cursor is closed when all the results are read, when the limit is reached, or when close() is called. 
+ * Use it in try-with-resources if you don't read all the results:</p>
+ * 
+ * <pre>
+ * try(BuguCursor&lt;Foo&gt; cursor = dao.query().batchSize(1000).cursor()){
+ *     for(Foo foo : cursor){
+ *         ...
+ *     }
+ * }
+ * </pre>
+ * 
+ * @author Frank Wen(xbwen@hotmail.com)
+ */
+public abstract class BuguCursor<T> implements Iterator<T>, Iterable<T>, Closeable {
+    
+    private final Iterator<?> source;
+    private final int limit;
+    private int count;
+    private boolean closed;
+    
+    /**
+     * @param source the cursor of mongoDB. It's closed if it implements Closeable.
+     * @param limit max number of results to read, 0 means no limit.
+     */
+    public BuguCursor(Iterator<?> source, int limit){
+        this.source = source;
+        this.limit = limit;
+    }
+    
+    /**
+     * Convert an item read from the cursor to result.
+     * @param item
+     * @return 
+     */
+    protected abstract T decode(Object item);
+
+    @Override
+    public boolean hasNext() {
+        if(closed){
+            return false;
+        }
+        if(limit > 0 && count >= limit){
+            close();
+            return false;
+        }
+        boolean has = source.hasNext();
+        if(!has){
+            close();
+        }
+        return has;
+    }
+
+    @Override
+    public T next() {
+        if(!hasNext()){
+            throw new NoSuchElementException();
+        }
+        count++;
+        return decode(source.next());
+    }
+    
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * A cursor can only be iterated once.
+     * @return 
+     */
+    @Override
+    public Iterator<T> iterator() {
+        return this;
+    }
+    
+    /**
+     * Get the results as a sequential stream. The cursor is closed when the stream is closed.
+     * @return 
+     */
+    public Stream<T> stream(){
+        Spliterator<T> spliterator = Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL);
+        return StreamSupport.stream(spliterator, false).onClose(new Runnable(){
+            @Override
+            public void run() {
+                close();
+            }
+        });
+    }
+
+    @Override
+    public void close() {
+        if(closed){
+            return;
+        }
+        closed = true;
+        if(source instanceof Closeable){
+            StreamUtil.safeClose((Closeable)source);
+        }
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+    
+    /**
+     * @return the number of results have been read
+     */
+    public int getCount() {
+        return count;
+    }
+    
+}
@@ -25,8 +25,13 @@ import com.bugull.mongo.annotations.Id;
 import com.bugull.mongo.annotations.IdType;
 import com.bugull.mongo.annotations.SplitType;
 import com.bugull.mongo.bitwise.BitwiseQuery;
+import com.bugull.mongo.cache.EntityPlanCache;
 import com.bugull.mongo.cache.FieldsCache;
+import com.bugull.mongo.cache.SequenceAllocatorCache;
+import com.bugull.mongo.codec.EntityCodec;
+import com.bugull.mongo.exception.BuguException;
 import com.bugull.mongo.geo.GeoQuery;
+import com.bugull.mongo.instrument.Instrumentor;
 import com.bugull.mongo.listener.CascadeDeleteListener;
 import com.bugull.mongo.listener.EntityListener;
 import com.bugull.mongo.misc.DBIndex;
@@ -43,16 +48,33 @@ import com.mongodb.DB;
 import com.mongodb.DBCollection;
 import com.mongodb.DBCursor;
 import com.mongodb.DBObject;
+import com.mongodb.MongoClient;
+import com.mongodb.MongoCommandException;
 import com.mongodb.ReadPreference;
 import com.mongodb.WriteConcern;
 import com.mongodb.WriteResult;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.result.UpdateResult;
 import java.lang.reflect.Field;
-import java.text.SimpleDateFormat;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.bson.codecs.configuration.CodecRegistries;
+import org.bson.codecs.configuration.CodecRegistry;
 
 /**
  * The basic Dao class.
@@ -62,23 +84,65 @@ import java.util.concurrent.CopyOnWriteArraySet;
 @SuppressWarnings("unchecked")
 public class BuguDao<T> extends AbstractDao {
     
+    private static final Logger LOGGER = Logger.getLogger("com.bugull.mongo");
+    
+    private static final int NAMESPACE_EXISTS = 48;
+    
+    private static final DateTimeFormatter DAILY_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+    private static final DateTimeFormatter MONTHLY_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM");
+    private static final DateTimeFormatter YEARLY_FORMATTER = DateTimeFormatter.ofPattern("yyyy");
+    
     protected Class<T> clazz;
     protected DBObject keys;  //non-lazy fields
     
     protected boolean hasCustomListener = false;
     
+    //read and write entity by EntityCodec, without DBObject
+    protected boolean entityCodec = false;
+    
     //Listener for update, delete
     protected final List<EntityListener> listenerList = new ArrayList<>();
     
     //Index done or not
     protected CopyOnWriteArraySet<String> indexedSet = new CopyOnWriteArraySet<>();
     
+    protected SplitType splitType;
+    
+    //resolved split collections, by collection name, the least recently used is removed when full
+    private int splitCacheSize = 1000;
+    private final Map<String, DBCollection> splitCollections = Collections.synchronizedMap(new LinkedHashMap<String, DBCollection>(16, 0.75f, true){
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, DBCollection> eldest){
+            return size() > splitCacheSize;
+        }
+    });
+    
+    //typed collections of the resolved collections, by collection name and cascade flag. the least recently used is removed when full
+    private final Map<String, MongoCollection<T>> typedCollections = Collections.synchronizedMap(new LinkedHashMap<String, MongoCollection<T>>(16, 0.75f, true){
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, MongoCollection<T>> eldest){
+            return size() > splitCacheSize;
+        }
+    });
+    
+    //the split suffixes of next day(or month, year), which are created in advance. 
+    //only the latest ones are checked, so the eldest is removed when full
+    private static final int PRECREATED_SIZE = 4;
+    private final Set<String> precreatedSet = Collections.newSetFromMap(Collections.synchronizedMap(new LinkedHashMap<String, Boolean>(){
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest){
+            return size() > PRECREATED_SIZE;
+        }
+    }));
+    private volatile String lastSplitSuffix;
+    
     public BuguDao(Class<T> clazz){
         this.clazz = clazz;
         
         //init none-split-collection
         Entity entity = clazz.getAnnotation(Entity.class);
         SplitType st = entity.split();
+        splitType = st;
         if(st == SplitType.NONE){
             split = false;
             String name = MapperUtil.getEntityName(clazz);
@@ -114,25 +178,47 @@ public class BuguDao<T> extends AbstractDao {
     }
     
     private void initCollection(String collectionName){
+        setCollection(createCollection(collectionName, false));
+    }
+    
+    /**
+     * Get the collection, and ensure the indexes of it.
+     * @param collectionName
+     * @param create create the collection at once if it does not exist, instead of on the first write
+     * @return 
+     */
+    private DBCollection createCollection(String collectionName, boolean create){
         Entity entity = clazz.getAnnotation(Entity.class);
         DB db = BuguFramework.getInstance().getConnection(entity.connection()).getDB();
         DBCollection dbColl;
         //if capped
-        if(entity.capped() && !db.collectionExists(collectionName)){
-            DBObject options = new BasicDBObject("capped", true);
-            long capSize = entity.capSize();
-            if(capSize != Default.CAP_SIZE){
-                options.put("size", capSize);
+        if((entity.capped() || create) && !db.collectionExists(collectionName)){
+            DBObject options = new BasicDBObject();
+            if(entity.capped()){
+                options.put("capped", true);
+                long capSize = entity.capSize();
+                if(capSize != Default.CAP_SIZE){
+                    options.put("size", capSize);
+                }
+                long capMax = entity.capMax();
+                if(capMax != Default.CAP_MAX){
+                    options.put("max", capMax);
+                }
             }
-            long capMax = entity.capMax();
-            if(capMax != Default.CAP_MAX){
-                options.put("max", capMax);
+            try{
+                dbColl = db.createCollection(collectionName, options);
+            }catch(MongoCommandException ex){
+                //created by others at the same time
+                if(ex.getErrorCode() != NAMESPACE_EXISTS){
+                    throw ex;
+                }
+                dbColl = db.getCollection(collectionName);
             }
-            dbColl = db.createCollection(collectionName, options);
         }else{
             dbColl = db.getCollection(collectionName);
         }
-        setCollection(dbColl);
+        
+        Instrumentor.getInstance().registerCollection(dbColl, clazz);
         
         //for @EnsureIndex
         EnsureIndex ei = clazz.getAnnotation(EnsureIndex.class);
@@ -142,54 +228,167 @@ public class BuguDao<T> extends AbstractDao {
                     if(! indexedSet.contains(collectionName)){
                         List<DBIndex> list = IndexUtil.getDBIndex(ei.value());
                         for(DBIndex dbi : list){
-                            getCollection().createIndex(dbi.indexKeys, dbi.indexOptions);
+                            dbColl.createIndex(dbi.indexKeys, dbi.indexOptions);
                         }
                         indexedSet.add(collectionName);
                     }
                 }
             }
         }
+        return dbColl;
+    }
+    
+    private DBCollection getSplitCollection(String collectionName){
+        DBCollection coll = splitCollections.get(collectionName);
+        if(coll == null){
+            coll = createCollection(collectionName, false);
+            splitCollections.put(collectionName, coll);
+        }
+        return coll;
     }
     
     /**
      * If collection is split by date, you have to set the date to check which collection is in use.
+     * <p>When the date is in current day(or month, year), the collection of next one is created in background.</p>
      * @param date 
      */
     public void setSplitSuffix(Date date){
-        Entity entity = clazz.getAnnotation(Entity.class);
-        SplitType st = entity.split();
-        SimpleDateFormat sdf = null;
-        switch(st){
+        DateTimeFormatter formatter = getSplitFormatter();
+        if(formatter != null){
+            LocalDate day = date.toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
+            String suffix = day.format(formatter);
+            setSplitCollection(suffix);
+            if(!suffix.equals(lastSplitSuffix)){
+                lastSplitSuffix = suffix;
+                createNextSplitCollection(day, formatter);
+            }
+        }
+    }
+    
+    /**
+     * If collection is split by string, you have to set the string value to check which collection is in use.
+     * @param s 
+     */
+    public void setSplitSuffix(String s){
+        if(splitType == SplitType.STRING){
+            setSplitCollection(s);
+        }
+    }
+    
+    /**
+     * The max number of split collections to keep resolved. Default is 1000.
+     * @param splitCacheSize 
+     */
+    protected void setSplitCacheSize(int splitCacheSize){
+        this.splitCacheSize = splitCacheSize;
+    }
+    
+    private DateTimeFormatter getSplitFormatter(){
+        switch(splitType){
             case DAILY:
-                sdf = new SimpleDateFormat("yyyy-MM-dd");
-                break;
+                return DAILY_FORMATTER;
             case MONTHLY:
-                sdf = new SimpleDateFormat("yyyy-MM");
-                break;
+                return MONTHLY_FORMATTER;
             case YEARLY:
-                sdf = new SimpleDateFormat("yyyy");
-                break;
+                return YEARLY_FORMATTER;
             default:
-                break;
+                return null;
         }
-        if(sdf != null){
-            String ext = sdf.format(date);
-            String name = MapperUtil.getEntityName(clazz);
-            initCollection(name + "-" + ext);
+    }
+    
+    private LocalDate nextSplitDay(LocalDate day){
+        switch(splitType){
+            case DAILY:
+                return day.plusDays(1);
+            case MONTHLY:
+                return day.withDayOfMonth(1).plusMonths(1);
+            default:
+                return day.withDayOfYear(1).plusYears(1);
+        }
+    }
+    
+    private void createNextSplitCollection(LocalDate day, DateTimeFormatter formatter){
+        if(!day.format(formatter).equals(LocalDate.now().format(formatter))){
+            return;
+        }
+        final String next = nextSplitDay(day).format(formatter);
+        if(precreatedSet.add(next)){
+            final String name = MapperUtil.getEntityName(clazz) + "-" + next;
+            BuguFramework.getInstance().getExecutor().execute(new Runnable(){
+                @Override
+                public void run() {
+                    try{
+                        splitCollections.put(name, createCollection(name, true));
+                    }catch(Exception ex){
+                        precreatedSet.remove(next);
+                        LOGGER.log(Level.WARNING, "Can not create the collection " + name + " in advance", ex);
+                    }
+                }
+            });
         }
     }
     
     /**
-     * If collection is split by string, you have to set the string value to check which collection is in use.
-     * @param s 
+     * Bind the split collection of the suffix to current thread, whatever the split type is.
+     * @param suffix 
      */
-    public void setSplitSuffix(String s){
+    void setSplitCollection(String suffix){
+        setCollection(getSplitCollection(MapperUtil.getEntityName(clazz) + "-" + suffix));
+    }
+    
+    /**
+     * Bind a collection to current thread, used to restore the split collection.
+     * @param coll 
+     */
+    void bindCollection(DBCollection coll){
+        setCollection(coll);
+    }
+    
+    /**
+     * Get the suffixes of the split collections between two dates, both inclusive.
+     * @param from
+     * @param to
+     * @return 
+     */
+    List<String> getSplitSuffixes(Date from, Date to){
+        DateTimeFormatter formatter = getSplitFormatter();
+        if(formatter == null){
+            throw new BuguException("The collection is not split by date: " + MapperUtil.getEntityName(clazz));
+        }
+        ZoneId zone = ZoneId.systemDefault();
+        LocalDate day = from.toInstant().atZone(zone).toLocalDate();
+        LocalDate last = to.toInstant().atZone(zone).toLocalDate();
+        //start from the first day of the month or year
+        if(splitType == SplitType.MONTHLY){
+            day = day.withDayOfMonth(1);
+        }else if(splitType == SplitType.YEARLY){
+            day = day.withDayOfYear(1);
+        }
+        List<String> list = new ArrayList<>();
+        while(!day.isAfter(last)){
+            list.add(day.format(formatter));
+            day = nextSplitDay(day);
+        }
+        return list;
+    }
+    
+    /**
+     * Remove the suffixes whose split collection does not exist.
+     * @param suffixes
+     * @return 
+     */
+    List<String> getExistingSplitSuffixes(List<String> suffixes){
         Entity entity = clazz.getAnnotation(Entity.class);
-        SplitType st = entity.split();
-        if(st == SplitType.STRING){
-            String name = MapperUtil.getEntityName(clazz);
-            initCollection(name + "-" + s);
+        DB db = BuguFramework.getInstance().getConnection(entity.connection()).getDB();
+        Set<String> names = db.getCollectionNames();
+        String name = MapperUtil.getEntityName(clazz);
+        List<String> list = new ArrayList<>();
+        for(String suffix : suffixes){
+            if(names.contains(name + "-" + suffix)){
+                list.add(suffix);
+            }
         }
+        return list;
     }
     
     /**
@@ -208,6 +407,62 @@ public class BuguDao<T> extends AbstractDao {
         getCollection().setReadPreference(readPreference);
     }
     
+    /**
+     * Read and write entity by MongoCollection&lt;T&gt; and EntityCodec, instead of converting to/from DBObject. 
+     * It affects insert(), save(), findOne(id) and the results of BuguQuery. Default value is false.
+     * The cascade @Ref and @RefList entities are saved before the entity is written, and the WriteResult is the same as DBCollection returns.
+     * @param entityCodec 
+     */
+    protected void setEntityCodec(boolean entityCodec){
+        this.entityCodec = entityCodec;
+    }
+    
+    public boolean isEntityCodec(){
+        return entityCodec;
+    }
+    
+    /**
+     * Get the MongoCollection which reads and writes entity directly, with the same read preference and write concern as getCollection().
+     * @return 
+     */
+    public MongoCollection<T> getTypedCollection(){
+        return getTypedCollection(false);
+    }
+    
+    /**
+     * Get the MongoCollection which reads and writes entity directly.
+     * @param withoutCascade if true, the @Ref and @RefList fields are not cascade read or saved
+     * @return 
+     */
+    public MongoCollection<T> getTypedCollection(boolean withoutCascade){
+        DBCollection coll = getCollection();
+        String key = withoutCascade ? coll.getName() + "#withoutCascade" : coll.getName();
+        MongoCollection<T> typed = typedCollections.get(key);
+        //create again if the read preference or write concern is changed
+        if(typed == null 
+                || !typed.getReadPreference().equals(coll.getReadPreference()) 
+                || !typed.getWriteConcern().equals(coll.getWriteConcern()) 
+                || !typed.getReadConcern().equals(coll.getReadConcern())){
+            typed = createTypedCollection(coll, withoutCascade);
+            typedCollections.put(key, typed);
+        }
+        return typed;
+    }
+    
+    private MongoCollection<T> createTypedCollection(DBCollection coll, boolean withoutCascade){
+        Entity entity = clazz.getAnnotation(Entity.class);
+        MongoClient client = BuguFramework.getInstance().getConnection(entity.connection()).getMongoClient();
+        MongoCollection<T> typed = client.getDatabase(coll.getDB().getName()).getCollection(coll.getName(), clazz)
+                .withReadPreference(coll.getReadPreference())
+                .withWriteConcern(coll.getWriteConcern())
+                .withReadConcern(coll.getReadConcern());
+        if(withoutCascade){
+            CodecRegistry registry = typed.getCodecRegistry();
+            typed = typed.withCodecRegistry(CodecRegistries.fromRegistries(CodecRegistries.fromCodecs(new EntityCodec<T>(clazz, registry, true)), registry));
+        }
+        return typed;
+    }
+    
     protected void addEntityListener(EntityListener listener){
         hasCustomListener = true;
         listenerList.add(listener);
@@ -261,12 +516,45 @@ public class BuguDao<T> extends AbstractDao {
         }
     }
     
+    /**
+     * Called after an entity is written. Remove it from the BuguSession of current thread. 
+     * Subclass which caches entities should override this too.
+     * @param id 
+     */
+    protected void evictCached(String id){
+        BuguSession session = BuguSession.current();
+        if(session != null){
+            session.evict(getCollection().getFullName(), id);
+        }
+    }
+    
+    /**
+     * Called after multi entities are written. Remove all entities of the collection from the BuguSession of current thread. 
+     * Subclass which caches entities should override this too.
+     */
+    protected void evictCached(){
+        BuguSession session = BuguSession.current();
+        if(session != null){
+            session.evict(getCollection().getFullName());
+        }
+    }
+    
     /**
      * Insert an entity to mongoDB.
      * @param t
      * @return 
      */
     public WriteResult insert(T t){
+        if(entityCodec){
+            saveCascade(t);
+            //id is generated by EntityCodec and set to the entity
+            MongoCollection<T> typed = getTypedCollection(true);
+            typed.insertOne(t);
+            if(hasCustomListener){
+                notifyInserted((BuguEntity)t);
+            }
+            return insertResult(typed);
+        }
         DBObject dbo = MapperUtil.toDBObject(t);
         WriteResult wr = getCollection().insert(dbo);
         String id = dbo.get(Operator.ID).toString();
@@ -290,10 +578,21 @@ public class BuguDao<T> extends AbstractDao {
         Field idField = FieldsCache.getInstance().getIdField(clazz);
         Id idAnnotation = idField.getAnnotation(Id.class);
         if(idAnnotation.type()==IdType.AUTO_INCREASE){
+            //reserve the increased ids by one round trip, then insert as other id types
+            assignIncreaseIds(list);
+        }
+        if(entityCodec){
             for(T t : list){
-                save(t);
+                saveCascade(t);
+            }
+            MongoCollection<T> typed = getTypedCollection(true);
+            typed.insertMany(list);
+            if(hasCustomListener){
+                for(T t : list){
+                    notifyInserted((BuguEntity)t);
+                }
             }
-            return new WriteResult(list.size(), false, null);
+            return insertResult(typed);
         }
         else{
             List<DBObject> dboList = new ArrayList<>();
@@ -316,6 +615,49 @@ public class BuguDao<T> extends AbstractDao {
         }
     }
     
+    /**
+     * Save the cascade references before writing by EntityCodec, so that no write happens inside the codec.
+     * @param t 
+     */
+    private void saveCascade(T t){
+        EntityPlanCache.getInstance().get(clazz).saveCascade(t);
+    }
+    
+    /**
+     * The same WriteResult as DBCollection.insert() returns: n is always 0 for insert.
+     * @param typed
+     * @return 
+     */
+    private WriteResult insertResult(MongoCollection<T> typed){
+        if(!typed.getWriteConcern().isAcknowledged()){
+            return WriteResult.unacknowledged();
+        }
+        return new WriteResult(0, false, null);
+    }
+    
+    /**
+     * Set AUTO_INCREASE ids to the entities which have no id, reserved by one round trip.
+     * @param list 
+     */
+    void assignIncreaseIds(List<T> list){
+        int count = 0;
+        for(T t : list){
+            if(StringUtil.isEmpty(((BuguEntity)t).getId())){
+                count++;
+            }
+        }
+        if(count == 0){
+            return;
+        }
+        long id = SequenceAllocatorCache.getInstance().get(clazz).next(count);
+        for(T t : list){
+            BuguEntity ent = (BuguEntity)t;
+            if(StringUtil.isEmpty(ent.getId())){
+                ent.setId(String.valueOf(id++));
+            }
+        }
+    }
+    
     /**
      * Save an entity to mongoDB. 
      * If no id in it, then insert the entity.
@@ -347,7 +689,22 @@ public class BuguDao<T> extends AbstractDao {
     }
     
     private WriteResult doSave(BuguEntity ent){
-        WriteResult wr = getCollection().save(MapperUtil.toDBObject(ent));
+        WriteResult wr;
+        if(entityCodec){
+            saveCascade((T)ent);
+            BasicDBObject query = new BasicDBObject(Operator.ID, IdUtil.toDbId(clazz, ent.getId()));
+            UpdateResult ur = getTypedCollection(true).replaceOne(query, (T)ent, new ReplaceOptions().upsert(true));
+            if(ur.wasAcknowledged()){
+                //the same as DBCollection.save() returns
+                boolean updated = ur.getMatchedCount() > 0;
+                wr = new WriteResult(1, updated, updated ? null : query.get(Operator.ID));
+            }else{
+                wr = WriteResult.unacknowledged();
+            }
+        }else{
+            wr = getCollection().save(MapperUtil.toDBObject(ent));
+        }
+        evictCached(ent.getId());
         if(hasCustomListener){
             notifyUpdated(ent);
         }
@@ -356,7 +713,8 @@ public class BuguDao<T> extends AbstractDao {
     
     /**
      * Drop the collection. 
-     * It will automatically drop all indexes from this collection.
+     * It will automatically drop all indexes from this collection. 
+     * For AUTO_INCREASE id, the counter is removed too, so the ids start from Id.start() again.
      */
     public void drop(){
         if(!listenerList.isEmpty()){
@@ -368,6 +726,11 @@ public class BuguDao<T> extends AbstractDao {
         //drop the collection and index anyway.
         getCollection().drop();
         getCollection().dropIndexes();
+        Id idAnnotation = FieldsCache.getInstance().getIdField(clazz).getAnnotation(Id.class);
+        if(idAnnotation.type()==IdType.AUTO_INCREASE){
+            SequenceAllocatorCache.getInstance().remove(getCollection());
+        }
+        evictCached();
     }
     
     /**
@@ -392,6 +755,7 @@ public class BuguDao<T> extends AbstractDao {
         }
         DBObject query = new BasicDBObject(Operator.ID, IdUtil.toDbId(clazz, id));
         WriteResult wr = getCollection().remove(query);
+        evictCached(id);
         if(!listenerList.isEmpty() && entity!=null){
             notifyDeleted(entity);
         }
@@ -440,6 +804,7 @@ public class BuguDao<T> extends AbstractDao {
             list = MapperUtil.toList(clazz, cursor);
         }
         WriteResult wr = getCollection().remove(condition);
+        evictCached();
         if(!listenerList.isEmpty() && list!=null){
             for(T t : list){
                 notifyDeleted((BuguEntity)t);
@@ -498,10 +863,28 @@ public class BuguDao<T> extends AbstractDao {
      * @return 
      */
     public T findOne(String id){
+        BuguSession session = BuguSession.current();
+        String collectionName = null;
+        if(session != null){
+            collectionName = getCollection().getFullName();
+            Object obj = session.get(collectionName, id);
+            if(obj != null){
+                return (T)obj;
+            }
+        }
         DBObject query = new BasicDBObject();
         query.put(Operator.ID, IdUtil.toDbId(clazz, id));
-        DBObject result = getCollection().findOne(query);
-        return MapperUtil.fromDBObject(clazz, result);
+        T t;
+        if(entityCodec){
+            t = getTypedCollection().find((BasicDBObject)query).first();
+        }else{
+            DBObject result = getCollection().findOne(query);
+            t = MapperUtil.fromDBObject(clazz, result);
+        }
+        if(session != null && t != null){
+            session.put(collectionName, (BuguEntity)t);
+        }
+        return t;
     }
     
     /**
@@ -606,6 +989,16 @@ public class BuguDao<T> extends AbstractDao {
         return MapperUtil.toList(clazz, cursor);
     }
     
+    /**
+     * Scan all the document in parallel, by splitting the collection into _id ranges. 
+     * The consumer is called by several threads at the same time. See BuguScanner.
+     * @param partitions the number of _id ranges to scan in parallel
+     * @param consumer
+     */
+    public void parallelScan(int partitions, Consumer<T> consumer){
+        scanner().partitions(partitions).scan(consumer);
+    }
+    
     /**
      * Find all document, and return one page
      * @param orderBy
@@ -619,6 +1012,18 @@ public class BuguDao<T> extends AbstractDao {
         return MapperUtil.toList(clazz, cursor);
     }
     
+    /**
+     * Find all document, and return one page by keyset pagination. 
+     * Instead of skipping, the page is read from the last entity of previous page, see BuguQuery.keysetPage().
+     * @param orderBy
+     * @param token the token of previous page, null for the first page
+     * @param pageSize
+     * @return 
+     */
+    public BuguPage<T> findAll(String orderBy, String token, int pageSize){
+        return query().sort(orderBy).keysetPage(token, pageSize);
+    }
+    
     /**
      * Atomically modify and return a single document. By default, the returned document does not include the modifications made on the update.
      * @param id
@@ -641,6 +1046,7 @@ public class BuguDao<T> extends AbstractDao {
         query.put(Operator.ID, IdUtil.toDbId(clazz, id));
         DBObject result = getCollection().findAndModify(query, null, null, false, updater.getModifier(), returnNew, false);
         T t = MapperUtil.fromDBObject(clazz, result);
+        evictCached(id);
         if(hasCustomListener){
             if(returnNew){
                 notifyUpdated((BuguEntity)t);
@@ -676,6 +1082,7 @@ public class BuguDao<T> extends AbstractDao {
         DBObject query = new BasicDBObject(key, value);
         DBObject result = getCollection().findAndModify(query, null, null, false, updater.getModifier(), returnNew, false);
         T t = MapperUtil.fromDBObject(clazz, result);
+        evictCached();
         if(hasCustomListener){
             if(returnNew){
                 notifyUpdated((BuguEntity)t);
@@ -707,6 +1114,7 @@ public class BuguDao<T> extends AbstractDao {
     public T findAndModify(BuguQuery query, BuguUpdater updater, boolean returnNew){
         DBObject result = getCollection().findAndModify(query.getCondition(), null, query.getSort(), false, updater.getModifier(), returnNew, false);
         T t = MapperUtil.fromDBObject(clazz, result);
+        evictCached();
         if(hasCustomListener){
             if(returnNew){
                 notifyUpdated((BuguEntity)t);
@@ -753,6 +1161,9 @@ public class BuguDao<T> extends AbstractDao {
     private T findAndRemove(DBObject dbo){
         DBObject result = getCollection().findAndModify(dbo, null, null, true, null, false, false);
         T t = MapperUtil.fromDBObject(clazz, result);
+        if(t != null){
+            evictCached(((BuguEntity)t).getId());
+        }
         if(!listenerList.isEmpty()){
             notifyDeleted((BuguEntity)t);
         }
@@ -1092,6 +1503,50 @@ public class BuguDao<T> extends AbstractDao {
         return new BuguUpdater(this);
     }
     
+    /**
+     * Create a bulk writer.
+     * @return 
+     */
+    public BuguBulkWriter<T> bulkWriter(){
+        return new BuguBulkWriter<T>(this);
+    }
+    
+    /**
+     * Create a parallel scanner of the whole collection.
+     * @return 
+     */
+    public BuguScanner<T> scanner(){
+        return new BuguScanner<T>(this);
+    }
+    
+    /**
+     * Create a query across the split collections between two dates, both inclusive. 
+     * Only for collection split by DAILY, MONTHLY or YEARLY.
+     * @param from
+     * @param to
+     * @return 
+     */
+    public BuguSplitQuery<T> splitQuery(Date from, Date to){
+        return new BuguSplitQuery<T>(this, getSplitSuffixes(from, to));
+    }
+    
+    /**
+     * Create a query across the split collections of the suffixes.
+     * @param suffixes
+     * @return 
+     */
+    public BuguSplitQuery<T> splitQuery(String... suffixes){
+        return new BuguSplitQuery<T>(this, Arrays.asList(suffixes));
+    }
+    
+    /**
+     * Create an asynchronous dao of this.
+     * @return 
+     */
+    public BuguAsyncDao<T> async(){
+        return new BuguAsyncDao<T>(this);
+    }
+    
     /**
      * Create an aggregation.
      * @return a new BuguQuery object
@@ -17,13 +17,12 @@
 package com.bugull.mongo;
 
 import com.bugull.mongo.annotations.Default;
+import com.bugull.mongo.parallel.BuguExecutor;
 import com.bugull.mongo.utils.ThreadUtil;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 /**
  * Things used by framework internally.
@@ -34,16 +33,14 @@ public class BuguFramework {
     
     private final Map<String, BuguConnection> map = new ConcurrentHashMap<>();
     
-    private ExecutorService executor;
+    private volatile BuguExecutor executor;
     
     private int threadPoolSize;
     
+    private boolean virtualThreads = true;
+    
     private BuguFramework(){
-        if(threadPoolSize == 0){
-            //default thread pool size: 2 * cpu + 1
-            threadPoolSize = Runtime.getRuntime().availableProcessors() * 2 + 1;
-        }
-        executor = Executors.newFixedThreadPool(threadPoolSize);
+        
     }
     
     private static class Holder {
@@ -75,14 +72,45 @@ public class BuguFramework {
         return map.get(connectionName);
     }
 
-    public ExecutorService getExecutor() {
-        return executor;
+    /**
+     * Get the executor shared by entity listeners and parallel query. It is created on first call. 
+     * The tasks submitted by its own tasks are run inline, see BuguExecutor.
+     * @return 
+     */
+    public BuguExecutor getExecutor() {
+        BuguExecutor es = executor;
+        if(es == null){
+            synchronized(this){
+                if(executor == null){
+                    int size = threadPoolSize;
+                    if(size <= 0){
+                        //default thread pool size: 2 * cpu + 1
+                        size = Runtime.getRuntime().availableProcessors() * 2 + 1;
+                    }
+                    executor = BuguExecutor.create(size, virtualThreads);
+                }
+                es = executor;
+            }
+        }
+        return es;
     }
     
+    /**
+     * Set max number of concurrent tasks of the executor. It must be called before the executor is used.
+     * @param threadPoolSize 
+     */
     public void setThreadPoolSize(int threadPoolSize){
         this.threadPoolSize = threadPoolSize;
     }
     
+    /**
+     * Use virtual threads when the JDK supports. Default is true. It must be called before the executor is used.
+     * @param virtualThreads 
+     */
+    public void setVirtualThreads(boolean virtualThreads){
+        this.virtualThreads = virtualThreads;
+    }
+    
     /**
      * destroy the framework, release all resource.
      */
@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) www.bugull.com
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bugull.mongo;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+/**
+ * Reactive Streams publisher of query results, with backpressure.
+ * 
+ * <p>Each subscriber gets its own cursor, opened when the first element is requested. 
+ * The cursor is read and the documents are converted on the executor, only as many as the subscriber requested, 
+ * so the server batches are fetched on demand. The cursor is closed when all results are sent, 
+ * when an error occurs, or when the subscription is cancelled.</p>
+ * 
+ * @author Frank Wen(xbwen@hotmail.com)
+ */
+public class BuguPublisher<T> implements Publisher<T> {
+    
+    private final Callable<BuguCursor<T>> cursorFactory;
+    
+    private final Executor executor;
+    
+    /**
+     * @param cursorFactory open a new cursor for each subscriber
+     * @param executor the executor to read the cursor and send signals
+     */
+    public BuguPublisher(Callable<BuguCursor<T>> cursorFactory, Executor executor){
+        this.cursorFactory = cursorFactory;
+        this.executor = executor;
+    }
+
+    @Override
+    public void subscribe(Subscriber<? super T> subscriber) {
+        if(subscriber == null){
+            throw new NullPointerException("The subscriber must not be null");
+        }
+        subscriber.onSubscribe(new CursorSubscription(subscriber));
+    }
+    
+    /**
+     * The signals are sent by one drain task at a time, so they are serialized.
+     */
+    private final class CursorSubscription implements Subscription, Runnable {
+        
+        private final Subscriber<? super T> subscriber;
+        
+        private final AtomicLong requested = new AtomicLong();
+        
+        private final AtomicInteger wip = new AtomicInteger();
+        
+        private volatile boolean cancelled;
+        
+        private volatile Throwable invalidRequest;
+        
+        //only accessed by the drain task
+        private BuguCursor<T> cursor;
+        private boolean done;
+        
+        CursorSubscription(Subscriber<? super T> subscriber){
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if(n <= 0){
+                invalidRequest = new IllegalArgumentException("The number of requested elements must be positive, but it is " + n);
+            }else{
+                long r, u;
+                do{
+                    r = requested.get();
+                    u = r + n;
+                    if(u < 0){
+                        u = Long.MAX_VALUE;  //overflow means unbounded
+                    }
+                }while(!requested.compareAndSet(r, u));
+            }
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            schedule();
+        }
+        
+        private void schedule(){
+            if(wip.getAndIncrement() == 0){
+                executor.execute(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            int missed = 1;
+            while(true){
+                if(!done){
+                    drain();
+                }
+                missed = wip.addAndGet(-missed);
+                if(missed == 0){
+                    break;
+                }
+            }
+        }
+        
+        private void drain(){
+            if(cancelled){
+                finish();
+                return;
+            }
+            if(invalidRequest != null){
+                finish();
+                subscriber.onError(invalidRequest);
+                return;
+            }
+            try{
+                long r = requested.get();
+                if(r == 0){
+                    return;
+                }
+                if(cursor == null){
+                    cursor = cursorFactory.call();
+                }
+                long emitted = 0;
+                while(emitted != r){
+                    if(cancelled){
+                        finish();
+                        return;
+                    }
+                    if(!cursor.hasNext()){
+                        finish();
+                        subscriber.onComplete();
+                        return;
+                    }
+                    subscriber.onNext(cursor.next());
+                    emitted++;
+                }
+                if(r != Long.MAX_VALUE){
+                    r = requested.addAndGet(-emitted);
+                }
+                //hasNext() may fetch the next batch from server, so it's checked only when there is more demand. 
+                //if the demand is 0, onComplete is sent when the next element is requested.
+                if(r > 0 && !cancelled && !cursor.hasNext()){
+                    finish();
+                    subscriber.onComplete();
+                }
+            }catch(Throwable ex){
+                finish();
+                subscriber.onError(ex);
+            }
+        }
+        
+        private void finish(){
+            done = true;
+            if(cursor != null){
+                cursor.close();
+            }
+        }
+        
+    }
+    
+}
@@ -18,9 +18,12 @@ package com.bugull.mongo;
 
 import com.bugull.mongo.annotations.Id;
 import com.bugull.mongo.cache.FieldsCache;
+import com.bugull.mongo.exception.BuguException;
 import com.bugull.mongo.exception.DBQueryException;
+import com.bugull.mongo.mapper.CascadeReadBatch;
 import com.bugull.mongo.parallel.Parallelable;
 import com.bugull.mongo.utils.IdUtil;
+import com.bugull.mongo.utils.KeysetUtil;
 import com.bugull.mongo.utils.MapperUtil;
 import com.bugull.mongo.utils.Operator;
 import com.bugull.mongo.utils.ReferenceUtil;
@@ -29,13 +32,18 @@ import com.mongodb.BasicDBObject;
 import com.mongodb.DBCollection;
 import com.mongodb.DBCursor;
 import com.mongodb.DBObject;
+import com.mongodb.client.FindIterable;
 import com.mongodb.client.model.DBCollectionFindOptions;
 import java.lang.reflect.Field;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import org.bson.conversions.Bson;
 
 /**
  * Convenient class for creating queries.
@@ -61,6 +69,11 @@ public class BuguQuery<T> implements Parallelable {
     
     protected boolean withoutCascade;
     
+    //for cursor
+    protected int limit;  //default value is zero, means no limit
+    protected int batchSize;  //default value is zero, means decided by server
+    protected boolean noCursorTimeout;
+    
     public BuguQuery(BuguDao<T> dao){
         this.dao = dao;
     }
@@ -505,10 +518,51 @@ public class BuguQuery<T> implements Parallelable {
         return this;
     }
     
+    /**
+     * Max number of results. It's ignored when pageNumber and pageSize are set.
+     * The cursor is closed once the limit is reached.
+     * @param limit
+     * @return 
+     */
+    public BuguQuery<T> limit(int limit){
+        this.limit = limit;
+        return this;
+    }
+    
+    /**
+     * Number of documents to return per batch. 
+     * @param batchSize
+     * @return 
+     */
+    public BuguQuery<T> batchSize(int batchSize){
+        this.batchSize = batchSize;
+        return this;
+    }
+    
+    /**
+     * Prevent the server from timing out idle cursor. Useful for long time batch processing.
+     * The cursor must be closed when you don't read all the results.
+     * @param noCursorTimeout
+     * @return 
+     */
+    public BuguQuery<T> noCursorTimeout(boolean noCursorTimeout){
+        this.noCursorTimeout = noCursorTimeout;
+        return this;
+    }
+    
     public T result(){
         if(orderBy!=null || pageNumber!=0 || pageSize!=0){
             throw new DBQueryException("You should use results() to get a list, when you use sorting or pagination");
         }
+        if(dao.isEntityCodec()){
+            FindIterable<T> it = dao.getTypedCollection(withoutCascade).find(toBson(condition));
+            if(fieldsSpecified){
+                it.projection(toBson(fields));
+            }else if(slices != null){
+                it.projection(toBson(slices));
+            }
+            return it.first();
+        }
         DBCollection coll = dao.getCollection();
         DBObject dbo;
         if(fieldsSpecified){
@@ -523,13 +577,137 @@ public class BuguQuery<T> implements Parallelable {
     
     @Override
     public List<T> results(){
-        DBObject projection;
+        DBObject projection = getProjection();
+        if(dao.isEntityCodec()){
+            List<T> list = new ArrayList<>();
+            CascadeReadBatch batch = CascadeReadBatch.open();
+            try{
+                typedFind(projection).into(list);
+                if(batch != null){
+                    batch.flush();
+                }
+            }finally{
+                if(batch != null){
+                    batch.close();
+                }
+            }
+            return list;
+        }
+        DBCursor cursor = dao.getCollection().find(condition, getFindOptions(projection));
+        return MapperUtil.toList(dao.getEntityClass(), cursor, withoutCascade);
+    }
+    
+    /**
+     * Get the results as a cursor, which converts documents lazily as the cursor advances. 
+     * Remember to close the cursor if you don't read all the results.
+     * @return 
+     */
+    public BuguCursor<T> cursor(){
+        DBObject projection = getProjection();
+        int max = (pageNumber>0 && pageSize>0) ? pageSize : limit;
+        if(dao.isEntityCodec()){
+            return new BuguCursor<T>(typedFind(projection).iterator(), max){
+                @Override
+                protected T decode(Object item) {
+                    return (T)item;
+                }
+            };
+        }
+        DBCursor cursor = dao.getCollection().find(condition, getFindOptions(projection));
+        final Class<T> clazz = dao.getEntityClass();
+        return new BuguCursor<T>(cursor, max){
+            @Override
+            protected T decode(Object item) {
+                return MapperUtil.fromDBObject(clazz, (DBObject)item, withoutCascade);
+            }
+        };
+    }
+    
+    /**
+     * Get the results as a stream, which converts documents lazily. 
+     * Close the stream(or use try-with-resources) if you don't read all the results.
+     * @return 
+     */
+    public Stream<T> stream(){
+        return cursor().stream();
+    }
+    
+    /**
+     * Get the results as a Reactive Streams publisher. The documents are read and converted on demand, 
+     * by the executor of BuguFramework.
+     * @return 
+     */
+    public BuguPublisher<T> publisher(){
+        return publisher(BuguFramework.getInstance().getExecutor());
+    }
+    
+    /**
+     * Get the results as a Reactive Streams publisher. The documents are read and converted on demand.
+     * @param executor the executor to read the cursor and send signals
+     * @return 
+     */
+    public BuguPublisher<T> publisher(Executor executor){
+        return new BuguPublisher<T>(new Callable<BuguCursor<T>>(){
+            @Override
+            public BuguCursor<T> call(){
+                return cursor();
+            }
+        }, executor);
+    }
+    
+    /**
+     * Get a page by keyset pagination. The page is read by a range condition on the sort keys, 
+     * from the last entity of previous page, instead of skipping. So deep pages are as fast as the first one, 
+     * if there is an index on the sort keys. 
+     * <p>The sort is set by sort(), and _id is appended as tiebreaker. pageNumber() and pageSize() are ignored.</p>
+     * @param token the token of previous page, null for the first page
+     * @param size number of entities in a page
+     * @return 
+     */
+    public BuguPage<T> keysetPage(String token, int size){
+        if(size <= 0){
+            throw new BuguException("The page size must be positive");
+        }
+        DBObject sort = KeysetUtil.getSort(orderBy);
+        DBObject cond = condition;
+        if(token != null){
+            cond = KeysetUtil.and(condition, KeysetUtil.getSeekCondition(sort, token));
+        }
+        DBCollectionFindOptions options = new DBCollectionFindOptions();
+        options.projection(KeysetUtil.getProjection(getProjection(), sort));
+        options.sort(sort);
+        //read one more document, to know whether there is next page
+        options.limit(size + 1);
+        if(maxTimeMS > 0){
+            options.maxTime(maxTimeMS, TimeUnit.MILLISECONDS);
+        }
+        if(batchSize > 0){
+            options.batchSize(batchSize);
+        }
+        List<DBObject> docs = new ArrayList<>();
+        try(DBCursor cursor = dao.getCollection().find(cond, options)){
+            while(cursor.hasNext()){
+                docs.add(cursor.next());
+            }
+        }
+        String nextToken = null;
+        if(docs.size() > size){
+            docs = docs.subList(0, size);
+            nextToken = KeysetUtil.getToken(sort, docs.get(size - 1));
+        }
+        List<T> list = MapperUtil.toList(dao.getEntityClass(), docs, withoutCascade);
+        return new BuguPage<T>(list, nextToken);
+    }
+    
+    DBObject getProjection(){
         if(fieldsSpecified){
-            projection = fields;
+            return fields;
         }else{
-            projection = dao.getKeyFields();
+            return dao.getKeyFields();
         }
-        
+    }
+    
+    private DBCollectionFindOptions getFindOptions(DBObject projection){
         DBCollectionFindOptions options = new DBCollectionFindOptions();
         options.projection(projection);
         if(maxTimeMS > 0){
@@ -541,11 +719,46 @@ public class BuguQuery<T> implements Parallelable {
         if(pageNumber>0 && pageSize>0){
             options.skip((pageNumber-1) * pageSize);
             options.limit(pageSize);
+        }else if(limit > 0){
+            options.limit(limit);
         }
-        
-        DBCollection coll = dao.getCollection();
-        DBCursor cursor = coll.find(condition, options);
-        return MapperUtil.toList(dao.getEntityClass(), cursor, withoutCascade);
+        if(batchSize > 0){
+            options.batchSize(batchSize);
+        }
+        if(noCursorTimeout){
+            options.noCursorTimeout(true);
+        }
+        return options;
+    }
+    
+    private FindIterable<T> typedFind(DBObject projection){
+        FindIterable<T> it = dao.getTypedCollection(withoutCascade).find(toBson(condition)).projection(toBson(projection));
+        if(maxTimeMS > 0){
+            it.maxTime(maxTimeMS, TimeUnit.MILLISECONDS);
+        }
+        if(orderBy != null){
+            it.sort(toBson(SortUtil.getSort(orderBy)));
+        }
+        if(pageNumber>0 && pageSize>0){
+            it.skip((pageNumber-1) * pageSize);
+            it.limit(pageSize);
+        }else if(limit > 0){
+            it.limit(limit);
+        }
+        if(batchSize > 0){
+            it.batchSize(batchSize);
+        }
+        if(noCursorTimeout){
+            it.noCursorTimeout(true);
+        }
+        return it;
+    }
+    
+    private Bson toBson(DBObject dbo){
+        if(dbo instanceof Bson){
+            return (Bson)dbo;
+        }
+        return new BasicDBObject(dbo.toMap());
     }
     
     /**
@@ -615,6 +828,52 @@ public class BuguQuery<T> implements Parallelable {
         }
         return SortUtil.getSort(orderBy);
     }
+    
+    /**
+     * Create a new query with the same condition, returned fields, sort and options, but without paging and limit. 
+     * The condition is deep copied, so changing the new query doesn't affect this one.
+     * @return 
+     */
+    public BuguQuery<T> copy(){
+        BuguQuery<T> q = dao.query();
+        q.condition = (DBObject)deepCopy(condition);
+        q.slices = (DBObject)deepCopy(slices);
+        q.fields = (DBObject)deepCopy(fields);
+        q.fieldsSpecified = fieldsSpecified;
+        q.orderBy = orderBy;
+        q.maxTimeMS = maxTimeMS;
+        q.withoutCascade = withoutCascade;
+        q.batchSize = batchSize;
+        q.noCursorTimeout = noCursorTimeout;
+        return q;
+    }
+    
+    private static Object deepCopy(Object value){
+        if(value instanceof DBObject && !(value instanceof List)){
+            DBObject src = (DBObject)value;
+            DBObject dbo = new BasicDBObject();
+            for(String key : src.keySet()){
+                dbo.put(key, deepCopy(src.get(key)));
+            }
+            return dbo;
+        }
+        if(value instanceof List){
+            List list = new ArrayList();
+            for(Object o : (List)value){
+                list.add(deepCopy(o));
+            }
+            return list;
+        }
+        return value;
+    }
+    
+    /**
+     * Whether the results are cut by pageSize or limit.
+     * @return 
+     */
+    public boolean isLimited(){
+        return pageSize != 0 || limit != 0;
+    }
 
     public void setWithoutCascade(boolean withoutCascade) {
         this.withoutCascade = withoutCascade;
@@ -0,0 +1,432 @@
+/*
+ * Copyright (c) www.bugull.com
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bugull.mongo;
+
+import com.bugull.mongo.exception.BuguException;
+import com.bugull.mongo.utils.KeysetUtil;
+import com.bugull.mongo.utils.MapperUtil;
+import com.bugull.mongo.utils.Operator;
+import com.mongodb.AggregationOptions;
+import com.mongodb.BasicDBObject;
+import com.mongodb.Cursor;
+import com.mongodb.DBCollection;
+import com.mongodb.DBCursor;
+import com.mongodb.DBObject;
+import com.mongodb.client.model.DBCollectionFindOptions;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.bson.types.ObjectId;
+
+/**
+ * Scan a whole collection in parallel. The collection is split into _id ranges, 
+ * and every range is read by its own cursor, in the shared executor of BuguFramework, or a given one.
+ * 
+ * <pre>
+ * BuguScanner&lt;Foo&gt; scanner = dao.scanner().partitions(8).query(dao.query().is("valid", true));
+ * scanner.scan(new Consumer&lt;Foo&gt;(){
+ *     public void accept(Foo foo){ ... }
+ * });
+ * </pre>
+ * 
+ * <p>The consumer is called by several threads at the same time, so it must be thread-safe. 
+ * In a partition, the entities are consumed in ascending order of _id, and all the _id of a partition 
+ * are less than the next partition's. The progress of every partition can be read by getPartitions() while scanning.</p>
+ * 
+ * <p>The _id of the collection should be of the same type, because a range only matches the _id of its bounds' type.</p>
+ * 
+ * @author Frank Wen(xbwen@hotmail.com)
+ */
+public class BuguScanner<T> {
+    
+    private static final Logger LOGGER = Logger.getLogger("com.bugull.mongo");
+    
+    /**
+     * How to find the bounds of the partitions.
+     */
+    public enum Split {
+        /**
+         * Sample the _id by $sample, and take the quantiles. Works for any type of _id.
+         */
+        SAMPLE, 
+        /**
+         * Split the time between the min and max ObjectId evenly. No sampling, but unbalanced if the insert rate changes a lot.
+         */
+        OBJECT_ID_TIME
+    }
+    
+    private static final int SAMPLES_PER_PARTITION = 100;
+    
+    private final BuguDao<T> dao;
+    
+    private int partitions = Runtime.getRuntime().availableProcessors();
+    
+    private Split split = Split.SAMPLE;
+    
+    private DBObject condition;
+    
+    private DBObject keys;
+    
+    private boolean withoutCascade;
+    
+    private int batchSize = 1000;
+    
+    private boolean noCursorTimeout;
+    
+    private ExecutorService executor;
+    
+    private Consumer<Partition> progressListener;
+    
+    private volatile List<Partition> partitionList = Collections.emptyList();
+    
+    public BuguScanner(BuguDao<T> dao){
+        this.dao = dao;
+        this.keys = dao.getKeyFields();
+    }
+    
+    /**
+     * The number of partitions to scan in parallel. Default is the number of processors.
+     * @param partitions
+     * @return 
+     */
+    public BuguScanner<T> partitions(int partitions){
+        if(partitions <= 0){
+            throw new BuguException("The number of partitions must be positive");
+        }
+        this.partitions = partitions;
+        return this;
+    }
+    
+    public BuguScanner<T> split(Split split){
+        this.split = split;
+        return this;
+    }
+    
+    /**
+     * Only scan the entities which match the query. The sort, paging and returned fields of the query are ignored.
+     * @param query
+     * @return 
+     */
+    public BuguScanner<T> query(BuguQuery<T> query){
+        this.condition = query.getCondition();
+        return this;
+    }
+    
+    public BuguScanner<T> returnFields(String... fieldNames){
+        this.keys = new BasicDBObject();
+        for(String field : fieldNames){
+            this.keys.put(field, 1);
+        }
+        return this;
+    }
+    
+    public BuguScanner<T> withoutCascade(boolean withoutCascade){
+        this.withoutCascade = withoutCascade;
+        return this;
+    }
+    
+    /**
+     * The number of documents per batch of the cursors, and per decoding. Default is 1000.
+     * @param batchSize
+     * @return 
+     */
+    public BuguScanner<T> batchSize(int batchSize){
+        if(batchSize <= 0){
+            throw new BuguException("The batch size must be positive");
+        }
+        this.batchSize = batchSize;
+        return this;
+    }
+    
+    /**
+     * Prevent the cursors from timeout, when the consumer is slow.
+     * @param noCursorTimeout
+     * @return 
+     */
+    public BuguScanner<T> noCursorTimeout(boolean noCursorTimeout){
+        this.noCursorTimeout = noCursorTimeout;
+        return this;
+    }
+    
+    public BuguScanner<T> executor(ExecutorService executor){
+        this.executor = executor;
+        return this;
+    }
+    
+    /**
+     * Called after every batch of a partition is consumed, and when a partition is finished.
+     * @param progressListener
+     * @return 
+     */
+    public BuguScanner<T> progressListener(Consumer<Partition> progressListener){
+        this.progressListener = progressListener;
+        return this;
+    }
+    
+    /**
+     * Scan the collection, and wait until all the partitions are finished. 
+     * When a partition fails, the others are cancelled, and a BuguException is thrown.
+     * @param consumer
+     */
+    public void scan(final Consumer<T> consumer){
+        List<Partition> list = createPartitions();
+        partitionList = list;
+        ExecutorService es = (executor != null) ? executor : BuguFramework.getInstance().getExecutor();
+        CompletionService<Partition> service = new ExecutorCompletionService<>(es);
+        List<Future<Partition>> futureList = new ArrayList<>();
+        try{
+            for(final Partition p : list){
+                futureList.add(service.submit(new Callable<Partition>(){
+                    @Override
+                    public Partition call(){
+                        scanPartition(p, consumer);
+                        return p;
+                    }
+                }));
+            }
+            for(int i=0; i<list.size(); i++){
+                service.take().get();
+            }
+        }catch(InterruptedException ex){
+            Thread.currentThread().interrupt();
+            throw new BuguException(ex);
+        }catch(ExecutionException ex){
+            throw new BuguException(ex.getCause());
+        }finally{
+            //cancel the other partitions, when one fails
+            for(Future<Partition> future : futureList){
+                future.cancel(true);
+            }
+        }
+    }
+    
+    /**
+     * Get the partitions of the current, or last scan.
+     * @return 
+     */
+    public List<Partition> getPartitions(){
+        return partitionList;
+    }
+    
+    private void scanPartition(Partition p, Consumer<T> consumer){
+        DBCollectionFindOptions options = new DBCollectionFindOptions();
+        options.projection(keys);
+        options.sort(new BasicDBObject(Operator.ID, 1));
+        options.batchSize(batchSize);
+        if(noCursorTimeout){
+            options.noCursorTimeout(true);
+        }
+        Class<T> clazz = dao.getEntityClass();
+        List<DBObject> batch = new ArrayList<>(batchSize);
+        try(DBCursor cursor = dao.getCollection().find(p.getCondition(condition), options)){
+            while(cursor.hasNext()){
+                if(Thread.currentThread().isInterrupted()){
+                    return;
+                }
+                batch.add(cursor.next());
+                if(batch.size() == batchSize || !cursor.hasNext()){
+                    Object lastId = batch.get(batch.size() - 1).get(Operator.ID);
+                    for(T t : MapperUtil.toList(clazz, batch, withoutCascade)){
+                        consumer.accept(t);
+                    }
+                    p.scanned.addAndGet(batch.size());
+                    p.lastId = lastId;
+                    batch.clear();
+                    notifyProgress(p);
+                }
+            }
+        }
+        p.finished = true;
+        notifyProgress(p);
+    }
+    
+    private void notifyProgress(Partition p){
+        if(progressListener != null){
+            progressListener.accept(p);
+        }
+    }
+    
+    private List<Partition> createPartitions(){
+        List<Object> bounds = null;
+        if(partitions > 1){
+            if(split == Split.OBJECT_ID_TIME){
+                bounds = getTimeBounds();
+            }
+            if(bounds == null){
+                bounds = getSampleBounds();
+            }
+        }
+        List<Partition> list = new ArrayList<>();
+        Object lower = null;
+        if(bounds != null){
+            for(Object upper : bounds){
+                list.add(new Partition(list.size(), lower, upper));
+                lower = upper;
+            }
+        }
+        list.add(new Partition(list.size(), lower, null));
+        return list;
+    }
+    
+    private List<Object> getSampleBounds(){
+        int size = partitions * SAMPLES_PER_PARTITION;
+        List<DBObject> pipeline = Arrays.<DBObject>asList(
+                new BasicDBObject("$sample", new BasicDBObject("size", size)),
+                new BasicDBObject("$project", new BasicDBObject(Operator.ID, 1)),
+                new BasicDBObject("$sort", new BasicDBObject(Operator.ID, 1)));
+        List<Object> ids = new ArrayList<>();
+        Cursor cursor = dao.getCollection().aggregate(pipeline, AggregationOptions.builder().allowDiskUse(true).build());
+        try{
+            while(cursor.hasNext()){
+                Object id = cursor.next().get(Operator.ID);
+                //$sample may return the same document more than once
+                if(ids.isEmpty() || !ids.get(ids.size() - 1).equals(id)){
+                    ids.add(id);
+                }
+            }
+        }finally{
+            cursor.close();
+        }
+        List<Object> bounds = new ArrayList<>();
+        for(int i=1; i<partitions; i++){
+            int index = i * ids.size() / partitions;
+            if(index > 0 && index < ids.size()){
+                Object id = ids.get(index);
+                if(bounds.isEmpty() || !bounds.get(bounds.size() - 1).equals(id)){
+                    bounds.add(id);
+                }
+            }
+        }
+        return bounds;
+    }
+    
+    private List<Object> getTimeBounds(){
+        Object min = getEdgeId(1);
+        Object max = getEdgeId(-1);
+        if(!(min instanceof ObjectId) || !(max instanceof ObjectId)){
+            LOGGER.log(Level.WARNING, "The _id of {0} is not ObjectId, split by sampling instead", dao.getCollection().getName());
+            return null;
+        }
+        long from = ((ObjectId)min).getTimestamp();
+        long to = ((ObjectId)max).getTimestamp() + 1L;
+        List<Object> bounds = new ArrayList<>();
+        long last = from;
+        for(int i=1; i<partitions; i++){
+            long time = from + (to - from) * i / partitions;
+            if(time > last){
+                bounds.add(minObjectId((int)time));
+                last = time;
+            }
+        }
+        return bounds;
+    }
+    
+    private Object getEdgeId(int order){
+        DBCursor cursor = dao.getCollection().find(new BasicDBObject(), new BasicDBObject(Operator.ID, 1)).sort(new BasicDBObject(Operator.ID, order)).limit(1);
+        try{
+            return cursor.hasNext() ? cursor.next().get(Operator.ID) : null;
+        }finally{
+            cursor.close();
+        }
+    }
+    
+    /**
+     * The least ObjectId of a time, with zero machine, process and counter.
+     */
+    private static ObjectId minObjectId(int time){
+        return new ObjectId(ByteBuffer.allocate(12).putInt(time).array());
+    }
+    
+    /**
+     * A range of _id, lower bound inclusive, upper bound exclusive. Null means unbounded.
+     */
+    public static class Partition {
+        
+        private final int index;
+        private final Object lower;
+        private final Object upper;
+        private final AtomicLong scanned = new AtomicLong();
+        private volatile Object lastId;
+        private volatile boolean finished;
+        
+        Partition(int index, Object lower, Object upper){
+            this.index = index;
+            this.lower = lower;
+            this.upper = upper;
+        }
+        
+        DBObject getCondition(DBObject condition){
+            DBObject range = new BasicDBObject();
+            if(lower != null){
+                range.put(Operator.GTE, lower);
+            }
+            if(upper != null){
+                range.put(Operator.LT, upper);
+            }
+            if(range.keySet().isEmpty()){
+                return condition != null ? condition : new BasicDBObject();
+            }
+            return KeysetUtil.and(condition, new BasicDBObject(Operator.ID, range));
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public Object getLower() {
+            return lower;
+        }
+
+        public Object getUpper() {
+            return upper;
+        }
+
+        /**
+         * The number of entities consumed.
+         * @return 
+         */
+        public long getScanned() {
+            return scanned.get();
+        }
+
+        /**
+         * The _id of the last entity consumed, null if none yet.
+         * @return 
+         */
+        public Object getLastId() {
+            return lastId;
+        }
+
+        public boolean isFinished() {
+            return finished;
+        }
+        
+    }
+    
+}
@@ -0,0 +1,204 @@
+/*
+ * Copyright (c) www.bugull.com
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bugull.mongo;
+
+import java.io.Closeable;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Identity map of a unit of work, such as a request. 
+ * 
+ * <p>When a session is bound to current thread, an entity read by id is kept in the session. 
+ * The later reading of the same id, by BuguDao.findOne(), cascade @Ref/@RefList decoding, 
+ * or BuguMapper.fetchCascade(), returns the same object without a database round trip. 
+ * An entity is removed from the session when it is written by BuguDao or BuguUpdater.</p>
+ * 
+ * <pre>
+ * try(BuguSession session = BuguSession.open()){
+ *     //read and write by dao...
+ * }
+ * </pre>
+ * 
+ * <p>A session can be passed explicitly to other thread, and bound to it by bind() and unbind(). 
+ * The session is thread-safe.</p>
+ * 
+ * @author Frank Wen(xbwen@hotmail.com)
+ */
+public final class BuguSession implements Closeable {
+    
+    private static final ThreadLocal<BuguSession> local = new ThreadLocal<>();
+    
+    //the key is full name of collection, then id
+    private final ConcurrentMap<String, ConcurrentMap<String, Object>> entities = new ConcurrentHashMap<>();
+    
+    private final AtomicLong hitCount = new AtomicLong();
+    
+    private final AtomicLong missCount = new AtomicLong();
+    
+    /**
+     * Create a session bound to current thread. 
+     * If there is already a session in current thread, it is replaced.
+     * @return 
+     */
+    public static BuguSession open(){
+        BuguSession session = new BuguSession();
+        local.set(session);
+        return session;
+    }
+    
+    /**
+     * Get the session of current thread.
+     * @return null if no session is bound
+     */
+    public static BuguSession current(){
+        return local.get();
+    }
+    
+    /**
+     * Bind this session to current thread.
+     * @return 
+     */
+    public BuguSession bind(){
+        local.set(this);
+        return this;
+    }
+    
+    /**
+     * Unbind this session from current thread. The cached entities are kept.
+     */
+    public void unbind(){
+        if(local.get() == this){
+            local.remove();
+        }
+    }
+    
+    /**
+     * Unbind this session from current thread, and discard all the cached entities.
+     */
+    @Override
+    public void close(){
+        unbind();
+        clear();
+    }
+    
+    /**
+     * Get the entity of the id.
+     * @param collectionName full name of the collection
+     * @param id
+     * @return null if the entity is not in the session
+     */
+    public Object get(String collectionName, String id){
+        Object obj = null;
+        Map<String, Object> map = entities.get(collectionName);
+        if(map != null){
+            obj = map.get(id);
+        }
+        if(obj != null){
+            hitCount.incrementAndGet();
+        }else{
+            missCount.incrementAndGet();
+        }
+        return obj;
+    }
+    
+    /**
+     * Keep an entity which contains all fields in the session.
+     * @param collectionName full name of the collection
+     * @param entity 
+     */
+    public void put(String collectionName, BuguEntity entity){
+        ConcurrentMap<String, Object> map = entities.get(collectionName);
+        if(map == null){
+            map = new ConcurrentHashMap<>();
+            ConcurrentMap<String, Object> old = entities.putIfAbsent(collectionName, map);
+            if(old != null){
+                map = old;
+            }
+        }
+        map.put(entity.getId(), entity);
+    }
+    
+    /**
+     * Put an entity into the session, if there is no entity of the same id.
+     * @param collectionName full name of the collection
+     * @param entity
+     * @return the entity in the session, which may be put by other thread
+     */
+    public BuguEntity putIfAbsent(String collectionName, BuguEntity entity){
+        ConcurrentMap<String, Object> map = entities.get(collectionName);
+        if(map == null){
+            map = new ConcurrentHashMap<>();
+            ConcurrentMap<String, Object> old = entities.putIfAbsent(collectionName, map);
+            if(old != null){
+                map = old;
+            }
+        }
+        Object exists = map.putIfAbsent(entity.getId(), entity);
+        return exists != null ? (BuguEntity)exists : entity;
+    }
+    
+    /**
+     * Remove an entity from the session.
+     * @param collectionName full name of the collection
+     * @param id 
+     */
+    public void evict(String collectionName, String id){
+        Map<String, Object> map = entities.get(collectionName);
+        if(map != null){
+            map.remove(id);
+        }
+    }
+    
+    /**
+     * Remove all entities of a collection from the session.
+     * @param collectionName full name of the collection
+     */
+    public void evict(String collectionName){
+        entities.remove(collectionName);
+    }
+    
+    /**
+     * Remove all entities from the session.
+     */
+    public void clear(){
+        entities.clear();
+    }
+    
+    /**
+     * Get the number of entities in the session.
+     * @return 
+     */
+    public int size(){
+        int size = 0;
+        for(Map<String, Object> map : entities.values()){
+            size += map.size();
+        }
+        return size;
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+    
+}
@@ -0,0 +1,301 @@
+/*
+ * Copyright (c) www.bugull.com
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bugull.mongo;
+
+import com.bugull.mongo.exception.BuguException;
+import com.bugull.mongo.utils.KeysetUtil;
+import com.bugull.mongo.utils.MapperUtil;
+import com.bugull.mongo.utils.SortUtil;
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBCollection;
+import com.mongodb.DBCursor;
+import com.mongodb.DBObject;
+import com.mongodb.client.model.DBCollectionFindOptions;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Execute the same query on several split collections in parallel, and merge the results.
+ * 
+ * <pre>
+ * BuguQuery&lt;Event&gt; query = dao.query().is("type", 1).sort(SortUtil.desc("time")).pageNumber(2).pageSize(20);
+ * List&lt;Event&gt; list = dao.splitQuery(from, to).results(query);
+ * long count = dao.splitQuery(from, to).count(query);
+ * </pre>
+ * 
+ * <p>The split collections which do not exist are skipped. With a sort, the results of all collections are merged 
+ * by the sort, and the pagination or limit is applied to the merged results. Without a sort, the results are 
+ * in the order of the suffixes.</p>
+ * 
+ * @author Frank Wen(xbwen@hotmail.com)
+ */
+public class BuguSplitQuery<T> {
+    
+    private final BuguDao<T> dao;
+    
+    private final List<String> suffixes;
+    
+    private ExecutorService executor;
+    
+    private List<String> existing;
+    
+    public BuguSplitQuery(BuguDao<T> dao, List<String> suffixes){
+        if(!dao.isSplit()){
+            throw new BuguException("The collection is not split: " + MapperUtil.getEntityName(dao.getEntityClass()));
+        }
+        this.dao = dao;
+        this.suffixes = suffixes;
+    }
+    
+    /**
+     * The executor to query the collections. Default is the executor of BuguFramework.
+     * @param executor
+     * @return 
+     */
+    public BuguSplitQuery<T> executor(ExecutorService executor){
+        this.executor = executor;
+        return this;
+    }
+    
+    /**
+     * Get the suffixes of the split collections which exist.
+     * @return 
+     */
+    public List<String> getSuffixes(){
+        if(existing == null){
+            existing = dao.getExistingSplitSuffixes(suffixes);
+        }
+        return existing;
+    }
+    
+    public List<T> results(final BuguQuery<T> query){
+        int skip = 0;
+        int max = query.limit;
+        if(query.pageNumber>0 && query.pageSize>0){
+            skip = (query.pageNumber - 1) * query.pageSize;
+            max = query.pageSize;
+        }
+        final DBObject sort = query.getSort();
+        final DBCollectionFindOptions options = new DBCollectionFindOptions();
+        //the sort keys are needed to merge
+        options.projection(sort != null ? KeysetUtil.getProjection(query.getProjection(), sort) : query.getProjection());
+        if(sort != null){
+            options.sort(sort);
+        }
+        //every collection returns enough documents for the global page
+        if(max > 0){
+            options.limit(skip + max);
+        }
+        if(query.maxTimeMS > 0){
+            options.maxTime(query.maxTimeMS, TimeUnit.MILLISECONDS);
+        }
+        if(query.batchSize > 0){
+            options.batchSize(query.batchSize);
+        }
+        List<List<DBObject>> lists = scatter(new Callable<List<DBObject>>(){
+            @Override
+            public List<DBObject> call(){
+                List<DBObject> list = new ArrayList<>();
+                try(DBCursor cursor = dao.getCollection().find(query.getCondition(), options)){
+                    while(cursor.hasNext()){
+                        list.add(cursor.next());
+                    }
+                }
+                return list;
+            }
+        });
+        List<DBObject> merged = (sort != null) ? merge(lists, SortUtil.getComparator(sort), skip, max) : concat(lists, skip, max);
+        return MapperUtil.toList(dao.getEntityClass(), merged, query.withoutCascade);
+    }
+    
+    public long count(final BuguQuery<T> query){
+        long total = 0;
+        List<Long> list = scatter(new Callable<Long>(){
+            @Override
+            public Long call(){
+                return dao.getCollection().count(query.getCondition());
+            }
+        });
+        for(Long n : list){
+            total += n;
+        }
+        return total;
+    }
+    
+    public double sum(String key, BuguQuery<T> query){
+        double total = 0;
+        for(DBObject dbo : group(key, query)){
+            total += ((Number)dbo.get("sumValue")).doubleValue();
+        }
+        return total;
+    }
+    
+    /**
+     * Get the maximum value of a field, in all the collections.
+     * @param key
+     * @param query
+     * @return 0 if there is no value
+     */
+    public double max(String key, BuguQuery<T> query){
+        Double result = null;
+        for(DBObject dbo : group(key, query)){
+            Object value = dbo.get("maxValue");
+            if(value instanceof Number){
+                double d = ((Number)value).doubleValue();
+                result = (result == null) ? d : Math.max(result, d);
+            }
+        }
+        return (result == null) ? 0 : result;
+    }
+    
+    /**
+     * Get the minimum value of a field, in all the collections.
+     * @param key
+     * @param query
+     * @return 0 if there is no value
+     */
+    public double min(String key, BuguQuery<T> query){
+        Double result = null;
+        for(DBObject dbo : group(key, query)){
+            Object value = dbo.get("minValue");
+            if(value instanceof Number){
+                double d = ((Number)value).doubleValue();
+                result = (result == null) ? d : Math.min(result, d);
+            }
+        }
+        return (result == null) ? 0 : result;
+    }
+    
+    /**
+     * Get the sum, max and min of a field in every collection, by one aggregation. 
+     * The collections without matched document are not included.
+     */
+    private List<DBObject> group(String key, final BuguQuery<T> query){
+        final String json = "{_id:null, sumValue:{$sum:'$" + key + "'}, maxValue:{$max:'$" + key + "'}, minValue:{$min:'$" + key + "'}}";
+        List<DBObject> list = new ArrayList<>();
+        List<Iterable<DBObject>> results = scatter(new Callable<Iterable<DBObject>>(){
+            @Override
+            public Iterable<DBObject> call(){
+                return dao.aggregate().match(query.getCondition()).group(json).results();
+            }
+        });
+        for(Iterable<DBObject> it : results){
+            Iterator<DBObject> iterator = it.iterator();
+            if(iterator.hasNext()){
+                list.add(iterator.next());
+            }
+        }
+        return list;
+    }
+    
+    /**
+     * Run the task on every split collection in parallel, and return the results in the order of suffixes.
+     */
+    private <R> List<R> scatter(final Callable<R> task){
+        ExecutorService es = (executor != null) ? executor : BuguFramework.getInstance().getExecutor();
+        List<Future<R>> futureList = new ArrayList<>();
+        List<R> results = new ArrayList<>();
+        try{
+            for(final String suffix : getSuffixes()){
+                futureList.add(es.submit(new Callable<R>(){
+                    @Override
+                    public R call() throws Exception {
+                        //the split collection is bound to thread, so restore it after the task
+                        DBCollection old = dao.getCollection();
+                        dao.setSplitCollection(suffix);
+                        try{
+                            return task.call();
+                        }finally{
+                            dao.bindCollection(old);
+                        }
+                    }
+                }));
+            }
+            for(Future<R> future : futureList){
+                results.add(future.get());
+            }
+        }catch(InterruptedException ex){
+            Thread.currentThread().interrupt();
+            throw new BuguException(ex);
+        }catch(ExecutionException ex){
+            throw new BuguException(ex.getCause());
+        }finally{
+            //cancel the others, when one fails
+            for(Future<R> future : futureList){
+                future.cancel(true);
+            }
+        }
+        return results;
+    }
+    
+    /**
+     * k-way merge of sorted lists by a heap, then skip and limit.
+     */
+    static List<DBObject> merge(final List<List<DBObject>> lists, final Comparator<DBObject> comparator, int skip, int max){
+        //the heap holds {list index, position}, equal documents are taken by the order of lists
+        PriorityQueue<int[]> heap = new PriorityQueue<>(Math.max(1, lists.size()), new Comparator<int[]>(){
+            @Override
+            public int compare(int[] a, int[] b){
+                int result = comparator.compare(lists.get(a[0]).get(a[1]), lists.get(b[0]).get(b[1]));
+                return (result != 0) ? result : Integer.compare(a[0], b[0]);
+            }
+        });
+        for(int i=0; i<lists.size(); i++){
+            if(!lists.get(i).isEmpty()){
+                heap.add(new int[]{i, 0});
+            }
+        }
+        List<DBObject> result = new ArrayList<>();
+        int index = 0;
+        while(!heap.isEmpty() && (max <= 0 || result.size() < max)){
+            int[] top = heap.poll();
+            List<DBObject> list = lists.get(top[0]);
+            if(index++ >= skip){
+                result.add(list.get(top[1]));
+            }
+            if(top[1] + 1 < list.size()){
+                heap.add(new int[]{top[0], top[1] + 1});
+            }
+        }
+        return result;
+    }
+    
+    private static List<DBObject> concat(List<List<DBObject>> lists, int skip, int max){
+        List<DBObject> result = new ArrayList<>();
+        int index = 0;
+        for(List<DBObject> list : lists){
+            for(DBObject dbo : list){
+                if(max > 0 && result.size() >= max){
+                    return result;
+                }
+                if(index++ >= skip){
+                    result.add(dbo);
+                }
+            }
+        }
+        return result;
+    }
+    
+}
@@ -133,6 +133,7 @@ public class BuguUpdater<T> {
         Class<T> clazz = dao.getEntityClass();
         DBObject condition = new BasicDBObject(Operator.ID, IdUtil.toDbId(clazz, id));
         WriteResult wr = dao.getCollection().update(condition, modifier, upsert, false); //update one
+        dao.evictCached(id);
         if(dao.hasCustomListener){
             BuguEntity entity = (BuguEntity)dao.findOne(id);
             dao.notifyUpdated(entity);
@@ -166,6 +167,7 @@ public class BuguUpdater<T> {
             condition.put(Operator.ISOLATED, 1);
         }
         WriteResult wr = dao.getCollection().update(condition, modifier, upsert, multi);
+        dao.evictCached();
         if(dao.hasCustomListener && ids != null){
             DBObject in = new BasicDBObject(Operator.IN, ids);
             DBCursor cursor = dao.getCollection().find(new BasicDBObject(Operator.ID, in));
@@ -38,6 +38,10 @@ public abstract class AbstractDao {
         }
     }
 
+    public boolean isSplit() {
+        return split;
+    }
+
     public DBCollection getCollection() {
         if(split){
             return local.get();
@@ -21,6 +21,7 @@ import com.bugull.mongo.utils.MapperUtil;
 import com.bugull.mongo.utils.IdUtil;
 import com.bugull.mongo.BuguDao;
 import com.bugull.mongo.BuguEntity;
+import com.bugull.mongo.BuguSession;
 import com.bugull.mongo.annotations.Id;
 import com.bugull.mongo.annotations.IdType;
 import com.bugull.mongo.cache.FieldsCache;
@@ -56,6 +57,14 @@ public final class InternalDao<T> extends BuguDao<T> {
      * @return 
      */
     public T findOneLazily(String id, boolean withoutCascade){
+        //an entity in the session contains all fields
+        BuguSession session = BuguSession.current();
+        if(session != null){
+            Object obj = session.get(getCollection().getFullName(), id);
+            if(obj != null){
+                return (T)obj;
+            }
+        }
         DBObject dbo = new BasicDBObject();
         dbo.put(Operator.ID, IdUtil.toDbId(clazz, id));
         DBObject result = getCollection().findOne(dbo, keys);
@@ -89,7 +98,9 @@ public final class InternalDao<T> extends BuguDao<T> {
         if(hasCustomListener){
             notifyUpdated(ent);
         }
-        return getCollection().save(MapperUtil.toDBObject(ent, withoutCascade));
+        WriteResult wr = getCollection().save(MapperUtil.toDBObject(ent, withoutCascade));
+        evictCached(ent.getId());
+        return wr;
     }
     
     private WriteResult doInsertWithoutCascade(T t, boolean withoutCascade){
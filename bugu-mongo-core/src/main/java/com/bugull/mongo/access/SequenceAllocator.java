@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) www.bugull.com
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bugull.mongo.access;
+
+import com.bugull.mongo.utils.Operator;
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBCollection;
+import com.mongodb.DBObject;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Allocate AUTO_INCREASE ids by hi/lo blocks.
+ * 
+ * <p>The last allocated id of each collection is kept in the counters collection. 
+ * A block of ids is reserved by one atomic findAndModify $inc, and handed out in current JVM without lock. 
+ * So different JVMs never get the same id. On first use, the counter is set to max(_id) of the collection, 
+ * if the counter is smaller.</p>
+ * 
+ * @author Frank Wen(xbwen@hotmail.com)
+ */
+public final class SequenceAllocator {
+    
+    public static final String COUNTERS = "bugu_counters";
+    
+    private static final String SEQ = "seq";
+    
+    private final InternalDao<?> dao;
+    private final DBCollection counters;
+    private final DBObject query;
+    private final long start;
+    private final int blockSize;
+    
+    private volatile Block block;
+    
+    private volatile boolean seeded;
+    
+    /**
+     * @param dao the dao of the collection
+     * @param start the first id, when the collection is empty
+     * @param blockSize number of ids reserved by one round trip
+     */
+    public SequenceAllocator(InternalDao<?> dao, long start, int blockSize){
+        this.dao = dao;
+        DBCollection coll = dao.getCollection();
+        this.counters = coll.getDB().getCollection(COUNTERS);
+        this.query = new BasicDBObject(Operator.ID, coll.getName());
+        this.start = start;
+        this.blockSize = blockSize < 1 ? 1 : blockSize;
+    }
+    
+    /**
+     * Get the next id.
+     * @return 
+     */
+    public long next(){
+        while(true){
+            Block b = block;
+            if(b != null){
+                long id = b.next.getAndIncrement();
+                if(id <= b.last){
+                    return id;
+                }
+            }
+            //the block is used up, only one thread reserves the next block
+            synchronized(this){
+                if(block == b){
+                    long last = reserve(blockSize);
+                    block = new Block(last - blockSize + 1, last);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Get continuous ids by one round trip, such as for batch insert.
+     * @param count number of ids
+     * @return the first id, the others are first+1 to first+count-1
+     */
+    public long next(int count){
+        if(count == 1){
+            return next();
+        }
+        long last = reserve(count);
+        return last - count + 1;
+    }
+    
+    private long reserve(int count){
+        if(!seeded){
+            seed();
+        }
+        DBObject inc = new BasicDBObject(Operator.INC, new BasicDBObject(SEQ, count));
+        DBObject result = counters.findAndModify(query, null, null, false, inc, true, true);
+        return ((Number)result.get(SEQ)).longValue();
+    }
+    
+    private synchronized void seed(){
+        if(seeded){
+            return;
+        }
+        //$max is atomic, so the counter is never moved back by other JVM
+        long max = dao.getMaxId();
+        long base = (max == 0) ? start - 1 : max;
+        DBObject update = new BasicDBObject(Operator.MAX, new BasicDBObject(SEQ, base));
+        counters.update(query, update, true, false);
+        seeded = true;
+    }
+    
+    /**
+     * Discard the reserved ids, and seed the counter again on next use. 
+     * The threads still holding this allocator get ids of a new block.
+     */
+    public synchronized void reset(){
+        block = null;
+        seeded = false;
+    }
+    
+    /**
+     * Remove the counter of a collection.
+     * @param coll 
+     */
+    public static void removeCounter(DBCollection coll){
+        DBCollection counters = coll.getDB().getCollection(COUNTERS);
+        counters.remove(new BasicDBObject(Operator.ID, coll.getName()));
+    }
+    
+    private static final class Block {
+        
+        final AtomicLong next;
+        final long last;
+        
+        Block(long first, long last){
+            this.next = new AtomicLong(first);
+            this.last = last;
+        }
+        
+    }
+    
+}
@@ -30,4 +30,5 @@ import java.lang.annotation.Target;
 public @interface Id {
     public IdType type() default IdType.AUTO_GENERATE;
     public long start() default 1L;
+    public int blockSize() default 1;  //for AUTO_INCREASE, number of ids reserved by one round trip to the counters collection
 }
@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) www.bugull.com
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bugull.mongo.cache;
+
+import com.bugull.mongo.mapper.EntityPlan;
+import java.lang.ref.SoftReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Cache(Map) holds entity classes' codec plan, for performance purporse.
+ * 
+ * @author Frank Wen(xbwen@hotmail.com)
+ */
+public class EntityPlanCache {
+    
+    private final ConcurrentMap<String, SoftReference<EntityPlan>> cache = new ConcurrentHashMap<>();
+    
+    private EntityPlanCache(){
+        
+    }
+    
+    private static class Holder {
+        final static EntityPlanCache instance = new EntityPlanCache();
+    } 
+    
+    public static EntityPlanCache getInstance(){
+        return Holder.instance;
+    }
+    
+    public EntityPlan get(Class<?> clazz){
+        String name = clazz.getName();
+        EntityPlan plan;
+        boolean recycled = false;
+        SoftReference<EntityPlan> sr = cache.get(name);
+        if(sr != null){
+            plan = sr.get();
+            if(plan == null){
+                recycled = true;
+            }else{
+                return plan;
+            }
+        }
+        //if not exists
+        plan = new EntityPlan(clazz);
+        sr = new SoftReference<>(plan);
+        if(recycled){
+            cache.put(name, sr);
+            return plan;
+        }else{
+            SoftReference<EntityPlan> temp = cache.putIfAbsent(name, sr);
+            EntityPlan exists = (temp != null) ? temp.get() : null;
+            return (exists != null) ? exists : plan;
+        }
+    }
+    
+}
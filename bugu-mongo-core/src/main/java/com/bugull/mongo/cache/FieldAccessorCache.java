@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) www.bugull.com
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bugull.mongo.cache;
+
+import com.bugull.mongo.mapper.FieldAccessor;
+import com.bugull.mongo.mapper.FieldAccessors;
+import java.lang.ref.SoftReference;
+import java.lang.reflect.Field;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Cache(Map) holds the accessor of entity fields, for performance purporse.
+ * 
+ * @author Frank Wen(xbwen@hotmail.com)
+ */
+public class FieldAccessorCache {
+    
+    private final ConcurrentMap<Field, SoftReference<FieldAccessor>> cache = new ConcurrentHashMap<>();
+    
+    private FieldAccessorCache(){
+        
+    }
+    
+    private static class Holder {
+        final static FieldAccessorCache instance = new FieldAccessorCache();
+    } 
+    
+    public static FieldAccessorCache getInstance(){
+        return Holder.instance;
+    }
+    
+    public FieldAccessor get(Field field){
+        FieldAccessor accessor;
+        boolean recycled = false;
+        SoftReference<FieldAccessor> sr = cache.get(field);
+        if(sr != null){
+            accessor = sr.get();
+            if(accessor == null){
+                recycled = true;
+            }else{
+                return accessor;
+            }
+        }
+        //if not exists
+        accessor = FieldAccessors.create(field);
+        sr = new SoftReference<>(accessor);
+        if(recycled){
+            cache.put(field, sr);
+            return accessor;
+        }else{
+            SoftReference<FieldAccessor> temp = cache.putIfAbsent(field, sr);
+            FieldAccessor exists = (temp != null) ? temp.get() : null;
+            return (exists != null) ? exists : accessor;
+        }
+    }
+    
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) www.bugull.com
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bugull.mongo.cache;
+
+import com.bugull.mongo.access.InternalDao;
+import com.bugull.mongo.access.SequenceAllocator;
+import com.bugull.mongo.annotations.Id;
+import com.mongodb.DBCollection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Cache(Map) holds the id allocator of AUTO_INCREASE entity. 
+ * The allocators are strong referenced, because they keep the reserved ids.
+ * 
+ * @author Frank Wen(xbwen@hotmail.com)
+ */
+public class SequenceAllocatorCache {
+    
+    //the key is full name of the collection
+    private final ConcurrentMap<String, SequenceAllocator> cache = new ConcurrentHashMap<>();
+    
+    private SequenceAllocatorCache(){
+        
+    }
+    
+    private static class Holder {
+        final static SequenceAllocatorCache instance = new SequenceAllocatorCache();
+    } 
+    
+    public static SequenceAllocatorCache getInstance(){
+        return Holder.instance;
+    }
+    
+    public SequenceAllocator get(Class<?> clazz){
+        InternalDao<?> dao = DaoCache.getInstance().get(clazz);
+        String name = dao.getCollection().getFullName();
+        SequenceAllocator allocator = cache.get(name);
+        if(allocator == null){
+            Id id = FieldsCache.getInstance().getIdField(clazz).getAnnotation(Id.class);
+            allocator = new SequenceAllocator(dao, id.start(), id.blockSize());
+            SequenceAllocator temp = cache.putIfAbsent(name, allocator);
+            if(temp != null){
+                allocator = temp;
+            }
+        }
+        return allocator;
+    }
+    
+    /**
+     * Remove the allocator and the counter of a collection, such as when the collection is dropped. 
+     * <p>Note: other JVMs keep the ids they have reserved, until they drop the collection too.</p>
+     * @param coll 
+     */
+    public void remove(DBCollection coll){
+        SequenceAllocator allocator = cache.remove(coll.getFullName());
+        if(allocator != null){
+            allocator.reset();
+        }
+        SequenceAllocator.removeCounter(coll);
+    }
+    
+}
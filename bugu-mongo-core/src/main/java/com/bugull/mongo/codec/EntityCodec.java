@@ -0,0 +1,404 @@
+/*
+ * Copyright (c) www.bugull.com
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bugull.mongo.codec;
+
+import com.bugull.mongo.cache.ConstructorCache;
+import com.bugull.mongo.cache.EntityPlanCache;
+import com.bugull.mongo.mapper.EntityPlan;
+import com.bugull.mongo.mapper.FieldAccessor;
+import com.bugull.mongo.mapper.FieldKind;
+import com.bugull.mongo.mapper.FieldPlan;
+import com.bugull.mongo.utils.Operator;
+import com.mongodb.BasicDBList;
+import com.mongodb.DBObject;
+import com.mongodb.DBObjectCodec;
+import com.mongodb.DBRef;
+import java.lang.reflect.Array;
+import java.util.Date;
+import java.util.Map;
+import java.util.UUID;
+import java.util.regex.Pattern;
+import org.bson.BSONObject;
+import org.bson.BsonBinary;
+import org.bson.BsonBinarySubType;
+import org.bson.BsonDbPointer;
+import org.bson.BsonInt32;
+import org.bson.BsonInt64;
+import org.bson.BsonObjectId;
+import org.bson.BsonReader;
+import org.bson.BsonString;
+import org.bson.BsonType;
+import org.bson.BsonValue;
+import org.bson.BsonWriter;
+import org.bson.codecs.BsonTypeClassMap;
+import org.bson.codecs.Codec;
+import org.bson.codecs.CollectibleCodec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.bson.types.BSONTimestamp;
+import org.bson.types.Binary;
+import org.bson.types.CodeWScope;
+import org.bson.types.ObjectId;
+
+/**
+ * Codec of an entity class, which reads BSON into entity fields, and writes entity fields to BSON directly, 
+ * without building the whole DBObject tree.
+ * 
+ * <p>Scalar values of mapped fields are read and written token by token. 
+ * For embedded documents, arrays and references, only the value of that field is built as DBObject/BasicDBList, 
+ * then converted by the same converter that MapperUtil uses, so the result is the same as reading by DBCollection.</p>
+ * 
+ * <p>Entity class with @CustomCodec field is converted via DBObject, because the custom decoder needs the whole document.</p>
+ * 
+ * @author Frank Wen(xbwen@hotmail.com)
+ */
+@SuppressWarnings("unchecked")
+public class EntityCodec<T> implements CollectibleCodec<T> {
+    
+    private static final BsonTypeClassMap TYPE_MAP = new BsonTypeClassMap();
+    
+    private final Class<T> clazz;
+    private final CodecRegistry registry;
+    private final DBObjectCodec dboCodec;
+    private final boolean withoutCascade;
+    
+    public EntityCodec(Class<T> clazz, CodecRegistry registry){
+        this(clazz, registry, false);
+    }
+    
+    public EntityCodec(Class<T> clazz, CodecRegistry registry, boolean withoutCascade){
+        this.clazz = clazz;
+        this.registry = registry;
+        this.dboCodec = new DBObjectCodec(registry);
+        this.withoutCascade = withoutCascade;
+    }
+    
+    private EntityPlan getPlan(){
+        return EntityPlanCache.getInstance().get(clazz);
+    }
+
+    @Override
+    public Class<T> getEncoderClass() {
+        return clazz;
+    }
+    
+    @Override
+    public T decode(BsonReader reader, DecoderContext decoderContext) {
+        EntityPlan plan = getPlan();
+        T obj = ConstructorCache.getInstance().create(clazz);
+        if(plan.hasCustomField()){
+            DBObject dbo = dboCodec.decode(reader, decoderContext);
+            plan.decode(obj, dbo, withoutCascade);
+            return obj;
+        }
+        reader.readStartDocument();
+        while(reader.readBsonType() != BsonType.END_OF_DOCUMENT){
+            String name = reader.readName();
+            FieldPlan fp = plan.getFieldPlan(name);
+            if(fp == null){
+                reader.skipValue();
+                continue;
+            }
+            if(fp.getKind() == FieldKind.PROPERTY && readPrimitive(reader, fp, obj)){
+                continue;
+            }
+            Object value = readValue(reader, decoderContext);
+            if(value == null){
+                continue;
+            }
+            if(fp.getKind() == FieldKind.REF && plan.deferRef(fp, obj, value, withoutCascade)){
+                continue;
+            }
+            Object result = fp.getConverter().decode(value, withoutCascade);
+            //a @Ref field is set to null when the referenced entity does not exist
+            if(result != null || fp.getKind() == FieldKind.REF){
+                fp.getAccessor().set(obj, result);
+            }
+        }
+        reader.readEndDocument();
+        return obj;
+    }
+    
+    /**
+     * Read int, long, double and String value to the field directly.
+     * @return true if the value has been read
+     */
+    private boolean readPrimitive(BsonReader reader, FieldPlan fp, Object obj){
+        Class<?> type = fp.getField().getType();
+        BsonType bsonType = reader.getCurrentBsonType();
+        FieldAccessor accessor = fp.getAccessor();
+        if(type == int.class){
+            if(bsonType == BsonType.INT32){
+                accessor.setInt(obj, reader.readInt32());
+                return true;
+            }
+        }
+        else if(type == long.class){
+            if(bsonType == BsonType.INT64){
+                accessor.setLong(obj, reader.readInt64());
+                return true;
+            }else if(bsonType == BsonType.INT32){
+                accessor.setLong(obj, reader.readInt32());
+                return true;
+            }
+        }
+        else if(type == double.class){
+            if(bsonType == BsonType.DOUBLE){
+                accessor.setDouble(obj, reader.readDouble());
+                return true;
+            }else if(bsonType == BsonType.INT32){
+                accessor.setDouble(obj, reader.readInt32());
+                return true;
+            }else if(bsonType == BsonType.INT64){
+                accessor.setDouble(obj, reader.readInt64());
+                return true;
+            }
+        }
+        else if(type == String.class){
+            if(bsonType == BsonType.STRING){
+                accessor.set(obj, reader.readString());
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Read a value as the same java type as DBObjectCodec does.
+     */
+    private Object readValue(BsonReader reader, DecoderContext decoderContext){
+        BsonType bsonType = reader.getCurrentBsonType();
+        switch(bsonType){
+            case DOCUMENT:
+                return verifyForDBRef(dboCodec.decode(reader, decoderContext));
+            case ARRAY:
+                return readArray(reader, decoderContext);
+            case NULL:
+                reader.readNull();
+                return null;
+            case INT32:
+                return reader.readInt32();
+            case INT64:
+                return reader.readInt64();
+            case DOUBLE:
+                return reader.readDouble();
+            case STRING:
+                return reader.readString();
+            case SYMBOL:
+                return reader.readSymbol();
+            case BOOLEAN:
+                return reader.readBoolean();
+            case OBJECT_ID:
+                return reader.readObjectId();
+            case DATE_TIME:
+                return new Date(reader.readDateTime());
+            case BINARY:
+                return readBinary(reader, decoderContext);
+            case DB_POINTER:
+                BsonDbPointer pointer = reader.readDBPointer();
+                return new DBRef(pointer.getNamespace(), pointer.getId());
+            case TIMESTAMP:
+                return registry.get(BSONTimestamp.class).decode(reader, decoderContext);
+            case REGULAR_EXPRESSION:
+                return registry.get(Pattern.class).decode(reader, decoderContext);
+            case JAVASCRIPT_WITH_SCOPE:
+                String code = reader.readJavaScriptWithScope();
+                return new CodeWScope(code, dboCodec.decode(reader, decoderContext));
+            default:
+                //other types, e.g. Decimal128, MinKey, MaxKey, JavaScript
+                return registry.get(TYPE_MAP.get(bsonType)).decode(reader, decoderContext);
+        }
+    }
+    
+    private Object readArray(BsonReader reader, DecoderContext decoderContext){
+        BasicDBList list = new BasicDBList();
+        reader.readStartArray();
+        while(reader.readBsonType() != BsonType.END_OF_DOCUMENT){
+            list.add(readValue(reader, decoderContext));
+        }
+        reader.readEndArray();
+        return list;
+    }
+    
+    private Object readBinary(BsonReader reader, DecoderContext decoderContext){
+        byte subType = reader.peekBinarySubType();
+        if(BsonBinarySubType.isUuid(subType) && reader.peekBinarySize() == 16){
+            return registry.get(UUID.class).decode(reader, decoderContext);
+        }
+        BsonBinary binary = reader.readBinaryData();
+        if(subType == BsonBinarySubType.BINARY.getValue() || subType == BsonBinarySubType.OLD_BINARY.getValue()){
+            return binary.getData();
+        }
+        return new Binary(binary.getType(), binary.getData());
+    }
+    
+    private Object verifyForDBRef(DBObject dbo){
+        if(dbo.containsField("$ref") && dbo.containsField("$id")){
+            Object db = dbo.get("$db");
+            if(db != null){
+                return new DBRef(db.toString(), dbo.get("$ref").toString(), dbo.get("$id"));
+            }
+            return new DBRef(dbo.get("$ref").toString(), dbo.get("$id"));
+        }
+        return dbo;
+    }
+
+    @Override
+    public void encode(BsonWriter writer, T obj, EncoderContext encoderContext) {
+        EntityPlan plan = getPlan();
+        if(plan.hasCustomField()){
+            dboCodec.encode(writer, plan.encode(obj, withoutCascade), encoderContext);
+            return;
+        }
+        writer.writeStartDocument();
+        //write _id first, as DBObjectCodec does
+        FieldPlan idPlan = plan.getIdPlan();
+        if(idPlan != null){
+            Object id = idPlan.getConverter().encode(idPlan.getAccessor().get(obj), withoutCascade);
+            writer.writeName(Operator.ID);
+            writeValue(writer, id, encoderContext);
+        }
+        for(FieldPlan fp : plan.getFieldPlans()){
+            if(fp.getKind() == FieldKind.ID){
+                continue;
+            }
+            if(fp.getKind() == FieldKind.PROPERTY && writePrimitive(writer, fp, obj)){
+                continue;
+            }
+            Object value = fp.getAccessor().get(obj);
+            if(value == null){
+                continue;
+            }
+            writer.writeName(fp.getName());
+            writeValue(writer, fp.getConverter().encode(value, withoutCascade), encoderContext);
+        }
+        writer.writeEndDocument();
+    }
+    
+    private boolean writePrimitive(BsonWriter writer, FieldPlan fp, Object obj){
+        Class<?> type = fp.getField().getType();
+        FieldAccessor accessor = fp.getAccessor();
+        if(type == int.class){
+            writer.writeInt32(fp.getName(), accessor.getInt(obj));
+            return true;
+        }
+        else if(type == long.class){
+            writer.writeInt64(fp.getName(), accessor.getLong(obj));
+            return true;
+        }
+        else if(type == double.class){
+            writer.writeDouble(fp.getName(), accessor.getDouble(obj));
+            return true;
+        }
+        return false;
+    }
+    
+    /**
+     * Write a value as the same BSON type as DBObjectCodec does.
+     */
+    private void writeValue(BsonWriter writer, Object value, EncoderContext encoderContext){
+        if(value == null){
+            writer.writeNull();
+        }
+        else if(value instanceof DBRef){
+            DBRef ref = (DBRef)value;
+            writer.writeStartDocument();
+            writer.writeString("$ref", ref.getCollectionName());
+            writer.writeName("$id");
+            writeValue(writer, ref.getId(), encoderContext);
+            if(ref.getDatabaseName() != null){
+                writer.writeString("$db", ref.getDatabaseName());
+            }
+            writer.writeEndDocument();
+        }
+        else if(value instanceof Map){
+            writer.writeStartDocument();
+            for(Map.Entry entry : ((Map<Object, Object>)value).entrySet()){
+                writer.writeName(String.valueOf(entry.getKey()));
+                writeValue(writer, entry.getValue(), encoderContext);
+            }
+            writer.writeEndDocument();
+        }
+        else if(value instanceof Iterable){
+            writer.writeStartArray();
+            for(Object item : (Iterable)value){
+                writeValue(writer, item, encoderContext);
+            }
+            writer.writeEndArray();
+        }
+        else if(value instanceof BSONObject){
+            BSONObject bo = (BSONObject)value;
+            writer.writeStartDocument();
+            for(String key : bo.keySet()){
+                writer.writeName(key);
+                writeValue(writer, bo.get(key), encoderContext);
+            }
+            writer.writeEndDocument();
+        }
+        else if(value instanceof byte[]){
+            writer.writeBinaryData(new BsonBinary((byte[])value));
+        }
+        else if(value.getClass().isArray()){
+            writer.writeStartArray();
+            int len = Array.getLength(value);
+            for(int i=0; i<len; i++){
+                writeValue(writer, Array.get(value, i), encoderContext);
+            }
+            writer.writeEndArray();
+        }
+        else{
+            Codec codec = registry.get(value.getClass());
+            encoderContext.encodeWithChildContext(codec, writer, value);
+        }
+    }
+
+    @Override
+    public T generateIdIfAbsentFromDocument(T obj) {
+        FieldPlan idPlan = getPlan().getIdPlan();
+        if(idPlan != null && idPlan.getAccessor().get(obj) == null){
+            Object id = idPlan.getConverter().encode(null, withoutCascade);
+            idPlan.getAccessor().set(obj, id.toString());
+        }
+        return obj;
+    }
+
+    @Override
+    public boolean documentHasId(T obj) {
+        FieldPlan idPlan = getPlan().getIdPlan();
+        return idPlan != null && idPlan.getAccessor().get(obj) != null;
+    }
+
+    @Override
+    public BsonValue getDocumentId(T obj) {
+        FieldPlan idPlan = getPlan().getIdPlan();
+        if(idPlan == null){
+            throw new IllegalStateException("The entity class " + clazz.getName() + " has no @Id field");
+        }
+        Object id = idPlan.getConverter().encode(idPlan.getAccessor().get(obj), withoutCascade);
+        if(id instanceof ObjectId){
+            return new BsonObjectId((ObjectId)id);
+        }else if(id instanceof Long){
+            return new BsonInt64((Long)id);
+        }else if(id instanceof Integer){
+            return new BsonInt32((Integer)id);
+        }else{
+            return new BsonString(id.toString());
+        }
+    }
+    
+}
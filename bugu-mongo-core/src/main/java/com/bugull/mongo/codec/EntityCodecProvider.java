@@ -0,0 +1,40 @@
+/*
+ * Copyright (c) www.bugull.com
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bugull.mongo.codec;
+
+import com.bugull.mongo.annotations.Entity;
+import org.bson.codecs.Codec;
+import org.bson.codecs.configuration.CodecProvider;
+import org.bson.codecs.configuration.CodecRegistry;
+
+/**
+ * Provide EntityCodec for classes annotated with @Entity. 
+ * It's registered into the CodecRegistry of MongoClient when BuguConnection connects.
+ * 
+ * @author Frank Wen(xbwen@hotmail.com)
+ */
+public class EntityCodecProvider implements CodecProvider {
+
+    @Override
+    public <T> Codec<T> get(Class<T> clazz, CodecRegistry registry) {
+        if(clazz.getAnnotation(Entity.class) == null){
+            return null;
+        }
+        return new EntityCodec<T>(clazz, registry);
+    }
+    
+}
@@ -30,9 +30,11 @@ import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 
 /**
- *
+ * Not used by the framework anymore. MapperUtil converts documents by the cached EntityPlan.
+ * 
  * @author Frank Wen(xbwen@hotmail.com)
  */
+@Deprecated
 public final class DecoderFactory {
     
     public static Decoder create(Field field, DBObject dbo){
@@ -16,12 +16,10 @@
 
 package com.bugull.mongo.decoder;
 
-import com.bugull.mongo.BuguEntity;
 import com.bugull.mongo.annotations.Default;
 import com.bugull.mongo.annotations.Embed;
-import com.bugull.mongo.exception.AnnotationException;
+import com.bugull.mongo.mapper.EmbedConverter;
 import com.bugull.mongo.utils.FieldUtil;
-import com.bugull.mongo.utils.MapperUtil;
 import com.mongodb.DBObject;
 import java.lang.reflect.Field;
 
@@ -44,17 +42,9 @@ public class EmbedDecoder extends AbstractDecoder{
     
     @Override
     public void decode(Object obj){
-        Class<?> type = field.getType();
-        if(type.isEnum()){
-            FieldUtil.set(obj, field, Enum.valueOf((Class<Enum>)type, (String)value));
-            return;
-        }
-        Object o = MapperUtil.fromDBObject(field.getType(), (DBObject)value);
-        FieldUtil.set(obj, field, o);
-        
-        //tip for wrong use of @Embed
-        if(o instanceof BuguEntity){
-            throw new AnnotationException("The Embed object should not be BuguEntity!");
+        Object result = new EmbedConverter(field).decode(value, withoutCascade);
+        if(result != null){
+            FieldUtil.set(obj, field, result);
         }
     }
     
@@ -16,14 +16,10 @@
 
 package com.bugull.mongo.decoder;
 
-import com.bugull.mongo.BuguEntity;
 import com.bugull.mongo.annotations.Default;
 import com.bugull.mongo.annotations.Ref;
-import com.bugull.mongo.cache.ConstructorCache;
-import com.bugull.mongo.cache.DaoCache;
+import com.bugull.mongo.mapper.RefConverter;
 import com.bugull.mongo.utils.FieldUtil;
-import com.bugull.mongo.access.InternalDao;
-import com.bugull.mongo.utils.ReferenceUtil;
 import com.mongodb.DBObject;
 import java.lang.reflect.Field;
 
@@ -33,11 +29,9 @@ import java.lang.reflect.Field;
  */
 public class RefDecoder extends AbstractDecoder{
     
-    private final Ref ref;
-    
     public RefDecoder(Field field, DBObject dbo){
         super(field);
-        ref = field.getAnnotation(Ref.class);
+        Ref ref = field.getAnnotation(Ref.class);
         String fieldName = field.getName();
         String name = ref.name();
         if(!name.equals(Default.NAME)){
@@ -48,20 +42,10 @@ public class RefDecoder extends AbstractDecoder{
     
     @Override
     public void decode(Object obj){
-        String refId = ReferenceUtil.fromDbReference(ref, value);
-        Class<?> clazz = FieldUtil.getRealType(field);
-        BuguEntity refObj = null;
-        //not cascade read
-        if(ref.cascade().toUpperCase().indexOf(Default.CASCADE_READ)==-1 || withoutCascade){
-            refObj = (BuguEntity)ConstructorCache.getInstance().create(clazz);
-            refObj.setId(refId);
-        }
-        //cascade read
-        else {
-            InternalDao dao = DaoCache.getInstance().get(clazz);
-            refObj = (BuguEntity)dao.findOneLazily(refId, true);
+        Object result = new RefConverter(field).decode(value, withoutCascade);
+        if(result != null){
+            FieldUtil.set(obj, field, result);
         }
-        FieldUtil.set(obj, field, refObj);
     }
     
 }
@@ -16,11 +16,9 @@
 
 package com.bugull.mongo.encoder;
 
-import com.bugull.mongo.BuguEntity;
 import com.bugull.mongo.annotations.Default;
 import com.bugull.mongo.annotations.Embed;
-import com.bugull.mongo.exception.AnnotationException;
-import com.bugull.mongo.utils.MapperUtil;
+import com.bugull.mongo.mapper.EmbedConverter;
 import java.lang.reflect.Field;
 
 /**
@@ -46,17 +44,7 @@ public class EmbedEncoder extends AbstractEncoder {
     
     @Override
     public Object encode(){
-        Class<?> type = field.getType();
-        if(type.isEnum()){
-            return value.toString();
-        }
-        
-        //tip for wrong use of @Embed
-        if(value instanceof BuguEntity){
-            throw new AnnotationException("The Embed object should not be BuguEntity!");
-        }
-        
-        return MapperUtil.toDBObject(value);
+        return new EmbedConverter(field).encode(value, withoutCascade);
     }
     
 }
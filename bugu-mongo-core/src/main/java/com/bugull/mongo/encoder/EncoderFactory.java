@@ -29,9 +29,11 @@ import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 
 /**
- *
+ * Not used by the framework anymore. MapperUtil converts documents by the cached EntityPlan.
+ * 
  * @author Frank Wen(xbwen@hotmail.com)
  */
+@Deprecated
 public final class EncoderFactory {
     
     public static Encoder create(Object obj, Field field){
@@ -16,13 +16,9 @@
 
 package com.bugull.mongo.encoder;
 
-import com.bugull.mongo.annotations.Id;
-import com.bugull.mongo.cache.DaoCache;
-import com.bugull.mongo.exception.IdException;
-import com.bugull.mongo.access.InternalDao;
+import com.bugull.mongo.mapper.IdConverter;
 import com.bugull.mongo.utils.Operator;
 import java.lang.reflect.Field;
-import org.bson.types.ObjectId;
 
 /**
  *
@@ -30,11 +26,8 @@ import org.bson.types.ObjectId;
  */
 public class IdEncoder extends AbstractEncoder {
     
-    private final Id id;
-    
     public IdEncoder(Object obj, Field field){
         super(obj, field);
-        id = field.getAnnotation(Id.class);
     }
     
     @Override
@@ -49,37 +42,7 @@ public class IdEncoder extends AbstractEncoder {
     
     @Override
     public Object encode() {
-        Object result = null;
-        switch(id.type()){
-            case AUTO_GENERATE:
-                if(value == null){
-                    result = new ObjectId();
-                }else{
-                    result = new ObjectId(value.toString());
-                }
-                break;
-            case AUTO_INCREASE:
-                if(value == null){
-                    InternalDao dao = DaoCache.getInstance().get(clazz);
-                    long max = dao.getMaxId();
-                    if(max == 0){
-                        result = id.start();
-                    }else{
-                        result = max + 1L;
-                    }
-                }else{
-                    result = Long.parseLong(value.toString());
-                }
-                break;
-            case USER_DEFINE:
-                if(value == null){
-                    throw new IdException("user-defined id doesn't have value!");
-                }else{
-                    result = value.toString();
-                }
-                break;
-        }
-        return result;
+        return new IdConverter(field, clazz).encode(value, withoutCascade);
     }
     
 }
@@ -18,6 +18,7 @@ package com.bugull.mongo.encoder;
 
 import com.bugull.mongo.annotations.Default;
 import com.bugull.mongo.annotations.Property;
+import com.bugull.mongo.mapper.PropertyConverter;
 import java.lang.reflect.Field;
 
 /**
@@ -45,12 +46,7 @@ public class PropertyEncoder extends AbstractEncoder{
     
     @Override
     public Object encode(){
-        //if the field is enum type, save as String
-        Class<?> type = field.getType();
-        if(type.isEnum()){
-            return value.toString();
-        }
-        return value;
+        return new PropertyConverter(field).encode(value, withoutCascade);
     }
     
 }
@@ -16,20 +16,15 @@
 
 package com.bugull.mongo.encoder;
 
-import com.bugull.mongo.BuguEntity;
 import com.bugull.mongo.annotations.Default;
 import com.bugull.mongo.annotations.Ref;
-import com.bugull.mongo.cache.DaoCache;
-import com.bugull.mongo.utils.FieldUtil;
-import com.bugull.mongo.access.InternalDao;
-import com.bugull.mongo.utils.ReferenceUtil;
+import com.bugull.mongo.mapper.RefConverter;
 import java.lang.reflect.Field;
 
 /**
  *
  * @author Frank Wen(xbwen@hotmail.com)
  */
-@SuppressWarnings("unchecked")
 public class RefEncoder extends AbstractEncoder{
     
     private final Ref ref;
@@ -51,16 +46,7 @@ public class RefEncoder extends AbstractEncoder{
     
     @Override
     public Object encode(){
-        BuguEntity entity = (BuguEntity)value;
-        if(!withoutCascade){
-            if(ref.cascade().toUpperCase().indexOf(Default.CASCADE_CREATE)!=-1 || ref.cascade().toUpperCase().indexOf(Default.CASCADE_UPDATE)!=-1){
-                Class<?> cls = FieldUtil.getRealType(field);
-                InternalDao dao = DaoCache.getInstance().get(cls);
-                dao.saveWithoutCascade(entity, true);
-            }
-        }
-        
-        return ReferenceUtil.toDbReference(ref, entity.getClass(), entity.getId());
+        return new RefConverter(field).encode(value, withoutCascade);
     }
     
 }
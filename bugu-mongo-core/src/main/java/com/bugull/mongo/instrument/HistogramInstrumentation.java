@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) www.bugull.com
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bugull.mongo.instrument;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+/**
+ * Record the latency of commands in memory, by HDR histograms of microseconds, one per collection and operation.
+ * 
+ * <pre>
+ * Histogram h = histogram.getHistogram("user", "find");
+ * System.out.println("p99: " + h.getValueAtPercentile(99) + "us");
+ * </pre>
+ * 
+ * @author Frank Wen(xbwen@hotmail.com)
+ */
+public class HistogramInstrumentation implements Instrumentation {
+    
+    private static final int SIGNIFICANT_DIGITS = 3;
+    
+    private final ConcurrentHashMap<String, Histogram> histograms = new ConcurrentHashMap<>();
+    
+    private final ConcurrentHashMap<String, Histogram> documents = new ConcurrentHashMap<>();
+
+    @Override
+    public void record(OperationEvent event) {
+        String key = getKey(event.getCollection(), event.getOperation());
+        getOrCreate(histograms, key).recordValue(Math.max(0, event.getElapsedTime(TimeUnit.MICROSECONDS)));
+        getOrCreate(documents, key).recordValue(Math.max(0, event.getDocuments()));
+    }
+    
+    /**
+     * Get the latency histogram, in microseconds.
+     * @param collection
+     * @param operation
+     * @return null if no such command yet
+     */
+    public Histogram getHistogram(String collection, String operation){
+        return histograms.get(getKey(collection, operation));
+    }
+    
+    /**
+     * Get the histogram of documents returned or affected.
+     * @param collection
+     * @param operation
+     * @return null if no such command yet
+     */
+    public Histogram getDocumentsHistogram(String collection, String operation){
+        return documents.get(getKey(collection, operation));
+    }
+    
+    /**
+     * Get all the latency histograms, the key is collection:operation.
+     * @return 
+     */
+    public Map<String, Histogram> getHistograms(){
+        return histograms;
+    }
+    
+    public void reset(){
+        for(Histogram h : histograms.values()){
+            h.reset();
+        }
+        for(Histogram h : documents.values()){
+            h.reset();
+        }
+    }
+    
+    private String getKey(String collection, String operation){
+        return collection + ":" + operation;
+    }
+    
+    private Histogram getOrCreate(ConcurrentHashMap<String, Histogram> map, String key){
+        Histogram h = map.get(key);
+        if(h == null){
+            h = new ConcurrentHistogram(SIGNIFICANT_DIGITS);
+            Histogram old = map.putIfAbsent(key, h);
+            if(old != null){
+                h = old;
+            }
+        }
+        return h;
+    }
+    
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) www.bugull.com
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bugull.mongo.instrument;
+
+import com.mongodb.event.CommandFailedEvent;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.event.CommandSucceededEvent;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import org.bson.BsonArray;
+import org.bson.BsonBinaryWriter;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.bson.codecs.BsonDocumentCodec;
+import org.bson.codecs.EncoderContext;
+import org.bson.io.BasicOutputBuffer;
+
+/**
+ * The command listener of mongoDB driver, which turns the commands into OperationEvent. 
+ * It's added to the client options by BuguConnection.
+ * 
+ * @author Frank Wen(xbwen@hotmail.com)
+ */
+public class InstrumentCommandListener implements CommandListener {
+    
+    private static final String CURSOR = "cursor";
+    
+    //the started commands, by request id
+    private final Map<Integer, Started> startedMap = new ConcurrentHashMap<>();
+    
+    @Override
+    public void commandStarted(CommandStartedEvent event) {
+        Instrumentor instrumentor = Instrumentor.getInstance();
+        if(!instrumentor.isEnabled()){
+            return;
+        }
+        BsonDocument command = event.getCommand();
+        String name = event.getCommandName();
+        String collection = getCollection(name, command);
+        if(collection == null){
+            //not a command on collection, such as isMaster
+            return;
+        }
+        Started started = new Started();
+        started.database = event.getDatabaseName();
+        started.collection = collection;
+        started.shape = QueryShape.of(getCondition(name, command));
+        started.bytes = instrumentor.isMeasureBytes() ? sizeOf(command) : -1;
+        startedMap.put(event.getRequestId(), started);
+    }
+
+    @Override
+    public void commandSucceeded(CommandSucceededEvent event) {
+        Started started = startedMap.remove(event.getRequestId());
+        if(started == null){
+            return;
+        }
+        BsonDocument response = event.getResponse();
+        long responseBytes = (started.bytes >= 0 && response != null) ? sizeOf(response) : -1;
+        fire(event.getCommandName(), started, getDocuments(response), event.getElapsedTime(TimeUnit.NANOSECONDS), responseBytes, null);
+    }
+
+    @Override
+    public void commandFailed(CommandFailedEvent event) {
+        Started started = startedMap.remove(event.getRequestId());
+        if(started == null){
+            return;
+        }
+        fire(event.getCommandName(), started, 0, event.getElapsedTime(TimeUnit.NANOSECONDS), -1, event.getThrowable());
+    }
+    
+    private void fire(String name, Started started, int documents, long elapsedNanos, long responseBytes, Throwable error){
+        Instrumentor instrumentor = Instrumentor.getInstance();
+        Class<?> clazz = instrumentor.getEntityClass(started.database, started.collection);
+        instrumentor.fire(new OperationEvent(name, started.database, started.collection, clazz, started.shape, 
+                documents, elapsedNanos, started.bytes, responseBytes, error));
+    }
+    
+    private String getCollection(String name, BsonDocument command){
+        if(command.isEmpty()){
+            return null;
+        }
+        if(name.equals("getMore")){
+            BsonValue value = command.get("collection");
+            return (value != null && value.isString()) ? value.asString().getValue() : null;
+        }
+        BsonValue value = command.get(command.getFirstKey());
+        return value.isString() ? value.asString().getValue() : null;
+    }
+    
+    private BsonValue getCondition(String name, BsonDocument command){
+        switch(name){
+            case "find":
+                return command.get("filter");
+            case "aggregate":
+                return command.get("pipeline");
+            case "count":
+            case "distinct":
+            case "findAndModify":
+            case "findandmodify":
+            case "mapReduce":
+            case "mapreduce":
+                return command.get("query");
+            case "update":
+                return getFirstOf(command, "updates", "q");
+            case "delete":
+                return getFirstOf(command, "deletes", "q");
+            default:
+                return null;
+        }
+    }
+    
+    private BsonValue getFirstOf(BsonDocument command, String arrayName, String key){
+        BsonValue value = command.get(arrayName);
+        if(value == null || !value.isArray() || value.asArray().isEmpty()){
+            return null;
+        }
+        BsonValue first = value.asArray().get(0);
+        return first.isDocument() ? first.asDocument().get(key) : null;
+    }
+    
+    private int getDocuments(BsonDocument response){
+        if(response == null){
+            return 0;
+        }
+        BsonValue cursor = response.get(CURSOR);
+        if(cursor != null && cursor.isDocument()){
+            BsonValue batch = cursor.asDocument().get("firstBatch");
+            if(batch == null){
+                batch = cursor.asDocument().get("nextBatch");
+            }
+            return (batch != null && batch.isArray()) ? ((BsonArray)batch).size() : 0;
+        }
+        //count, and the affected documents of write
+        BsonValue n = response.get("n");
+        if(n != null && n.isNumber()){
+            return n.asNumber().intValue();
+        }
+        BsonValue results = response.get("results");
+        if(results != null && results.isArray()){
+            return results.asArray().size();
+        }
+        BsonValue values = response.get("values");
+        if(values != null && values.isArray()){
+            return values.asArray().size();
+        }
+        return 0;
+    }
+    
+    private long sizeOf(BsonDocument document){
+        BasicOutputBuffer buffer = new BasicOutputBuffer();
+        try(BsonBinaryWriter writer = new BsonBinaryWriter(buffer)){
+            new BsonDocumentCodec().encode(writer, document, EncoderContext.builder().build());
+            return buffer.getSize();
+        }
+    }
+    
+    private static class Started {
+        String database;
+        String collection;
+        String shape;
+        long bytes;
+    }
+    
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) www.bugull.com
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bugull.mongo.instrument;
+
+import com.mongodb.DBCollection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * The registry of instrumentations. They can be added or removed at any time:
+ * 
+ * <pre>
+ * HistogramInstrumentation histogram = new HistogramInstrumentation();
+ * Instrumentor.getInstance().add(histogram);
+ * Instrumentor.getInstance().add(new SlowQueryLogger(200));
+ * </pre>
+ * 
+ * @author Frank Wen(xbwen@hotmail.com)
+ */
+public class Instrumentor {
+    
+    private final List<Instrumentation> list = new CopyOnWriteArrayList<>();
+    
+    //entity class by full name of collection
+    private final Map<String, Class<?>> entityClasses = new ConcurrentHashMap<>();
+    
+    private volatile boolean measureBytes;
+    
+    private Instrumentor(){
+        
+    }
+    
+    private static class Holder {
+        final static Instrumentor instance = new Instrumentor();
+    } 
+    
+    public static Instrumentor getInstance(){
+        return Holder.instance;
+    }
+    
+    public void add(Instrumentation instrumentation){
+        list.add(instrumentation);
+    }
+    
+    public void remove(Instrumentation instrumentation){
+        list.remove(instrumentation);
+    }
+    
+    public boolean isEnabled(){
+        return !list.isEmpty();
+    }
+    
+    /**
+     * Measure the size of commands and responses. It costs an extra encoding of every command. Default is false.
+     * @param measureBytes 
+     */
+    public void setMeasureBytes(boolean measureBytes){
+        this.measureBytes = measureBytes;
+    }
+    
+    public boolean isMeasureBytes(){
+        return measureBytes;
+    }
+    
+    /**
+     * Register the entity class of a collection, called by BuguDao.
+     * @param coll
+     * @param clazz 
+     */
+    public void registerCollection(DBCollection coll, Class<?> clazz){
+        entityClasses.put(coll.getFullName(), clazz);
+    }
+    
+    public Class<?> getEntityClass(String database, String collection){
+        return entityClasses.get(database + "." + collection);
+    }
+    
+    void fire(OperationEvent event){
+        for(Instrumentation instrumentation : list){
+            instrumentation.record(event);
+        }
+    }
+    
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) www.bugull.com
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bugull.mongo.instrument;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * The registry of MappingStats. Profiling is off by default, and costs nothing but a flag check then.
+ * 
+ * <pre>
+ * MappingProfiler.getInstance().setEnabled(true);
+ * ...
+ * MappingStats stats = MappingProfiler.getInstance().getStats(User.class);
+ * System.out.println("decode: " + stats.getDecodeTimeMillis() + "ms, fetch: " + stats.getFetchTimeMillis() + "ms");
+ * </pre>
+ * 
+ * <p>The stats are also registered as MBeans, named com.bugull.mongo:type=MappingStats,entity=class name.</p>
+ * 
+ * @author Frank Wen(xbwen@hotmail.com)
+ */
+public class MappingProfiler {
+    
+    private static final Logger LOGGER = Logger.getLogger("com.bugull.mongo");
+    
+    private final ConcurrentHashMap<Class<?>, MappingStats> map = new ConcurrentHashMap<>();
+    
+    private volatile boolean enabled;
+    
+    private volatile boolean jmxEnabled = true;
+    
+    //{depth, nanos} of the cascade reads of current thread, to exclude them from decode time
+    private final ThreadLocal<long[]> cascade = new ThreadLocal<long[]>(){
+        @Override
+        protected long[] initialValue(){
+            return new long[2];
+        }
+    };
+    
+    private MappingProfiler(){
+        
+    }
+    
+    private static class Holder {
+        final static MappingProfiler instance = new MappingProfiler();
+    } 
+    
+    public static MappingProfiler getInstance(){
+        return Holder.instance;
+    }
+    
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+    
+    /**
+     * Register the stats as MBeans. Default is true. It must be called before profiling is enabled.
+     * @param jmxEnabled 
+     */
+    public void setJmxEnabled(boolean jmxEnabled) {
+        this.jmxEnabled = jmxEnabled;
+    }
+    
+    public MappingStats getStats(Class<?> clazz){
+        MappingStats stats = map.get(clazz);
+        if(stats == null){
+            stats = new MappingStats(clazz);
+            MappingStats old = map.putIfAbsent(clazz, stats);
+            if(old != null){
+                stats = old;
+            }else if(jmxEnabled){
+                registerMBean(stats);
+            }
+        }
+        return stats;
+    }
+    
+    public Collection<MappingStats> getAllStats(){
+        return map.values();
+    }
+    
+    public void reset(){
+        for(MappingStats stats : map.values()){
+            stats.reset();
+        }
+    }
+    
+    /**
+     * Call before a cascade read.
+     * @return the start time
+     */
+    public long startCascade(){
+        cascade.get()[0]++;
+        return System.nanoTime();
+    }
+    
+    /**
+     * Call after a cascade read.
+     * @param owner the entity class whose field is read
+     * @param start the value returned by startCascade()
+     */
+    public void endCascade(Class<?> owner, long start){
+        long nanos = System.nanoTime() - start;
+        long[] state = cascade.get();
+        state[0]--;
+        //the nested cascade reads are included in the outer one
+        if(state[0] == 0){
+            state[1] += nanos;
+        }
+        getStats(owner).recordCascade(nanos);
+    }
+    
+    /**
+     * Get the total time of cascade reads of current thread. 
+     * The difference of two calls is the cascade time between them.
+     * @return 
+     */
+    public long getThreadCascadeNanos(){
+        return cascade.get()[1];
+    }
+    
+    private void registerMBean(MappingStats stats){
+        try{
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName("com.bugull.mongo:type=MappingStats,entity=" + ObjectName.quote(stats.getEntityClass()));
+            if(!server.isRegistered(name)){
+                server.registerMBean(stats, name);
+            }
+        }catch(Exception ex){
+            LOGGER.log(Level.WARNING, "Can not register MBean for " + stats.getEntityClass(), ex);
+        }
+    }
+    
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) www.bugull.com
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bugull.mongo.instrument;
+
+import com.bugull.mongo.mapper.FieldKind;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The mapping cost of an entity class: 
+ * <ul>
+ * <li>fetch: reading documents from cursor, including the round trips to server and BSON decoding by driver.</li>
+ * <li>decode: converting documents to entities, excluding the cascade reads.</li>
+ * <li>cascade: reading the @Ref and @RefList entities of it.</li>
+ * </ul>
+ * 
+ * @author Frank Wen(xbwen@hotmail.com)
+ */
+public class MappingStats implements MappingStatsMXBean {
+    
+    private static final double NANOS_PER_MILLI = 1000000.0;
+    
+    private final Class<?> clazz;
+    
+    private final LongAdder fetchCount = new LongAdder();
+    private final LongAdder fetchNanos = new LongAdder();
+    private final LongAdder decodeCount = new LongAdder();
+    private final LongAdder decodeNanos = new LongAdder();
+    private final LongAdder cascadeCount = new LongAdder();
+    private final LongAdder cascadeNanos = new LongAdder();
+    private final LongAdder[] fieldCounts = new LongAdder[FieldKind.values().length];
+    
+    public MappingStats(Class<?> clazz){
+        this.clazz = clazz;
+        for(int i=0; i<fieldCounts.length; i++){
+            fieldCounts[i] = new LongAdder();
+        }
+    }
+    
+    public void recordFetch(long nanos){
+        fetchCount.increment();
+        fetchNanos.add(nanos);
+    }
+    
+    public void recordDecode(long nanos){
+        decodeCount.increment();
+        decodeNanos.add(nanos);
+    }
+    
+    public void recordCascade(long nanos){
+        cascadeCount.increment();
+        cascadeNanos.add(nanos);
+    }
+    
+    public void recordField(FieldKind kind){
+        fieldCounts[kind.ordinal()].increment();
+    }
+    
+    public long getFieldCount(FieldKind kind){
+        return fieldCounts[kind.ordinal()].sum();
+    }
+
+    @Override
+    public String getEntityClass() {
+        return clazz.getName();
+    }
+
+    /**
+     * The number of documents read from cursor.
+     * @return 
+     */
+    @Override
+    public long getFetchCount() {
+        return fetchCount.sum();
+    }
+
+    @Override
+    public double getFetchTimeMillis() {
+        return fetchNanos.sum() / NANOS_PER_MILLI;
+    }
+
+    /**
+     * The number of documents converted to entity.
+     * @return 
+     */
+    @Override
+    public long getDecodeCount() {
+        return decodeCount.sum();
+    }
+
+    @Override
+    public double getDecodeTimeMillis() {
+        return decodeNanos.sum() / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getAverageDecodeMicros() {
+        long count = decodeCount.sum();
+        return count == 0 ? 0 : decodeNanos.sum() / 1000.0 / count;
+    }
+
+    /**
+     * The number of cascade reads, a batch read of a list is counted once.
+     * @return 
+     */
+    @Override
+    public long getCascadeCount() {
+        return cascadeCount.sum();
+    }
+
+    @Override
+    public double getCascadeTimeMillis() {
+        return cascadeNanos.sum() / NANOS_PER_MILLI;
+    }
+
+    /**
+     * The number of field values decoded, by field kind.
+     * @return 
+     */
+    @Override
+    public Map<String, Long> getFieldCounts() {
+        Map<String, Long> map = new LinkedHashMap<>();
+        for(FieldKind kind : FieldKind.values()){
+            map.put(kind.name(), fieldCounts[kind.ordinal()].sum());
+        }
+        return map;
+    }
+
+    @Override
+    public void reset() {
+        fetchCount.reset();
+        fetchNanos.reset();
+        decodeCount.reset();
+        decodeNanos.reset();
+        cascadeCount.reset();
+        cascadeNanos.reset();
+        for(LongAdder adder : fieldCounts){
+            adder.reset();
+        }
+    }
+    
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright (c) www.bugull.com
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bugull.mongo.instrument;
+
+import java.util.Map;
+
+/**
+ * The JMX interface of MappingStats.
+ * 
+ * @author Frank Wen(xbwen@hotmail.com)
+ */
+public interface MappingStatsMXBean {
+    
+    public String getEntityClass();
+    
+    public long getFetchCount();
+    
+    public double getFetchTimeMillis();
+    
+    public long getDecodeCount();
+    
+    public double getDecodeTimeMillis();
+    
+    public double getAverageDecodeMicros();
+    
+    public long getCascadeCount();
+    
+    public double getCascadeTimeMillis();
+    
+    public Map<String, Long> getFieldCounts();
+    
+    public void reset();
+    
+}
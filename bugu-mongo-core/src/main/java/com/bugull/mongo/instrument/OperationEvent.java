@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) www.bugull.com
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bugull.mongo.instrument;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A command executed by mongoDB.
+ * 
+ * @author Frank Wen(xbwen@hotmail.com)
+ */
+public class OperationEvent {
+    
+    private final String operation;
+    private final String database;
+    private final String collection;
+    private final Class<?> entityClass;
+    private final String shape;
+    private final int documents;
+    private final long elapsedNanos;
+    private final long requestBytes;
+    private final long responseBytes;
+    private final Throwable error;
+    
+    public OperationEvent(String operation, String database, String collection, Class<?> entityClass, String shape, 
+            int documents, long elapsedNanos, long requestBytes, long responseBytes, Throwable error){
+        this.operation = operation;
+        this.database = database;
+        this.collection = collection;
+        this.entityClass = entityClass;
+        this.shape = shape;
+        this.documents = documents;
+        this.elapsedNanos = elapsedNanos;
+        this.requestBytes = requestBytes;
+        this.responseBytes = responseBytes;
+        this.error = error;
+    }
+
+    /**
+     * The command name, such as find, getMore, aggregate, insert, update, delete, findAndModify, count, mapReduce.
+     * @return 
+     */
+    public String getOperation() {
+        return operation;
+    }
+
+    public String getDatabase() {
+        return database;
+    }
+
+    public String getCollection() {
+        return collection;
+    }
+
+    /**
+     * The entity class of the collection, null if the collection is not used by a BuguDao, such as GridFS.
+     * @return 
+     */
+    public Class<?> getEntityClass() {
+        return entityClass;
+    }
+
+    /**
+     * The condition with the values replaced by '?', so that the same query has the same shape.
+     * @return 
+     */
+    public String getShape() {
+        return shape;
+    }
+
+    /**
+     * The number of documents returned by a read, or affected by a write.
+     * @return 
+     */
+    public int getDocuments() {
+        return documents;
+    }
+
+    /**
+     * The time from sending the command to receiving the response, measured by driver.
+     * @param unit
+     * @return 
+     */
+    public long getElapsedTime(TimeUnit unit) {
+        return unit.convert(elapsedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * The size of the command, -1 if Instrumentor.setMeasureBytes(true) is not called.
+     * @return 
+     */
+    public long getRequestBytes() {
+        return requestBytes;
+    }
+
+    /**
+     * The size of the response, -1 if Instrumentor.setMeasureBytes(true) is not called.
+     * @return 
+     */
+    public long getResponseBytes() {
+        return responseBytes;
+    }
+
+    /**
+     * The error when the command fails, null if succeeded.
+     * @return 
+     */
+    public Throwable getError() {
+        return error;
+    }
+    
+    public boolean isFailed() {
+        return error != null;
+    }
+    
+    @Override
+    public String toString(){
+        StringBuilder sb = new StringBuilder();
+        sb.append(operation).append(" ").append(database).append(".").append(collection);
+        if(entityClass != null){
+            sb.append("(").append(entityClass.getSimpleName()).append(")");
+        }
+        sb.append(" ").append(getElapsedTime(TimeUnit.MILLISECONDS)).append("ms");
+        sb.append(" docs:").append(documents);
+        if(shape != null){
+            sb.append(" shape:").append(shape);
+        }
+        if(error != null){
+            sb.append(" error:").append(error.getMessage());
+        }
+        return sb.toString();
+    }
+    
+}
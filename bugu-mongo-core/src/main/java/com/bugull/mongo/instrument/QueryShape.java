@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) www.bugull.com
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bugull.mongo.instrument;
+
+import java.util.Map.Entry;
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.BsonValue;
+
+/**
+ * Get the shape of a condition, by replacing the values with '?'. The field names and operators are kept.
+ * 
+ * @author Frank Wen(xbwen@hotmail.com)
+ */
+public final class QueryShape {
+    
+    private static final BsonString PLACEHOLDER = new BsonString("?");
+    
+    public static String of(BsonValue condition){
+        if(condition == null){
+            return null;
+        }
+        BsonValue shape = toShape(condition);
+        if(shape.isDocument()){
+            return shape.asDocument().toJson();
+        }
+        return new BsonDocument("shape", shape).toJson();
+    }
+    
+    private static BsonValue toShape(BsonValue value){
+        if(value.isDocument()){
+            BsonDocument shape = new BsonDocument();
+            for(Entry<String, BsonValue> entry : value.asDocument().entrySet()){
+                shape.put(entry.getKey(), toShape(entry.getValue()));
+            }
+            return shape;
+        }
+        if(value.isArray()){
+            //the documents in array are kept, such as $and, $or and pipeline, the values are collapsed to one '?'
+            BsonArray shape = new BsonArray();
+            boolean hasValue = false;
+            for(BsonValue v : value.asArray()){
+                if(v.isDocument() || v.isArray()){
+                    shape.add(toShape(v));
+                }else if(!hasValue){
+                    shape.add(PLACEHOLDER);
+                    hasValue = true;
+                }
+            }
+            return shape;
+        }
+        return PLACEHOLDER;
+    }
+    
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) www.bugull.com
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bugull.mongo.instrument;
+
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Log the commands which take longer than a threshold, and the failed commands.
+ * 
+ * @author Frank Wen(xbwen@hotmail.com)
+ */
+public class SlowQueryLogger implements Instrumentation {
+    
+    private static final Logger LOGGER = Logger.getLogger("com.bugull.mongo");
+    
+    private volatile long thresholdMS;
+    
+    public SlowQueryLogger(long thresholdMS){
+        this.thresholdMS = thresholdMS;
+    }
+
+    @Override
+    public void record(OperationEvent event) {
+        if(event.isFailed()){
+            LOGGER.log(Level.WARNING, "Failed command: {0}", event);
+        }
+        else if(event.getElapsedTime(TimeUnit.MILLISECONDS) >= thresholdMS){
+            LOGGER.log(Level.WARNING, "Slow command: {0}", event);
+        }
+    }
+    
+    public long getThresholdMS() {
+        return thresholdMS;
+    }
+
+    public void setThresholdMS(long thresholdMS) {
+        this.thresholdMS = thresholdMS;
+    }
+    
+}
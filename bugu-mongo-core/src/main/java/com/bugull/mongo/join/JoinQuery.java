@@ -16,6 +16,7 @@
 package com.bugull.mongo.join;
 
 import com.bugull.mongo.BuguAggregation;
+import com.bugull.mongo.BuguCursor;
 import com.bugull.mongo.BuguDao;
 import com.bugull.mongo.BuguQuery;
 import com.bugull.mongo.agg.Lookup;
@@ -35,6 +36,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.stream.Stream;
 
 /**
  * Join query on two collection. It's based on aggregation, but easy to use.
@@ -63,6 +65,8 @@ public class JoinQuery<L, R> implements Parallelable {
     protected BuguQuery leftMatch;
     protected BuguQuery rightMatch;
     
+    protected int batchSize;  //default value is zero, means decided by server
+    
     public JoinQuery(BuguDao<L> dao, Class<R> rightColl){
         this.dao = dao;
         this.rightColl = rightColl;
@@ -118,9 +122,68 @@ public class JoinQuery<L, R> implements Parallelable {
         return this;
     }
     
+    /**
+     * Number of documents to return per batch, when reading results by cursor.
+     * @param batchSize
+     * @return 
+     */
+    public JoinQuery<L, R> batchSize(int batchSize){
+        this.batchSize = batchSize;
+        return this;
+    }
+    
     @Override
     public List<JoinResult<L, R>> results(){
+        List<JoinResult<L, R>> list = new ArrayList<>();
+        BuguCursor<JoinResult<L, R>> cursor = cursor();
+        try{
+            for(JoinResult<L, R> result : cursor){
+                list.add(result);
+            }
+        }finally{
+            cursor.close();
+        }
+        return list;
+    }
+    
+    /**
+     * Get the results as a cursor, which converts documents lazily as the cursor advances. 
+     * Remember to close the cursor if you don't read all the results.
+     * @return 
+     */
+    public BuguCursor<JoinResult<L, R>> cursor(){
+        final String as = getAsField();
+        BuguAggregation<L> agg = buildAggregation(as);
+        return new BuguCursor<JoinResult<L, R>>(agg.cursor(), 0){
+            @Override
+            protected JoinResult<L, R> decode(Object item) {
+                return toJoinResult((DBObject)item, as);
+            }
+        };
+    }
+    
+    /**
+     * Get the results as a stream. Close the stream(or use try-with-resources) if you don't read all the results.
+     * @return 
+     */
+    public Stream<JoinResult<L, R>> stream(){
+        return cursor().stream();
+    }
+    
+    /**
+     * The as field of lookup. Make sure it does not exists in left collection.
+     */
+    private String getAsField(){
+        String leftCollName = MapperUtil.getEntityName(dao.getEntityClass());
+        String rightCollName = MapperUtil.getEntityName(rightColl);
+        return leftCollName + "_" + leftCollName.length() + "_" + rightCollName + "_" + rightCollName.length();
+    }
+    
+    private BuguAggregation<L> buildAggregation(String as){
         BuguAggregation<L> agg = dao.aggregate();
+        if(batchSize > 0){
+            agg.batchSize(batchSize);
+        }
         
         //match the left
         if(leftMatch != null){
@@ -145,12 +208,9 @@ public class JoinQuery<L, R> implements Parallelable {
             }
         }
         
-        //the as field
         Class<L> leftColl = dao.getEntityClass();
-        String leftCollName = MapperUtil.getEntityName(leftColl);
         String rightCollName = MapperUtil.getEntityName(rightColl);
-        String as = leftCollName + "_" + leftCollName.length() + "_" + rightCollName + "_" + rightCollName.length();  //make sure the as field does not exists
-
+        
         //lookup
         agg.lookup(new Lookup(rightCollName, leftKey, rightKey, as));
         
@@ -251,23 +311,20 @@ public class JoinQuery<L, R> implements Parallelable {
             agg.skip((pageNumber-1)*pageSize).limit(pageSize);
         }
         
-        //return JoinResult
-        List<JoinResult<L, R>> list = new ArrayList<>();
-        Iterable<DBObject> it = agg.results();
-        for(DBObject dbo : it){
-            JoinResult<L, R> result = new JoinResult<>();
-            DBObject _id = (DBObject)dbo.get("_id");
-            L leftEntity = MapperUtil.fromDBObject(leftColl, _id);
-            result.setLeftEntity(leftEntity);
-            Object asArr = dbo.get(as);
-            if(asArr != null){
-                Object arr = decodeArray(asArr);
-                result.setRightEntity((R[])arr);
-            }
-            list.add(result);
+        return agg;
+    }
+    
+    private JoinResult<L, R> toJoinResult(DBObject dbo, String as){
+        JoinResult<L, R> result = new JoinResult<>();
+        DBObject _id = (DBObject)dbo.get("_id");
+        L leftEntity = MapperUtil.fromDBObject(dao.getEntityClass(), _id);
+        result.setLeftEntity(leftEntity);
+        Object asArr = dbo.get(as);
+        if(asArr != null){
+            Object arr = decodeArray(asArr);
+            result.setRightEntity((R[])arr);
         }
-        return list;
-
+        return result;
     }
     
     private Object decodeArray(Object val){
@@ -0,0 +1,598 @@
+/*
+ * Copyright (c) www.bugull.com
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bugull.mongo.mapper;
+
+import com.bugull.mongo.BuguEntity;
+import com.bugull.mongo.BuguSession;
+import com.bugull.mongo.access.InternalDao;
+import com.bugull.mongo.annotations.Default;
+import com.bugull.mongo.annotations.Ref;
+import com.bugull.mongo.annotations.RefList;
+import com.bugull.mongo.cache.ConstructorCache;
+import com.bugull.mongo.cache.DaoCache;
+import com.bugull.mongo.cache.FieldsCache;
+import com.bugull.mongo.exception.BuguException;
+import com.bugull.mongo.utils.DataType;
+import com.bugull.mongo.utils.FieldUtil;
+import com.bugull.mongo.utils.IdUtil;
+import com.bugull.mongo.utils.MapperUtil;
+import com.bugull.mongo.utils.Operator;
+import com.bugull.mongo.utils.SortUtil;
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBCollection;
+import com.mongodb.DBCursor;
+import com.mongodb.DBObject;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Fetch out the cascade @Ref and @RefList fields of a list, level by level.
+ * 
+ * <p>The dotted paths are merged into a tree, and walked breadth-first across the whole list. 
+ * On every level, the ids of all the entities are collected, de-duplicated, and read by one $in query 
+ * per entity class, so the number of queries depends on the depth of the paths, not the size of the list.</p>
+ * 
+ * <pre>
+ * new CascadeFetcher("customer.address", "items.product").fetch(orders);
+ * </pre>
+ * 
+ * @author Frank Wen(xbwen@hotmail.com)
+ */
+@SuppressWarnings("unchecked")
+public final class CascadeFetcher {
+    
+    //max number of ids in one $in query, when the result need not to be sorted
+    private static final int MAX_IN_SIZE = 1000;
+    
+    private final Node root = new Node(null);
+    
+    /**
+     * @param paths the fields' names, such as "customer" or "customer.address"
+     */
+    public CascadeFetcher(String... paths){
+        for(String path : paths){
+            Node node = root;
+            for(String name : path.split("\\.")){
+                node = node.child(name);
+            }
+        }
+    }
+    
+    /**
+     * Fetch out the cascade fields of the list in current thread.
+     * @param list the list needs to operate on
+     */
+    public void fetch(List list){
+        List<BuguEntity> owners = toOwners(list);
+        if(!owners.isEmpty()){
+            fetch(owners, root);
+        }
+    }
+    
+    /**
+     * Fetch out the cascade fields of the list. The independent paths are fetched concurrently by the executor.
+     * @param list the list needs to operate on
+     * @param executor the executor to run the paths
+     */
+    public void fetch(List list, ExecutorService executor){
+        final List<BuguEntity> owners = toOwners(list);
+        if(owners.isEmpty()){
+            return;
+        }
+        if(root.children.size() <= 1){
+            fetch(owners, root);
+            return;
+        }
+        //the session of caller is bound to the pool threads, so all the paths share the same entities
+        final BuguSession session = BuguSession.current();
+        List<Future<?>> futures = new ArrayList<>();
+        for(Node child : root.children.values()){
+            final Node top = new Node(null);
+            top.children.put(child.name, child);
+            futures.add(executor.submit(new Runnable(){
+                @Override
+                public void run(){
+                    BuguSession previous = BuguSession.current();
+                    if(session != null){
+                        session.bind();
+                    }
+                    try{
+                        fetch(owners, top);
+                    }finally{
+                        if(previous != null){
+                            previous.bind();
+                        }else if(session != null){
+                            session.unbind();
+                        }
+                    }
+                }
+            }));
+        }
+        for(Future<?> future : futures){
+            try{
+                future.get();
+            }catch(InterruptedException ex){
+                Thread.currentThread().interrupt();
+                throw new BuguException("Interrupted while fetching cascade fields", ex);
+            }catch(ExecutionException ex){
+                Throwable cause = ex.getCause();
+                if(cause instanceof RuntimeException){
+                    throw (RuntimeException)cause;
+                }
+                throw new BuguException(cause);
+            }
+        }
+    }
+    
+    private List<BuguEntity> toOwners(List list){
+        List<BuguEntity> owners = new ArrayList<>();
+        for(Object o : list){
+            if(o != null){
+                owners.add((BuguEntity)o);
+            }
+        }
+        return owners;
+    }
+    
+    private void fetch(List<BuguEntity> owners, Node node){
+        Map<Node, List<BuguEntity>> level = new LinkedHashMap<>();
+        level.put(node, owners);
+        while(!level.isEmpty()){
+            //collect the ids of this level
+            Map<ReadKey, Set<String>> requests = new LinkedHashMap<>();
+            List<Target> targets = new ArrayList<>();
+            for(Entry<Node, List<BuguEntity>> entry : level.entrySet()){
+                for(Node child : entry.getKey().children.values()){
+                    for(BuguEntity owner : entry.getValue()){
+                        Target target = createTarget(owner, child);
+                        if(target != null){
+                            target.collect(requests);
+                            targets.add(target);
+                        }
+                    }
+                }
+            }
+            //read them by one query per entity class
+            Map<ReadKey, Result> results = new HashMap<>();
+            for(Entry<ReadKey, Set<String>> entry : requests.entrySet()){
+                results.put(entry.getKey(), read(entry.getKey(), entry.getValue()));
+            }
+            //set them back, and get the owners of next level
+            Map<Node, List<BuguEntity>> next = new LinkedHashMap<>();
+            for(Target target : targets){
+                Object value = target.resolve(results);
+                FieldUtil.set(target.owner, target.field, value);
+                if(value != null && !target.node.children.isEmpty()){
+                    List<BuguEntity> list = next.get(target.node);
+                    if(list == null){
+                        list = new ArrayList<>();
+                        next.put(target.node, list);
+                    }
+                    addEntities(value, list);
+                }
+            }
+            level = next;
+        }
+    }
+    
+    private Target createTarget(BuguEntity owner, Node node){
+        Field field = FieldsCache.getInstance().getField(owner.getClass(), node.name);
+        boolean isRef = field.getAnnotation(Ref.class) != null;
+        RefList refList = field.getAnnotation(RefList.class);
+        if(!isRef && refList == null){
+            return null;
+        }
+        Object value = FieldUtil.get(owner, field);
+        if(value == null){
+            return null;
+        }
+        Target target = new Target(owner, node, field, value);
+        if(isRef){
+            target.kind = Target.REF;
+            target.key = new ReadKey(FieldUtil.getRealType(field), Default.SORT, true);
+            return target;
+        }
+        Class<?> type = field.getType();
+        String sort = refList.sort();
+        if(type.isArray()){
+            target.kind = Target.ARRAY;
+            target.key = new ReadKey(FieldUtil.getRealType(type.getComponentType(), field), sort, false);
+        }else if(DataType.isMapType(type)){
+            ValueType vt = ValueType.resolve(field, 1);
+            if(vt == null){
+                return null;
+            }
+            target.kind = Target.MAP;
+            target.valueType = vt;
+            Class<?> cls = FieldUtil.getRealType(vt.elementType, field);
+            target.key = vt.isSingle ? new ReadKey(cls, Default.SORT, true) : new ReadKey(cls, sort, false);
+        }else{
+            ValueType vt = ValueType.resolve(field, 0);
+            if(vt == null){
+                return null;
+            }
+            target.kind = Target.COLLECTION;
+            target.key = new ReadKey(FieldUtil.getRealType(vt.elementType, field), sort, false);
+        }
+        return target;
+    }
+    
+    private Result read(ReadKey key, Set<String> ids){
+        //the entities in session are not read again, and are shared by all owners.
+        //a sorted result is always read from database, to keep the order
+        BuguSession session = BuguSession.current();
+        Result result = new Result(key.clazz, session != null);
+        String collectionName = null;
+        List<String> idList = new ArrayList<>();
+        if(session != null && key.sort.equals(Default.SORT)){
+            collectionName = DaoCache.getInstance().get(key.clazz).getCollection().getFullName();
+            for(String id : ids){
+                Object obj = session.get(collectionName, id);
+                if(obj != null){
+                    result.add((BuguEntity)obj);
+                }else{
+                    idList.add(id);
+                }
+            }
+        }else{
+            idList.addAll(ids);
+        }
+        int size = idList.size();
+        List<DBObject> documents = new ArrayList<>();
+        for(int from=0; from<size; from+=MAX_IN_SIZE){
+            int to = Math.min(from + MAX_IN_SIZE, size);
+            documents.addAll(find(key, idList.subList(from, to)));
+        }
+        //each part is sorted by database, merge them in the same order
+        if(size > MAX_IN_SIZE && !key.sort.equals(Default.SORT)){
+            Collections.sort(documents, SortUtil.getComparator(SortUtil.getSort(key.sort)));
+        }
+        for(Object o : MapperUtil.toList(key.clazz, documents, false)){
+            BuguEntity ent = (BuguEntity)o;
+            if(collectionName != null && key.full){
+                //the other paths may read the same entity concurrently
+                ent = session.putIfAbsent(collectionName, ent);
+            }
+            result.add(ent);
+        }
+        return result;
+    }
+    
+    private List<DBObject> find(ReadKey key, List<String> ids){
+        InternalDao dao = DaoCache.getInstance().get(key.clazz);
+        List<Object> dbIds = new ArrayList<>();
+        for(String id : ids){
+            dbIds.add(IdUtil.toDbId(key.clazz, id));
+        }
+        DBObject query = new BasicDBObject(Operator.ID, new BasicDBObject(Operator.IN, dbIds));
+        DBCollection coll = dao.getCollection();
+        DBCursor cursor;
+        if(key.full){
+            cursor = coll.find(query);
+        }else{
+            cursor = coll.find(query, dao.getKeys());
+        }
+        if(!key.sort.equals(Default.SORT)){
+            cursor.sort(SortUtil.getSort(key.sort));
+        }
+        try{
+            return cursor.toArray();
+        }finally{
+            cursor.close();
+        }
+    }
+    
+    private static void addEntities(Object value, List<BuguEntity> list){
+        if(value == null){
+            return;
+        }
+        if(value instanceof BuguEntity){
+            list.add((BuguEntity)value);
+        }else if(value instanceof Collection){
+            for(Object o : (Collection)value){
+                addEntities(o, list);
+            }
+        }else if(value instanceof Map){
+            for(Object o : ((Map)value).values()){
+                addEntities(o, list);
+            }
+        }else if(value.getClass().isArray()){
+            int len = Array.getLength(value);
+            for(int i=0; i<len; i++){
+                addEntities(Array.get(value, i), list);
+            }
+        }
+    }
+    
+    private static Object toCollection(Class<?> type, List list){
+        if(DataType.isListType(type)){
+            return list;
+        }
+        else if(DataType.isSetType(type)){
+            return new HashSet(list);
+        }
+        else if(DataType.isQueueType(type)){
+            return new LinkedList(list);
+        }
+        return null;
+    }
+    
+    /**
+     * A field name in the paths.
+     */
+    private static final class Node {
+        
+        final String name;
+        final Map<String, Node> children = new LinkedHashMap<>();
+        
+        Node(String name){
+            this.name = name;
+        }
+        
+        Node child(String name){
+            Node node = children.get(name);
+            if(node == null){
+                node = new Node(name);
+                children.put(name, node);
+            }
+            return node;
+        }
+        
+    }
+    
+    /**
+     * Which entities to read, and how to read them.
+     */
+    private static final class ReadKey {
+        
+        final Class<?> clazz;
+        final String sort;
+        final boolean full;  //if true, read all fields, as BuguDao.findOne(). Otherwise read non-lazy fields, as BuguQuery.results()
+        
+        ReadKey(Class<?> clazz, String sort, boolean full){
+            this.clazz = clazz;
+            this.sort = sort;
+            this.full = full;
+        }
+
+        @Override
+        public int hashCode() {
+            return (clazz.hashCode() * 31 + sort.hashCode()) * 31 + (full ? 1 : 0);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if(!(obj instanceof ReadKey)){
+                return false;
+            }
+            ReadKey other = (ReadKey)obj;
+            return clazz == other.clazz && full == other.full && sort.equals(other.sort);
+        }
+        
+    }
+    
+    /**
+     * The entities read by one ReadKey.
+     */
+    private static final class Result {
+        
+        final Class<?> clazz;
+        final boolean shared;  //if true, all owners get the same entity object
+        final Map<String, BuguEntity> entities = new HashMap<>();
+        final Map<String, Integer> ranks = new HashMap<>();
+        final Map<BuguEntity, Boolean> used = new IdentityHashMap<>();
+        
+        Result(Class<?> clazz, boolean shared){
+            this.clazz = clazz;
+            this.shared = shared;
+        }
+        
+        void add(BuguEntity ent){
+            entities.put(ent.getId(), ent);
+            ranks.put(ent.getId(), ranks.size());
+        }
+        
+        /**
+         * Every owner gets its own entity object, as reading one by one does, unless the result is shared by a BuguSession.
+         */
+        BuguEntity get(String id){
+            BuguEntity ent = entities.get(id);
+            if(ent == null){
+                return null;
+            }
+            if(shared || used.put(ent, Boolean.TRUE) == null){
+                return ent;
+            }
+            BuguEntity copy = (BuguEntity)ConstructorCache.getInstance().create(clazz);
+            FieldUtil.copy(ent, copy);
+            return copy;
+        }
+        
+        /**
+         * Get the entities of the ids, in the order of the query result.
+         */
+        List<BuguEntity> getList(Collection<String> ids){
+            List<String> found = new ArrayList<>();
+            for(String id : ids){
+                if(entities.containsKey(id)){
+                    found.add(id);
+                }
+            }
+            Collections.sort(found, new Comparator<String>(){
+                @Override
+                public int compare(String a, String b){
+                    return ranks.get(a).compareTo(ranks.get(b));
+                }
+            });
+            List<BuguEntity> list = new ArrayList<>();
+            for(String id : found){
+                list.add(get(id));
+            }
+            return list;
+        }
+        
+    }
+    
+    /**
+     * A cascade field of an owner entity.
+     */
+    private static final class Target {
+        
+        static final int REF = 1;
+        static final int ARRAY = 2;
+        static final int COLLECTION = 3;
+        static final int MAP = 4;
+        
+        final BuguEntity owner;
+        final Node node;
+        final Field field;
+        final Object value;
+        
+        int kind;
+        ReadKey key;
+        ValueType valueType;  //for MAP only
+        
+        Target(BuguEntity owner, Node node, Field field, Object value){
+            this.owner = owner;
+            this.node = node;
+            this.field = field;
+            this.value = value;
+        }
+        
+        void collect(Map<ReadKey, Set<String>> requests){
+            Set<String> ids = requests.get(key);
+            if(ids == null){
+                ids = new LinkedHashSet<>();
+                requests.put(key, ids);
+            }
+            switch(kind){
+                case REF:
+                    ids.add(((BuguEntity)value).getId());
+                    break;
+                case MAP:
+                    for(Object entryValue : ((Map)value).values()){
+                        if(valueType.isSingle){
+                            if(entryValue != null){
+                                ids.add(((BuguEntity)entryValue).getId());
+                            }
+                        }else{
+                            ids.addAll(getIds(entryValue));
+                        }
+                    }
+                    break;
+                default:
+                    ids.addAll(getIds(value));
+                    break;
+            }
+        }
+        
+        Object resolve(Map<ReadKey, Result> results){
+            Result result = results.get(key);
+            switch(kind){
+                case REF:
+                    return result.get(((BuguEntity)value).getId());
+                case ARRAY:
+                    return resolveArray(value, result);
+                case COLLECTION:
+                    if(((Collection)value).isEmpty()){
+                        return null;
+                    }
+                    Object coll = toCollection(field.getType(), result.getList(getIds(value)));
+                    //keep the unknown collection type as it is
+                    return coll != null ? coll : value;
+                default:
+                    return resolveMap(result);
+            }
+        }
+        
+        private Object resolveArray(Object arr, Result result){
+            if(Array.getLength(arr) == 0){
+                return null;
+            }
+            List<BuguEntity> list = result.getList(getIds(arr));
+            Object newArr = Array.newInstance(result.clazz, list.size());
+            for(int i=0; i<list.size(); i++){
+                Array.set(newArr, i, list.get(i));
+            }
+            return newArr;
+        }
+        
+        private Map resolveMap(Result result){
+            Map map = (Map)value;
+            if(map.isEmpty()){
+                return null;
+            }
+            Map newMap = new HashMap();
+            for(Object o : map.entrySet()){
+                Entry entry = (Entry)o;
+                Object entryValue = entry.getValue();
+                if(entryValue == null){
+                    newMap.put(entry.getKey(), null);
+                }else if(valueType.isSingle){
+                    newMap.put(entry.getKey(), result.get(((BuguEntity)entryValue).getId()));
+                }else if(valueType.isArray){
+                    newMap.put(entry.getKey(), resolveArray(entryValue, result));
+                }else{
+                    Object coll = ((Collection)entryValue).isEmpty() ? null : toCollection(valueType.collectionType, result.getList(getIds(entryValue)));
+                    if(coll != null){
+                        newMap.put(entry.getKey(), coll);
+                    }
+                }
+            }
+            return newMap;
+        }
+        
+        private static Set<String> getIds(Object items){
+            Set<String> ids = new LinkedHashSet<>();
+            if(items instanceof Collection){
+                for(Object item : (Collection)items){
+                    if(item != null){
+                        ids.add(((BuguEntity)item).getId());
+                    }
+                }
+            }else{
+                int len = Array.getLength(items);
+                for(int i=0; i<len; i++){
+                    Object item = Array.get(items, i);
+                    if(item != null){
+                        ids.add(((BuguEntity)item).getId());
+                    }
+                }
+            }
+            return ids;
+        }
+        
+    }
+    
+}
@@ -0,0 +1,249 @@
+/*
+ * Copyright (c) www.bugull.com
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bugull.mongo.mapper;
+
+import com.bugull.mongo.BuguEntity;
+import com.bugull.mongo.BuguSession;
+import com.bugull.mongo.access.InternalDao;
+import com.bugull.mongo.cache.ConstructorCache;
+import com.bugull.mongo.cache.DaoCache;
+import com.bugull.mongo.utils.FieldUtil;
+import com.bugull.mongo.utils.IdUtil;
+import com.bugull.mongo.utils.MapperUtil;
+import com.bugull.mongo.utils.Operator;
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBCollection;
+import com.mongodb.DBCursor;
+import com.mongodb.DBObject;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * Collect the cascade @Ref reading of a result list, and read them by one $in query per entity class.
+ * 
+ * <p>The batch is bound to current thread. When a batch is open, the @Ref field which should be cascade read 
+ * is recorded instead of reading from database at once. flush() reads all the recorded ids and sets the entities back.</p>
+ * 
+ * <pre>
+ * CascadeReadBatch batch = CascadeReadBatch.open();
+ * try{
+ *     //convert documents to entities...
+ *     if(batch != null){
+ *         batch.flush();
+ *     }
+ * }finally{
+ *     if(batch != null){
+ *         batch.close();
+ *     }
+ * }
+ * </pre>
+ * 
+ * @author Frank Wen(xbwen@hotmail.com)
+ */
+@SuppressWarnings("unchecked")
+public final class CascadeReadBatch {
+    
+    //max number of ids in one $in query
+    private static final int MAX_IN_SIZE = 1000;
+    
+    private static final ThreadLocal<CascadeReadBatch> local = new ThreadLocal<>();
+    
+    //the key is entity class and reading mode
+    private Map<BatchKey, Map<String, List<Target>>> pending = new LinkedHashMap<>();
+    
+    private CascadeReadBatch(){
+        
+    }
+    
+    /**
+     * Open a batch for current thread.
+     * @return null if there is already a batch in current thread, the outer batch will read the @Ref fields.
+     */
+    public static CascadeReadBatch open(){
+        if(local.get() != null){
+            return null;
+        }
+        CascadeReadBatch batch = new CascadeReadBatch();
+        local.set(batch);
+        return batch;
+    }
+    
+    /**
+     * Get the batch of current thread.
+     * @return null if no batch is open
+     */
+    public static CascadeReadBatch current(){
+        return local.get();
+    }
+    
+    /**
+     * Record a @Ref field to read.
+     * @param refClass the entity class of the @Ref field
+     * @param id id of the referenced entity
+     * @param owner the object which has the @Ref field
+     * @param accessor accessor of the @Ref field
+     * @param full if true, read all fields and cascade, as BuguDao.findOne(). 
+     * Otherwise read non-lazy fields without cascade, as InternalDao.findOneLazily(). 
+     * When the entity does not exist, the field is set to null.
+     */
+    public void add(Class<?> refClass, String id, Object owner, FieldAccessor accessor, boolean full){
+        BatchKey key = new BatchKey(refClass, full);
+        Map<String, List<Target>> ids = pending.get(key);
+        if(ids == null){
+            ids = new LinkedHashMap<>();
+            pending.put(key, ids);
+        }
+        List<Target> targets = ids.get(id);
+        if(targets == null){
+            targets = new ArrayList<>();
+            ids.put(id, targets);
+        }
+        targets.add(new Target(owner, accessor));
+    }
+    
+    /**
+     * Read all the recorded entities, and set them to the @Ref fields. 
+     * The @Ref fields of the entities read in this step are recorded and read too, level by level.
+     */
+    public void flush(){
+        while(!pending.isEmpty()){
+            Map<BatchKey, Map<String, List<Target>>> current = pending;
+            pending = new LinkedHashMap<>();
+            for(Entry<BatchKey, Map<String, List<Target>>> entry : current.entrySet()){
+                read(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+    
+    /**
+     * Close the batch of current thread. The records which are not flushed are discarded.
+     */
+    public void close(){
+        pending.clear();
+        local.remove();
+    }
+    
+    private void read(BatchKey key, Map<String, List<Target>> ids){
+        Map<String, BuguEntity> found = new HashMap<>();
+        //the entities in session are not read again, and are shared by all owners
+        BuguSession session = BuguSession.current();
+        String collectionName = null;
+        List<String> idList = new ArrayList<>();
+        if(session != null){
+            collectionName = DaoCache.getInstance().get(key.clazz).getCollection().getFullName();
+            for(String id : ids.keySet()){
+                Object obj = session.get(collectionName, id);
+                if(obj != null){
+                    found.put(id, (BuguEntity)obj);
+                }else{
+                    idList.add(id);
+                }
+            }
+        }else{
+            idList.addAll(ids.keySet());
+        }
+        int size = idList.size();
+        for(int from=0; from<size; from+=MAX_IN_SIZE){
+            int to = Math.min(from + MAX_IN_SIZE, size);
+            for(Object o : find(key, idList.subList(from, to))){
+                BuguEntity ent = (BuguEntity)o;
+                found.put(ent.getId(), ent);
+                if(session != null && key.full){
+                    session.put(collectionName, ent);
+                }
+            }
+        }
+        for(Entry<String, List<Target>> entry : ids.entrySet()){
+            BuguEntity ent = found.get(entry.getKey());
+            boolean first = true;
+            for(Target target : entry.getValue()){
+                if(ent == null){
+                    target.accessor.set(target.owner, null);
+                    continue;
+                }
+                //every owner gets its own entity object, as reading one by one does
+                Object value = ent;
+                if(!first && session == null){
+                    value = ConstructorCache.getInstance().create(key.clazz);
+                    FieldUtil.copy(ent, value);
+                }
+                target.accessor.set(target.owner, value);
+                first = false;
+            }
+        }
+    }
+    
+    private List find(BatchKey key, List<String> ids){
+        InternalDao dao = DaoCache.getInstance().get(key.clazz);
+        List<Object> dbIds = new ArrayList<>();
+        for(String id : ids){
+            dbIds.add(IdUtil.toDbId(key.clazz, id));
+        }
+        DBObject query = new BasicDBObject(Operator.ID, new BasicDBObject(Operator.IN, dbIds));
+        DBCollection coll = dao.getCollection();
+        DBCursor cursor;
+        if(key.full){
+            cursor = coll.find(query);
+        }else{
+            cursor = coll.find(query, dao.getKeys());
+        }
+        return MapperUtil.toList(key.clazz, cursor, !key.full);
+    }
+    
+    private static final class BatchKey {
+        
+        final Class<?> clazz;
+        final boolean full;
+        
+        BatchKey(Class<?> clazz, boolean full){
+            this.clazz = clazz;
+            this.full = full;
+        }
+
+        @Override
+        public int hashCode() {
+            return clazz.hashCode() * 31 + (full ? 1 : 0);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if(!(obj instanceof BatchKey)){
+                return false;
+            }
+            BatchKey other = (BatchKey)obj;
+            return clazz == other.clazz && full == other.full;
+        }
+        
+    }
+    
+    private static final class Target {
+        
+        final Object owner;
+        final FieldAccessor accessor;
+        
+        Target(Object owner, FieldAccessor accessor){
+            this.owner = owner;
+            this.accessor = accessor;
+        }
+        
+    }
+    
+}
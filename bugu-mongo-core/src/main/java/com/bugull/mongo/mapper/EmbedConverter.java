@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) www.bugull.com
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bugull.mongo.mapper;
+
+import com.bugull.mongo.BuguEntity;
+import com.bugull.mongo.exception.AnnotationException;
+import com.bugull.mongo.utils.MapperUtil;
+import com.mongodb.DBObject;
+import java.lang.reflect.Field;
+
+/**
+ * Converter for @Embed field.
+ * 
+ * @author Frank Wen(xbwen@hotmail.com)
+ */
+@SuppressWarnings("unchecked")
+public class EmbedConverter implements FieldConverter {
+    
+    private final Class<?> type;
+    
+    public EmbedConverter(Field field){
+        this.type = field.getType();
+    }
+
+    @Override
+    public Object decode(Object value, boolean withoutCascade) {
+        if(type.isEnum()){
+            return Enum.valueOf((Class<Enum>)type, (String)value);
+        }
+        Object o = MapperUtil.fromDBObject(type, (DBObject)value);
+        
+        //tip for wrong use of @Embed
+        if(o instanceof BuguEntity){
+            throw new AnnotationException("The Embed object should not be BuguEntity!");
+        }
+        return o;
+    }
+
+    @Override
+    public Object encode(Object value, boolean withoutCascade) {
+        if(type.isEnum()){
+            return value.toString();
+        }
+        
+        //tip for wrong use of @Embed
+        if(value instanceof BuguEntity){
+            throw new AnnotationException("The Embed object should not be BuguEntity!");
+        }
+        
+        return MapperUtil.toDBObject(value);
+    }
+    
+}
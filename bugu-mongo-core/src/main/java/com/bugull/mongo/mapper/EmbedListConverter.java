@@ -0,0 +1,270 @@
+/*
+ * Copyright (c) www.bugull.com
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bugull.mongo.mapper;
+
+import com.bugull.mongo.utils.DataType;
+import com.bugull.mongo.utils.MapperUtil;
+import com.mongodb.DBObject;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Converter for @EmbedList field.
+ * 
+ * @author Frank Wen(xbwen@hotmail.com)
+ */
+@SuppressWarnings("unchecked")
+public class EmbedListConverter implements FieldConverter {
+    
+    private final Class<?> type;
+    private final Class<?> elementType;  //for array and collection
+    private final ValueType valueType;  //for map
+    
+    public EmbedListConverter(Field field){
+        this.type = field.getType();
+        if(type.isArray()){
+            elementType = type.getComponentType();
+            valueType = null;
+        }else{
+            ParameterizedType paramType = (ParameterizedType)field.getGenericType();
+            Type[] types = paramType.getActualTypeArguments();
+            if(types.length == 1){
+                elementType = (Class)types[0];
+                valueType = null;
+            }else{
+                elementType = null;
+                valueType = ValueType.resolve(field, 1);
+            }
+        }
+    }
+
+    @Override
+    public Object decode(Object value, boolean withoutCascade) {
+        if(type.isArray()){
+            if(elementType.isEnum()){
+                return decodeEnumArray(value, elementType);
+            }else{
+                return decodeArray(value, elementType);
+            }
+        }
+        if(valueType != null){
+            return decodeMap(value);
+        }
+        List list;
+        if(elementType.isEnum()){
+            list = decodeEnumCollection(value, elementType);
+        }else{
+            list = decodeCollection(value, elementType);
+        }
+        if(DataType.isListType(type) || DataType.isCollectionType(type)){
+            return list;
+        }
+        else if(DataType.isSetType(type)){
+            return new HashSet(list);
+        }
+        else if(DataType.isQueueType(type)){
+            return new LinkedList(list);
+        }
+        return null;
+    }
+    
+    @Override
+    public Object encode(Object value, boolean withoutCascade) {
+        if(type.isArray()){
+            if(elementType.isEnum()){
+                return encodeEnumArray(value);
+            }else{
+                return encodeArray(value);
+            }
+        }
+        if(valueType != null){
+            return encodeMap(value);
+        }
+        if(elementType.isEnum()){
+            return encodeEnumCollection(value);
+        }else{
+            return encodeCollection(value);
+        }
+    }
+    
+    private Object decodeEnumArray(Object val, Class elementClass){
+        List list = (List)val;
+        int size = list.size();
+        Object arr = Array.newInstance(elementClass, size);
+        for(int i=0; i<size; i++){
+            Object item = list.get(i);
+            if(item != null){
+                Array.set(arr, i, Enum.valueOf((Class<Enum>)elementClass, (String)item));
+            }else{
+                Array.set(arr, i, null);
+            }
+        }
+        return arr;
+    }
+    
+    private Object decodeArray(Object val, Class elementClass){
+        List list = (List)val;
+        int size = list.size();
+        Object arr = Array.newInstance(elementClass, size);
+        for(int i=0; i<size; i++){
+            Object item = list.get(i);
+            if(item != null){
+                DBObject o = (DBObject)item;
+                Array.set(arr, i, MapperUtil.fromDBObject(elementClass, o));
+            }else{
+                Array.set(arr, i, null);
+            }
+        }
+        return arr;
+    }
+    
+    private List decodeEnumCollection(Object val, Class elementClass){
+        List list = (List)val;
+        List result = new ArrayList();
+        for(Object item : list){
+            if(item != null){
+                result.add(Enum.valueOf((Class<Enum>)elementClass, (String)item));
+            }
+        }
+        return result;
+    }
+    
+    private List decodeCollection(Object val, Class elementClass){
+        List list = (List)val;
+        List result = new ArrayList();
+        for(Object item : list){
+            if(item != null){
+                Object embedObj = MapperUtil.fromDBObject(elementClass, (DBObject)item);
+                result.add(embedObj);
+            }
+        }
+        return result;
+    }
+    
+    private Map decodeMap(Object value){
+        //for Map<K,V>, the type of V is resolved when creating the converter
+        ValueType vt = valueType;
+        //decode value by different type of V
+        Map map = (Map)value;
+        Map result = new HashMap();
+        for(Object key : map.keySet()){
+            Object entryValue = map.get(key);
+            if(entryValue == null){
+                result.put(key, null);
+                continue;
+            }
+            if(vt.isSingle){
+                Object embedObj = MapperUtil.fromDBObject(vt.elementType, (DBObject)entryValue);
+                result.put(key, embedObj);
+            }else if(vt.isArray){
+                Object arr = decodeArray(entryValue, vt.elementType);
+                result.put(key, arr);
+            }else if(vt.isCollection){
+                List list = decodeCollection(entryValue, vt.elementType);
+                Class vType = vt.collectionType;
+                if(DataType.isListType(vType) || DataType.isCollectionType(vType)){
+                    result.put(key, list);
+                }
+                else if(DataType.isSetType(vType)){
+                    result.put(key, new HashSet(list));
+                }
+                else if(DataType.isQueueType(vType)){
+                    result.put(key, new LinkedList(list));
+                }
+            }
+        }
+        return result;
+    }
+    
+    private Object encodeEnumArray(Object arr){
+        int len = Array.getLength(arr);
+        List<String> result = new ArrayList<>();
+        for(int i=0; i<len; i++){
+            Object o = Array.get(arr, i);
+            if(o != null){
+                result.add(o.toString());
+            }
+        }
+        return result;
+    }
+    
+    private Object encodeArray(Object arr){
+        int len = Array.getLength(arr);
+        List<DBObject> result = new ArrayList<>();
+        for(int i=0; i<len; i++){
+            Object o = Array.get(arr, i);
+            if(o != null){
+                result.add(MapperUtil.toDBObject(o));
+            }
+        }
+        return result;
+    }
+    
+    private Object encodeEnumCollection(Object coll){
+        List<String> result = new ArrayList<>();
+        Collection collection = (Collection)coll;
+        for(Object o : collection){
+            if(o != null){
+                result.add(o.toString());
+            }
+        }
+        return result;
+    }
+    
+    private Object encodeCollection(Object coll){
+        List<DBObject> result = new ArrayList<>();
+        Collection collection = (Collection)coll;
+        for(Object o : collection){
+            if(o != null){
+                result.add(MapperUtil.toDBObject(o));
+            }
+        }
+        return result;
+    }
+    
+    private Object encodeMap(Object value){
+        //encode value by different type of V
+        ValueType vt = valueType;
+        Map map = (Map)value;
+        Map result = new HashMap();
+        for(Object key : map.keySet()){
+            Object entryValue = map.get(key);
+            if(entryValue == null){
+                result.put(key, null);
+                continue;
+            }
+            if(vt.isSingle){
+                result.put(key, MapperUtil.toDBObject(entryValue));
+            }else if(vt.isArray){
+                result.put(key, encodeArray(entryValue));
+            }else if(vt.isCollection){
+                result.put(key, encodeCollection(entryValue));
+            }
+        }
+        return result;
+    }
+    
+}
@@ -0,0 +1,342 @@
+/*
+ * Copyright (c) www.bugull.com
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bugull.mongo.mapper;
+
+import com.bugull.mongo.annotations.CustomCodec;
+import com.bugull.mongo.annotations.Default;
+import com.bugull.mongo.annotations.Embed;
+import com.bugull.mongo.annotations.EmbedList;
+import com.bugull.mongo.annotations.Id;
+import com.bugull.mongo.annotations.Ignore;
+import com.bugull.mongo.annotations.Property;
+import com.bugull.mongo.annotations.Ref;
+import com.bugull.mongo.annotations.RefList;
+import com.bugull.mongo.cache.FieldsCache;
+import com.bugull.mongo.decoder.Decoder;
+import com.bugull.mongo.encoder.Encoder;
+import com.bugull.mongo.exception.ConstructorException;
+import com.bugull.mongo.instrument.MappingProfiler;
+import com.bugull.mongo.instrument.MappingStats;
+import com.bugull.mongo.utils.Operator;
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The codec plan of an entity class. 
+ * 
+ * <p>All the mapping annotations are resolved only once when building the plan. 
+ * Converting a document to entity, or an entity to document, is a flat loop over the FieldPlan array, 
+ * without annotation lookups, and without creating decoder or encoder object for each field.</p>
+ * 
+ * @author Frank Wen(xbwen@hotmail.com)
+ */
+public final class EntityPlan {
+    
+    private final Class<?> clazz;
+    private final FieldPlan[] fieldPlans;
+    private final Map<String, FieldPlan> namedPlans = new HashMap<>();
+    private FieldPlan idPlan;
+    private boolean hasCustomField;
+    
+    public EntityPlan(Class<?> clazz){
+        this.clazz = clazz;
+        Field[] fields = FieldsCache.getInstance().get(clazz);
+        List<FieldPlan> list = new ArrayList<>();
+        for(Field field : fields){
+            FieldPlan fp = createFieldPlan(field);
+            if(fp == null){
+                continue;
+            }
+            list.add(fp);
+            if(fp.getKind() == FieldKind.CUSTOM){
+                hasCustomField = true;
+            }else{
+                namedPlans.put(fp.getName(), fp);
+            }
+            if(fp.getKind() == FieldKind.ID){
+                idPlan = fp;
+            }
+        }
+        fieldPlans = list.toArray(new FieldPlan[list.size()]);
+    }
+    
+    private FieldPlan createFieldPlan(Field field){
+        if(field.getAnnotation(Id.class) != null){
+            return new FieldPlan(field, Operator.ID, FieldKind.ID, new IdConverter(field, clazz));
+        }
+        Embed embed = field.getAnnotation(Embed.class);
+        if(embed != null){
+            return new FieldPlan(field, getName(field, embed.name()), FieldKind.EMBED, new EmbedConverter(field));
+        }
+        EmbedList embedList = field.getAnnotation(EmbedList.class);
+        if(embedList != null){
+            return new FieldPlan(field, getName(field, embedList.name()), FieldKind.EMBED_LIST, new EmbedListConverter(field));
+        }
+        Ref ref = field.getAnnotation(Ref.class);
+        if(ref != null){
+            return new FieldPlan(field, getName(field, ref.name()), FieldKind.REF, new RefConverter(field));
+        }
+        RefList refList = field.getAnnotation(RefList.class);
+        if(refList != null){
+            return new FieldPlan(field, getName(field, refList.name()), FieldKind.REF_LIST, new RefListConverter(field));
+        }
+        if(field.getAnnotation(Ignore.class) != null){
+            return null;
+        }
+        CustomCodec codec = field.getAnnotation(CustomCodec.class);
+        if(codec != null){
+            Constructor<?> decoderCons;
+            Constructor<?> encoderCons;
+            try{
+                decoderCons = codec.decoder().getConstructor(Field.class, DBObject.class);
+                encoderCons = codec.encoder().getConstructor(Object.class, Field.class);
+            } catch (NoSuchMethodException | SecurityException ex) {
+                throw new ConstructorException(ex.getMessage());
+            }
+            return new FieldPlan(field, decoderCons, encoderCons);
+        }
+        //no mapping annotation or @Property
+        String name = field.getName();
+        Property property = field.getAnnotation(Property.class);
+        if(property != null){
+            name = getName(field, property.name());
+        }
+        return new FieldPlan(field, name, FieldKind.PROPERTY, new PropertyConverter(field));
+    }
+    
+    private String getName(Field field, String annotationName){
+        if(annotationName.equals(Default.NAME)){
+            return field.getName();
+        }
+        return annotationName;
+    }
+    
+    /**
+     * Set the values in DBObject to the entity object.
+     * @param obj
+     * @param dbo
+     * @param withoutCascade 
+     */
+    public void decode(Object obj, DBObject dbo, boolean withoutCascade){
+        MappingProfiler profiler = MappingProfiler.getInstance();
+        MappingStats stats = profiler.isEnabled() ? profiler.getStats(clazz) : null;
+        for(FieldPlan fp : fieldPlans){
+            if(fp.getKind() == FieldKind.CUSTOM){
+                decodeCustom(fp, obj, dbo, withoutCascade);
+                if(stats != null){
+                    stats.recordField(FieldKind.CUSTOM);
+                }
+                continue;
+            }
+            Object value = dbo.get(fp.getName());
+            if(value == null){
+                continue;
+            }
+            if(stats != null){
+                stats.recordField(fp.getKind());
+            }
+            if(fp.getKind() == FieldKind.PROPERTY && decodePrimitive(fp, obj, value)){
+                continue;
+            }
+            if(fp.getKind() == FieldKind.REF && deferRef(fp, obj, value, withoutCascade)){
+                continue;
+            }
+            Object result;
+            if(stats != null && (fp.getKind() == FieldKind.REF || fp.getKind() == FieldKind.REF_LIST)){
+                long start = profiler.startCascade();
+                try{
+                    result = fp.getConverter().decode(value, withoutCascade);
+                }finally{
+                    profiler.endCascade(clazz, start);
+                }
+            }else{
+                result = fp.getConverter().decode(value, withoutCascade);
+            }
+            //a @Ref field is set to null when the referenced entity does not exist
+            if(result != null || fp.getKind() == FieldKind.REF){
+                fp.getAccessor().set(obj, result);
+            }
+        }
+    }
+    
+    /**
+     * Convert the entity object to DBObject.
+     * @param obj
+     * @param withoutCascade
+     * @return 
+     */
+    public DBObject encode(Object obj, boolean withoutCascade){
+        DBObject dbo = new BasicDBObject();
+        for(FieldPlan fp : fieldPlans){
+            if(fp.getKind() == FieldKind.CUSTOM){
+                encodeCustom(fp, obj, dbo, withoutCascade);
+                continue;
+            }
+            Object value = fp.getAccessor().get(obj);
+            //@Id field is always encoded, the id value may be generated
+            if(value == null && fp.getKind() != FieldKind.ID){
+                continue;
+            }
+            dbo.put(fp.getName(), fp.getConverter().encode(value, withoutCascade));
+        }
+        return dbo;
+    }
+    
+    /**
+     * Save the cascade @Ref and @RefList entities of the object. 
+     * Called before the object is written by EntityCodec, so that the codec only serializes, and writes nothing itself.
+     * @param obj 
+     */
+    public void saveCascade(Object obj){
+        for(FieldPlan fp : fieldPlans){
+            FieldKind kind = fp.getKind();
+            if(kind == FieldKind.CUSTOM){
+                //the custom encoder may save cascade entities, the encoded value is dropped
+                encodeCustom(fp, obj, new BasicDBObject(), false);
+                continue;
+            }
+            if(kind != FieldKind.REF && kind != FieldKind.REF_LIST){
+                continue;
+            }
+            Object value = fp.getAccessor().get(obj);
+            if(value == null){
+                continue;
+            }
+            if(kind == FieldKind.REF){
+                ((RefConverter)fp.getConverter()).saveCascade(value);
+            }else{
+                ((RefListConverter)fp.getConverter()).saveCascade(value);
+            }
+        }
+    }
+    
+    /**
+     * Set int, long and double value directly, without boxing it again.
+     * Only the conversions allowed by Field.set() are done here, others go through the converter.
+     * @return true if the value has been set
+     */
+    private boolean decodePrimitive(FieldPlan fp, Object obj, Object value){
+        Class<?> type = fp.getField().getType();
+        if(type == int.class){
+            if(value instanceof Integer){
+                fp.getAccessor().setInt(obj, (Integer)value);
+                return true;
+            }
+        }
+        else if(type == long.class){
+            if(value instanceof Long || value instanceof Integer){
+                fp.getAccessor().setLong(obj, ((Number)value).longValue());
+                return true;
+            }
+        }
+        else if(type == double.class){
+            if(value instanceof Double || value instanceof Long || value instanceof Integer){
+                fp.getAccessor().setDouble(obj, ((Number)value).doubleValue());
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * If a CascadeReadBatch is open, record the cascade @Ref field to it, instead of reading at once.
+     * @param fp plan of a @Ref field
+     * @param obj
+     * @param value the reference value in mongoDB
+     * @param withoutCascade
+     * @return true if the field is recorded
+     */
+    public boolean deferRef(FieldPlan fp, Object obj, Object value, boolean withoutCascade){
+        RefConverter converter = (RefConverter)fp.getConverter();
+        if(withoutCascade || !converter.isCascadeRead()){
+            return false;
+        }
+        CascadeReadBatch batch = CascadeReadBatch.current();
+        if(batch == null){
+            return false;
+        }
+        String refId = converter.getRefId(value);
+        if(refId == null){
+            fp.getAccessor().set(obj, null);
+            return true;
+        }
+        batch.add(converter.getRefClass(), refId, obj, fp.getAccessor(), false);
+        return true;
+    }
+    
+    private void decodeCustom(FieldPlan fp, Object obj, DBObject dbo, boolean withoutCascade){
+        Decoder decoder;
+        try{
+            decoder = (Decoder)fp.getDecoderConstructor().newInstance(fp.getField(), dbo);
+        } catch (IllegalAccessException | IllegalArgumentException | InstantiationException | InvocationTargetException ex) {
+            throw new ConstructorException(ex.getMessage());
+        }
+        if(!decoder.isNullField()){
+            decoder.setWithoutCascade(withoutCascade);
+            decoder.decode(obj);
+        }
+    }
+    
+    private void encodeCustom(FieldPlan fp, Object obj, DBObject dbo, boolean withoutCascade){
+        Encoder encoder;
+        try{
+            encoder = (Encoder)fp.getEncoderConstructor().newInstance(obj, fp.getField());
+        } catch (IllegalAccessException | IllegalArgumentException | InstantiationException | InvocationTargetException ex) {
+            throw new ConstructorException(ex.getMessage());
+        }
+        if(!encoder.isNullField()){
+            encoder.setWithoutCascade(withoutCascade);
+            dbo.put(encoder.getFieldName(), encoder.encode());
+        }
+    }
+
+    public Class<?> getEntityClass() {
+        return clazz;
+    }
+
+    public FieldPlan[] getFieldPlans() {
+        return fieldPlans;
+    }
+    
+    /**
+     * Get the plan of a column.
+     * @param name the column name in mongoDB
+     * @return null if the column is not mapped, or mapped by @CustomCodec
+     */
+    public FieldPlan getFieldPlan(String name) {
+        return namedPlans.get(name);
+    }
+
+    /**
+     * @return null if the class has no @Id field, e.g. an embedded class
+     */
+    public FieldPlan getIdPlan() {
+        return idPlan;
+    }
+
+    public boolean hasCustomField() {
+        return hasCustomField;
+    }
+    
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) www.bugull.com
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bugull.mongo.mapper;
+
+import java.lang.reflect.Field;
+
+/**
+ * Read and write the value of an entity field.
+ * 
+ * <p>The accessor is created only once for each field, see FieldAccessorCache, and is held by FieldPlan 
+ * for the encoder and decoder. The primitive-specialized methods read and write int, long and double fields without boxing. 
+ * Other code reads and writes fields by FieldUtil.</p>
+ * 
+ * @author Frank Wen(xbwen@hotmail.com)
+ */
+public interface FieldAccessor {
+    
+    public Field getField();
+    
+    public Object get(Object obj);
+    
+    public void set(Object obj, Object value);
+    
+    public int getInt(Object obj);
+    
+    public long getLong(Object obj);
+    
+    public double getDouble(Object obj);
+    
+    public void setInt(Object obj, int value);
+    
+    public void setLong(Object obj, long value);
+    
+    public void setDouble(Object obj, double value);
+    
+    /**
+     * Copy the field value from src object to target object. Primitive value is copied without boxing.
+     * @param src
+     * @param target 
+     */
+    public void copy(Object src, Object target);
+    
+}
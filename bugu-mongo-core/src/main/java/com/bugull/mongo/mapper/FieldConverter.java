@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) www.bugull.com
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bugull.mongo.mapper;
+
+/**
+ * Converter for one field of an entity class, between java value and mongoDB value.
+ * 
+ * <p>It's created only once when building the EntityPlan, and shared by all documents, so it must be stateless.</p>
+ * 
+ * @author Frank Wen(xbwen@hotmail.com)
+ */
+public interface FieldConverter {
+    
+    /**
+     * Convert the value got from DBObject to java value.
+     * @param value not null
+     * @param withoutCascade
+     * @return the java value, or null to keep the field untouched
+     */
+    public Object decode(Object value, boolean withoutCascade);
+    
+    /**
+     * Convert the java value to the value saved in DBObject.
+     * @param value not null, except for @Id field
+     * @param withoutCascade
+     * @return 
+     */
+    public Object encode(Object value, boolean withoutCascade);
+    
+}
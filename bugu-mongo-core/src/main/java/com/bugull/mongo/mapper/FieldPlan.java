@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) www.bugull.com
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bugull.mongo.mapper;
+
+import com.bugull.mongo.cache.FieldAccessorCache;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+
+/**
+ * The resolved mapping information of one entity field.
+ * 
+ * @author Frank Wen(xbwen@hotmail.com)
+ */
+public final class FieldPlan {
+    
+    private final Field field;
+    private final String name;  //column name in mongoDB
+    private final FieldKind kind;
+    private final FieldConverter converter;
+    private final FieldAccessor accessor;
+    
+    //only for @CustomCodec
+    private Constructor<?> decoderConstructor;
+    private Constructor<?> encoderConstructor;
+    
+    FieldPlan(Field field, String name, FieldKind kind, FieldConverter converter){
+        this.field = field;
+        this.name = name;
+        this.kind = kind;
+        this.converter = converter;
+        this.accessor = FieldAccessorCache.getInstance().get(field);
+    }
+    
+    FieldPlan(Field field, Constructor<?> decoderConstructor, Constructor<?> encoderConstructor){
+        this(field, null, FieldKind.CUSTOM, null);
+        this.decoderConstructor = decoderConstructor;
+        this.encoderConstructor = encoderConstructor;
+    }
+
+    public Field getField() {
+        return field;
+    }
+
+    /**
+     * Get the column name in mongoDB. Returns null for @CustomCodec field, because the name is decided by the custom encoder.
+     * @return 
+     */
+    public String getName() {
+        return name;
+    }
+
+    public FieldKind getKind() {
+        return kind;
+    }
+
+    public FieldConverter getConverter() {
+        return converter;
+    }
+
+    public FieldAccessor getAccessor() {
+        return accessor;
+    }
+
+    Constructor<?> getDecoderConstructor() {
+        return decoderConstructor;
+    }
+
+    Constructor<?> getEncoderConstructor() {
+        return encoderConstructor;
+    }
+    
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) www.bugull.com
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bugull.mongo.mapper;
+
+import com.bugull.mongo.annotations.Id;
+import com.bugull.mongo.cache.SequenceAllocatorCache;
+import com.bugull.mongo.exception.IdException;
+import java.lang.reflect.Field;
+import org.bson.types.ObjectId;
+
+/**
+ * Converter for @Id field.
+ * 
+ * @author Frank Wen(xbwen@hotmail.com)
+ */
+public class IdConverter implements FieldConverter {
+    
+    private final Id id;
+    private final Class<?> clazz;
+    
+    public IdConverter(Field field, Class<?> clazz){
+        this.id = field.getAnnotation(Id.class);
+        this.clazz = clazz;
+    }
+
+    @Override
+    public Object decode(Object value, boolean withoutCascade) {
+        return value.toString();
+    }
+
+    @Override
+    public Object encode(Object value, boolean withoutCascade) {
+        Object result = null;
+        switch(id.type()){
+            case AUTO_GENERATE:
+                if(value == null){
+                    result = new ObjectId();
+                }else{
+                    result = new ObjectId(value.toString());
+                }
+                break;
+            case AUTO_INCREASE:
+                if(value == null){
+                    result = SequenceAllocatorCache.getInstance().get(clazz).next();
+                }else{
+                    result = Long.parseLong(value.toString());
+                }
+                break;
+            case USER_DEFINE:
+                if(value == null){
+                    throw new IdException("user-defined id doesn't have value!");
+                }else{
+                    result = value.toString();
+                }
+                break;
+        }
+        return result;
+    }
+    
+}
@@ -0,0 +1,431 @@
+/*
+ * Copyright (c) www.bugull.com
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bugull.mongo.mapper;
+
+import com.bugull.mongo.exception.FieldException;
+import com.bugull.mongo.utils.DataType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Queue;
+import java.util.Set;
+import org.bson.types.Decimal128;
+
+/**
+ * Converter for @Property field, or field without any mapping annotation.
+ * 
+ * @author Frank Wen(xbwen@hotmail.com)
+ */
+@SuppressWarnings("unchecked")
+public class PropertyConverter implements FieldConverter {
+    
+    private final Field field;
+    private final Class<?> type;
+    private final ValueType valueType;  //element type of collection, or value type of map
+    
+    public PropertyConverter(Field field){
+        this.field = field;
+        this.type = field.getType();
+        if(DataType.isMapType(type)){
+            valueType = ValueType.resolve(field, 1);
+        }else if(DataType.isListType(type) || DataType.isCollectionType(type) || DataType.isSetType(type) || DataType.isQueueType(type)){
+            valueType = ValueType.resolve(field, 0);
+        }else{
+            valueType = null;
+        }
+    }
+    
+    @Override
+    public Object decode(Object value, boolean withoutCascade){
+        if(type.isArray()){
+            return decodeArray(value, type.getComponentType());
+        }else if(type.isEnum()){
+            return Enum.valueOf((Class<Enum>)type, (String)value);
+        }else{
+            return decodePrimitive(value);
+        }
+    }
+    
+    @Override
+    public Object encode(Object value, boolean withoutCascade){
+        //if the field is enum type, save as String
+        if(type.isEnum()){
+            return value.toString();
+        }
+        return value;
+    }
+    
+    private Object decodeArray(Object value, Class comType){
+        if(DataType.isByte(comType)){
+            return (byte[])value;
+        }else{
+            return convertToArrayValue(comType, (List)value);
+        }
+    }
+    
+    private Object decodePrimitive(Object value){
+        //When value is number, it's default to Double and Integer, must cast to Float, Short and byte.
+        //It's OK to set integer value to long field.
+        if(DataType.isFloat(type) || DataType.isFloatObject(type)){
+            return Float.valueOf(value.toString());
+        }
+        else if(DataType.isShort(type) || DataType.isShortObject(type)){
+            return Short.valueOf(value.toString());
+        }
+        else if(DataType.isByte(type) || DataType.isByteObject(type)){
+            return Byte.valueOf(value.toString());
+        }
+        //process List and Collection.
+        else if(DataType.isListType(type) || DataType.isCollectionType(type)){
+            List list = new ArrayList();
+            processCollection((List)value, list);
+            return list;
+        }
+        //convert for Set. default type is com.mongodb.BasicDBList(extends ArrayList)
+        else if(DataType.isSetType(type)){
+            Set set = new HashSet();
+            processCollection((List)value, set);
+            return set;
+        }
+        //convert for Queue. default type is com.mongodb.BasicDBList(extends ArrayList)
+        else if(DataType.isQueueType(type)){
+            Queue queue = new LinkedList();
+            processCollection((List)value, queue);
+            return queue;
+        }
+        //process Map.
+        else if(DataType.isMapType(type)){
+            return processMapType(value);
+        }
+        //convert for char. default type is String "X"
+        else if(DataType.isChar(type)){
+            return value.toString().charAt(0);
+        }
+        //convert for Timestamp. default type is Date
+        else if(DataType.isTimestamp(type)){
+            Date date = (Date)value;
+            return new Timestamp(date.getTime());
+        }
+        //convert for BigDecimal. defualt type is Decimal128
+        else if(DataType.isBigDecimal(type)){
+            Decimal128 decimal = (Decimal128)value;
+            return decimal.bigDecimalValue();
+        }
+        else{
+            return value;  //for others: String, int/Integer, long/Long, double/Double, boolean/Boolean and Date
+        }
+    }
+    
+    private ValueType getValueType(){
+        if(valueType == null){
+            throw new FieldException("Field '" + field.getName() + "' must declare the generic type!");
+        }
+        return valueType;
+    }
+    
+    private Object processMapType(Object value){
+        //for Map<K,V>, the type of V is resolved when creating the converter
+        ValueType vt = getValueType();
+        if(vt.isSingle){
+            //if the V is privitive, the map has no need to convert.
+            //whatever the V is Short, Float, BigDecimal or others.
+            return value;
+        }
+        //decode value by different type of V
+        Map src = (Map)value;
+        Map map = new HashMap();
+        Set<Entry> entrySet = src.entrySet();
+        if(vt.isArray){
+            for(Entry entry : entrySet){
+                Object k = entry.getKey();
+                List v = (List)entry.getValue();
+                Object arr = convertToArrayValue(vt.elementType, v);
+                map.put(k, arr);
+            }
+        }
+        else if(vt.isCollection){
+            Class vType = vt.collectionType;
+            if(DataType.isListType(vType) || DataType.isCollectionType(vType)){
+                for(Entry entry : entrySet){
+                    Object k = entry.getKey();
+                    List v = (List)entry.getValue();
+                    List list = new ArrayList();
+                    moveCollectionElement(vt.elementType, v, list);
+                    map.put(k, list);
+                }
+            }else if(DataType.isSetType(vType)){
+                for(Entry entry : entrySet){
+                    Object k = entry.getKey();
+                    List v = (List)entry.getValue();
+                    Set set = new HashSet();
+                    moveCollectionElement(vt.elementType, v, set);
+                    map.put(k, set);
+                }
+            }else if(DataType.isQueueType(vType)){
+                for(Entry entry : entrySet){
+                    Object k = entry.getKey();
+                    List v = (List)entry.getValue();
+                    Queue queue = new LinkedList();
+                    moveCollectionElement(vt.elementType, v, queue);
+                    map.put(k, queue);
+                }
+            }
+        }
+        return map;
+    }
+    
+    private Object convertToArrayValue(Class comType, List val){
+        int size = val.size();
+        if(comType.isArray()){
+            //if each element is still an arry
+            Object arr = Array.newInstance(comType, size);
+            Class subType = comType.getComponentType();
+            for(int i=0; i<size; i++){
+                Object item = val.get(i);
+                Object result = convertToArrayValue(subType, (List)item);
+                Array.set(arr, i, result);
+            }
+            return arr;
+        }
+        else if(DataType.isString(comType)){
+            String[] arr = new String[size];
+            for(int i=0; i<size; i++){
+                arr[i] = val.get(i).toString();
+            }
+            return arr;
+        }
+        else if(DataType.isInteger(comType)){
+            int[] arr = new int[size];
+            for(int i=0; i<size; i++){
+                arr[i] = Integer.parseInt(val.get(i).toString());
+            }
+            return arr;
+        }
+        else if(DataType.isIntegerObject(comType)){
+            Integer[] arr = new Integer[size];
+            for(int i=0; i<size; i++){
+                arr[i] = Integer.valueOf(val.get(i).toString());
+            }
+            return arr;
+        }
+        else if(DataType.isLong(comType)){
+            long[] arr = new long[size];
+            for(int i=0; i<size; i++){
+                arr[i] = Long.parseLong(val.get(i).toString());
+            }
+            return arr;
+        }
+        else if(DataType.isLongObject(comType)){
+            Long[] arr = new Long[size];
+            for(int i=0; i<size; i++){
+                arr[i] = Long.valueOf(val.get(i).toString());
+            }
+            return arr;
+        }
+        else if(DataType.isShort(comType)){
+            short[] arr = new short[size];
+            for(int i=0; i<size; i++){
+                arr[i] = Short.parseShort(val.get(i).toString());
+            }
+            return arr;
+        }
+        else if(DataType.isShortObject(comType)){
+            Short[] arr = new Short[size];
+            for(int i=0; i<size; i++){
+                arr[i] = Short.valueOf(val.get(i).toString());
+            }
+            return arr;
+        }
+        else if(DataType.isByteObject(comType)){
+            Byte[] arr = new Byte[size];
+            for(int i=0; i<size; i++){
+                arr[i] = Byte.valueOf(val.get(i).toString());
+            }
+            return arr;
+        }
+        else if(DataType.isFloat(comType)){
+            float[] arr = new float[size];
+            for(int i=0; i<size; i++){
+                arr[i] = Float.parseFloat(val.get(i).toString());
+            }
+            return arr;
+        }
+        else if(DataType.isFloatObject(comType)){
+            Float[] arr = new Float[size];
+            for(int i=0; i<size; i++){
+                arr[i] = Float.valueOf(val.get(i).toString());
+            }
+            return arr;
+        }
+        else if(DataType.isDouble(comType)){
+            double[] arr = new double[size];
+            for(int i=0; i<size; i++){
+                arr[i] = Double.parseDouble(val.get(i).toString());
+            }
+            return arr;
+        }
+        else if(DataType.isDoubleObject(comType)){
+            Double[] arr = new Double[size];
+            for(int i=0; i<size; i++){
+                arr[i] = Double.valueOf(val.get(i).toString());
+            }
+            return arr;
+        }
+        else if(DataType.isBoolean(comType)){
+            boolean[] arr = new boolean[size];
+            for(int i=0; i<size; i++){
+                arr[i] = Boolean.parseBoolean(val.get(i).toString());
+            }
+            return arr;
+        }
+        else if(DataType.isBooleanObject(comType)){
+            Boolean[] arr = new Boolean[size];
+            for(int i=0; i<size; i++){
+                arr[i] = Boolean.valueOf(val.get(i).toString());
+            }
+            return arr;
+        }
+        else if(DataType.isChar(comType)){
+            char[] arr = new char[size];
+            for(int i=0; i<size; i++){
+                arr[i] = val.get(i).toString().charAt(0);
+            }
+            return arr;
+        }
+        else if(DataType.isCharObject(comType)){
+            Character[] arr = new Character[size];
+            for(int i=0; i<size; i++){
+                arr[i] = val.get(i).toString().charAt(0);
+            }
+            return arr;
+        }
+        else if(DataType.isDate(comType)){
+            Date[] arr = new Date[size];
+            for(int i=0; i<size; i++){
+                arr[i] = (Date)val.get(i);
+            }
+            return arr;
+        }
+        else if(DataType.isTimestamp(comType)){
+            Timestamp[] arr = new Timestamp[size];
+            for(int i=0; i<size; i++){
+                arr[i] = (Timestamp)val.get(i);
+            }
+            return arr;
+        }
+        else if(DataType.isBigDecimal(comType)){
+            BigDecimal[] arr = new BigDecimal[size];
+            for(int i=0; i<size; i++){
+                Decimal128 decimal = (Decimal128)val.get(i);
+                arr[i] = decimal.bigDecimalValue();
+            }
+            return arr;
+        }
+        else{
+            return null;
+        }
+    }
+    
+    private void processCollection(List src, Collection target){
+        //for List<T>, the type of T is resolved when creating the converter
+        ValueType vt = getValueType();
+        //decode value by different type of T
+        if(vt.isArray){
+            //each element of collection is array
+            for(Object o : src){
+                List item = (List)o;
+                Object arr = convertToArrayValue(vt.elementType, item);
+                target.add(arr);
+            }
+        }
+        else if(vt.isCollection){
+            //each element of collection is still a collection
+            Class tType = vt.collectionType;
+            if(DataType.isListType(tType) || DataType.isCollectionType(tType)){
+                for(Object o : src){
+                    List item = (List)o;
+                    List list = new ArrayList();
+                    moveCollectionElement(vt.elementType, item, list);
+                    target.add(list);
+                }
+            }
+            else if(DataType.isSetType(tType)){
+                for(Object o : src){
+                    List item = (List)o;
+                    Set set = new HashSet();
+                    moveCollectionElement(vt.elementType, item, set);
+                    target.add(set);
+                }
+            }
+            else if(DataType.isQueueType(tType)){
+                for(Object o : src){
+                    List item = (List)o;
+                    Queue queue = new LinkedList();
+                    moveCollectionElement(vt.elementType, item, queue);
+                    target.add(queue);
+                }
+            }
+        }
+        else if(vt.isSingle){
+            //each element of collection is primitive
+            moveCollectionElement(vt.elementType, src, target);
+        }
+    }
+    
+    private void moveCollectionElement(Class actualType, List src, Collection target){
+        if(DataType.isShortObject(actualType)){
+            for(Object o : src){
+                target.add(Short.valueOf(o.toString()));
+            }
+        }
+        else if(DataType.isByteObject(actualType)){
+            for(Object o : src){
+                target.add(Byte.valueOf(o.toString()));
+            }
+        }
+        else if(DataType.isFloatObject(actualType)){
+            for(Object o : src){
+                target.add(Float.valueOf(o.toString()));
+            }
+        }
+        else if(DataType.isCharObject(actualType)){
+            for(Object o : src){
+                target.add(o.toString().charAt(0));
+            }
+        }
+        else if(DataType.isBigDecimal(actualType)){
+            for(Object o : src){
+                Decimal128 decimal = (Decimal128)o;
+                target.add(decimal.bigDecimalValue());
+            }
+        }
+        else{
+            target.addAll(src);
+        }
+    }
+    
+}
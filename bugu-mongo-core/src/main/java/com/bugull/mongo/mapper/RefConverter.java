@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) www.bugull.com
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bugull.mongo.mapper;
+
+import com.bugull.mongo.BuguEntity;
+import com.bugull.mongo.access.InternalDao;
+import com.bugull.mongo.annotations.Default;
+import com.bugull.mongo.annotations.Ref;
+import com.bugull.mongo.cache.ConstructorCache;
+import com.bugull.mongo.cache.DaoCache;
+import com.bugull.mongo.utils.FieldUtil;
+import com.bugull.mongo.utils.ReferenceUtil;
+import java.lang.reflect.Field;
+
+/**
+ * Converter for @Ref field.
+ * 
+ * @author Frank Wen(xbwen@hotmail.com)
+ */
+@SuppressWarnings("unchecked")
+public class RefConverter implements FieldConverter {
+    
+    private final Ref ref;
+    private final Class<?> refClass;
+    private final boolean cascadeRead;
+    private final boolean cascadeCU;
+    
+    public RefConverter(Field field){
+        ref = field.getAnnotation(Ref.class);
+        refClass = FieldUtil.getRealType(field);
+        String cascade = ref.cascade().toUpperCase();
+        cascadeRead = cascade.indexOf(Default.CASCADE_READ) != -1;
+        cascadeCU = cascade.indexOf(Default.CASCADE_CREATE) != -1 || cascade.indexOf(Default.CASCADE_UPDATE) != -1;
+    }
+
+    @Override
+    public Object decode(Object value, boolean withoutCascade) {
+        String refId = getRefId(value);
+        BuguEntity refObj;
+        //not cascade read
+        if(!cascadeRead || withoutCascade){
+            refObj = (BuguEntity)ConstructorCache.getInstance().create(refClass);
+            refObj.setId(refId);
+        }
+        //cascade read
+        else {
+            InternalDao dao = DaoCache.getInstance().get(refClass);
+            refObj = (BuguEntity)dao.findOneLazily(refId, true);
+        }
+        return refObj;
+    }
+
+    /**
+     * Get the id string from the reference value in mongoDB.
+     * @param value
+     * @return 
+     */
+    public String getRefId(Object value){
+        return ReferenceUtil.fromDbReference(ref, value);
+    }
+
+    public Class<?> getRefClass() {
+        return refClass;
+    }
+
+    public boolean isCascadeRead() {
+        return cascadeRead;
+    }
+    
+    /**
+     * Save the referenced entity, if the @Ref field is cascade create or update.
+     * @param value not null
+     */
+    public void saveCascade(Object value){
+        if(cascadeCU){
+            InternalDao dao = DaoCache.getInstance().get(refClass);
+            dao.saveWithoutCascade((BuguEntity)value, true);
+        }
+    }
+
+    @Override
+    public Object encode(Object value, boolean withoutCascade) {
+        BuguEntity entity = (BuguEntity)value;
+        if(!withoutCascade){
+            saveCascade(entity);
+        }
+        return ReferenceUtil.toDbReference(ref, entity.getClass(), entity.getId());
+    }
+    
+}
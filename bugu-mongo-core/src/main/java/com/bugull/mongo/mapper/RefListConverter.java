@@ -0,0 +1,359 @@
+/*
+ * Copyright (c) www.bugull.com
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bugull.mongo.mapper;
+
+import com.bugull.mongo.BuguEntity;
+import com.bugull.mongo.BuguQuery;
+import com.bugull.mongo.BuguSession;
+import com.bugull.mongo.access.InternalDao;
+import com.bugull.mongo.annotations.Default;
+import com.bugull.mongo.annotations.RefList;
+import com.bugull.mongo.cache.ConstructorCache;
+import com.bugull.mongo.cache.DaoCache;
+import com.bugull.mongo.utils.DataType;
+import com.bugull.mongo.utils.FieldUtil;
+import com.bugull.mongo.utils.Operator;
+import com.bugull.mongo.utils.ReferenceUtil;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Converter for @RefList field.
+ * 
+ * @author Frank Wen(xbwen@hotmail.com)
+ */
+@SuppressWarnings("unchecked")
+public class RefListConverter implements FieldConverter {
+    
+    private final Field field;
+    private final RefList refList;
+    private final Class<?> type;
+    private final Class<?> elementType;  //for array and collection
+    private final ValueType valueType;  //for map
+    private final boolean cascadeRead;
+    private final boolean cascadeCU;
+    
+    public RefListConverter(Field field){
+        this.field = field;
+        refList = field.getAnnotation(RefList.class);
+        type = field.getType();
+        if(type.isArray()){
+            elementType = type.getComponentType();
+            valueType = null;
+        }else{
+            ParameterizedType paramType = (ParameterizedType)field.getGenericType();
+            Type[] types = paramType.getActualTypeArguments();
+            if(types.length == 1){
+                elementType = (Class)types[0];
+                valueType = null;
+            }else{
+                elementType = null;
+                valueType = ValueType.resolve(field, 1);
+            }
+        }
+        String cascade = refList.cascade().toUpperCase();
+        cascadeRead = cascade.indexOf(Default.CASCADE_READ) != -1;
+        cascadeCU = cascade.indexOf(Default.CASCADE_CREATE) != -1 || cascade.indexOf(Default.CASCADE_UPDATE) != -1;
+    }
+
+    @Override
+    public Object decode(Object value, boolean withoutCascade) {
+        if(type.isArray()){
+            return decodeArray(value, elementType, withoutCascade);
+        }
+        if(valueType != null){
+            return decodeMap(value, withoutCascade);
+        }
+        List list = decodeCollection(value, elementType, withoutCascade);
+        if(list == null){
+            return null;
+        }
+        if(DataType.isListType(type) || DataType.isCollectionType(type)){
+            return list;
+        }
+        else if(DataType.isSetType(type)){
+            return new HashSet(list);
+        }
+        else if(DataType.isQueueType(type)){
+            return new LinkedList(list);
+        }
+        return null;
+    }
+    
+    /**
+     * Save the referenced entities, if the @RefList field is cascade create or update.
+     * @param value not null
+     */
+    public void saveCascade(Object value){
+        if(cascadeCU){
+            //the references are not used, only the cascade saves are wanted
+            encode(value, false);
+        }
+    }
+    
+    @Override
+    public Object encode(Object value, boolean withoutCascade) {
+        if(type.isArray()){
+            return encodeArray(elementType, value, withoutCascade);
+        }
+        if(valueType != null){
+            return encodeMap(value, withoutCascade);
+        }
+        return encodeCollection(elementType, value, withoutCascade);
+    }
+    
+    private Object decodeArray(Object val, Class elementClass, boolean withoutCascade){
+        elementClass = FieldUtil.getRealType(elementClass, field);
+        List list = (List)val;
+        if(list.isEmpty()){
+            return null;
+        }
+        int size = list.size();
+        Object arr = Array.newInstance(elementClass, size);
+        //not cascade read
+        if(!cascadeRead || withoutCascade){
+            for(int i=0; i<size; i++){
+                Object item = list.get(i);
+                if(item != null){
+                    String refId = ReferenceUtil.fromDbReference(refList, item);
+                    BuguEntity refObj = (BuguEntity)ConstructorCache.getInstance().create(elementClass);
+                    refObj.setId(refId);
+                    Array.set(arr, i, refObj);
+                }else{
+                    Array.set(arr, i, null);
+                }
+            }
+        }
+        //cascade read
+        else {
+            List<BuguEntity> entityList = findRefList(elementClass, list);
+            //when query returns, the size maybe changed
+            if(entityList.size() != size){
+                size = entityList.size();
+                arr = Array.newInstance(elementClass, size);
+            }
+            for(int i=0; i<size; i++){
+                Array.set(arr, i, entityList.get(i));
+            }
+        }
+        return arr;
+    }
+    
+    private List decodeCollection(Object val, Class elementClass, boolean withoutCascade){
+        elementClass = FieldUtil.getRealType(elementClass, field);
+        Collection collection = (Collection)val;
+        if(collection.isEmpty()){
+            return null;
+        }
+        List<BuguEntity> result = new ArrayList<>();
+        //not cascade read
+        if(!cascadeRead || withoutCascade){
+            for(Object item : collection){
+                if(item != null){
+                    String refId = ReferenceUtil.fromDbReference(refList, item);
+                    BuguEntity refObj = (BuguEntity)ConstructorCache.getInstance().create(elementClass);
+                    refObj.setId(refId);
+                    result.add(refObj);
+                }
+            }
+        }
+        //cascade read
+        else {
+            result = findRefList(elementClass, collection);
+        }
+        return result;
+    }
+    
+    private List<BuguEntity> findRefList(Class<?> elementClass, Collection collection){
+        List<String> idList = new ArrayList<>();
+        for(Object item : collection){
+            if(item != null){
+                String refId = ReferenceUtil.fromDbReference(refList, item);
+                idList.add(refId);
+            }
+        }
+        InternalDao dao = DaoCache.getInstance().get(elementClass);
+        String sort = refList.sort();
+        BuguSession session = BuguSession.current();
+        if(session != null && sort.equals(Default.SORT)){
+            return findRefList(dao, idList, session);
+        }
+        BuguQuery query = dao.query().in(Operator.ID, idList);
+        query.setWithoutCascade(true);
+        if(!sort.equals(Default.SORT)){
+            query.sort(sort);
+        }
+        return query.results();
+    }
+    
+    /**
+     * Only read the entities which are not in the session.
+     */
+    private List<BuguEntity> findRefList(InternalDao dao, List<String> idList, BuguSession session){
+        String collectionName = dao.getCollection().getFullName();
+        List<BuguEntity> result = new ArrayList<>();
+        List<String> missing = new ArrayList<>();
+        for(String id : idList){
+            Object obj = session.get(collectionName, id);
+            if(obj != null){
+                result.add((BuguEntity)obj);
+            }else{
+                missing.add(id);
+            }
+        }
+        if(!missing.isEmpty()){
+            BuguQuery query = dao.query().in(Operator.ID, missing);
+            query.setWithoutCascade(true);
+            result.addAll(query.results());
+        }
+        return result;
+    }
+    
+    private Map decodeMap(Object value, boolean withoutCascade){
+        Map map = (Map)value;
+        if(map.isEmpty()){
+            return null;
+        }
+        //for Map<K,V>, the type of V is resolved when creating the converter
+        ValueType vt = valueType;
+        //decode value by different type of V
+        Map result = new HashMap();
+        Class<?> cls  = null;
+        InternalDao dao = null;
+        if(vt.isSingle){
+            cls  = FieldUtil.getRealType(vt.elementType, field);
+            if(!withoutCascade && cascadeRead){
+                dao = DaoCache.getInstance().get(cls);
+            }
+        }
+        for(Object key : map.keySet()){
+            Object entryValue = map.get(key);
+            if(entryValue == null){
+                result.put(key, null);
+                continue;
+            }
+            if(vt.isSingle){
+                String refId = ReferenceUtil.fromDbReference(refList, entryValue);
+                BuguEntity refObj = null;
+                if(!withoutCascade && cascadeRead){
+                    refObj = (BuguEntity)dao.findOneLazily(refId, true);
+                }else{
+                    refObj = (BuguEntity)ConstructorCache.getInstance().create(cls);
+                    refObj.setId(refId);
+                }
+                result.put(key, refObj);
+            }else if(vt.isArray){
+                Object arr = decodeArray(entryValue, vt.elementType, withoutCascade);
+                result.put(key, arr);
+            }else if(vt.isCollection){
+                List list = decodeCollection(entryValue, vt.elementType, withoutCascade);
+                Class vType = vt.collectionType;
+                if(DataType.isListType(vType) || DataType.isCollectionType(vType)){
+                    result.put(key, list);
+                }
+                else if(list == null){
+                    result.put(key, null);
+                }
+                else if(DataType.isSetType(vType)){
+                    result.put(key, new HashSet(list));
+                }
+                else if(DataType.isQueueType(vType)){
+                    result.put(key, new LinkedList(list));
+                }
+            }
+        }
+        return result;
+    }
+    
+    private Object encodeArray(Class type, Object val, boolean withoutCascade){
+        Class<?> cls = FieldUtil.getRealType(type, field);
+        InternalDao dao = DaoCache.getInstance().get(cls);
+        int len = Array.getLength(val);
+        List<Object> result = new ArrayList<>();
+        for(int i=0; i<len; i++){
+            BuguEntity entity = (BuguEntity)Array.get(val, i);
+            if(entity != null){
+                if(!withoutCascade && cascadeCU){
+                    dao.saveWithoutCascade(entity, true);
+                }
+                result.add(ReferenceUtil.toDbReference(refList, entity.getClass(), entity.getId()));
+            }
+        }
+        return result;
+    }
+    
+    private Object encodeCollection(Class type, Object val, boolean withoutCascade){
+        Collection<BuguEntity> collection = (Collection<BuguEntity>)val;
+        List<Object> result = new ArrayList<>();
+        Class<?> cls = FieldUtil.getRealType(type, field);
+        InternalDao dao = DaoCache.getInstance().get(cls);
+        for(BuguEntity entity : collection){
+            if(entity != null){
+                if(!withoutCascade && cascadeCU){
+                    dao.saveWithoutCascade(entity, true);
+                }
+                result.add(ReferenceUtil.toDbReference(refList, entity.getClass(), entity.getId()));
+            }
+        }
+        return result;
+    }
+    
+    private Object encodeMap(Object value, boolean withoutCascade){
+        //encode value by different type of V
+        ValueType vt = valueType;
+        Map result = new HashMap();
+        InternalDao dao = null;
+        if(vt.isSingle){
+            Class<?> cls = FieldUtil.getRealType(vt.elementType, field);
+            dao = DaoCache.getInstance().get(cls);
+        }
+        Map map = (Map)value;
+        for(Object key : map.keySet()){
+            Object entryValue = map.get(key);
+            if(vt.isSingle){
+                BuguEntity entity = (BuguEntity)entryValue;
+                if(entity != null){
+                    if(!withoutCascade && cascadeCU){
+                        dao.saveWithoutCascade(entity, true);
+                    }
+                    result.put(key, ReferenceUtil.toDbReference(refList, entity.getClass(), entity.getId()));
+                }else{
+                    result.put(key, null);
+                }
+            }
+            else if(vt.isArray){
+                Object arr = encodeArray(vt.elementType, entryValue, withoutCascade);
+                result.put(key, arr);
+            }
+            else if(vt.isCollection){
+                Object arr = encodeCollection(vt.elementType, entryValue, withoutCascade);
+                result.put(key, arr);
+            }
+        }
+        return result;
+    }
+    
+}
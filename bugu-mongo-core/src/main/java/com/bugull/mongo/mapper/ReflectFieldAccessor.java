@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) www.bugull.com
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bugull.mongo.mapper;
+
+import com.bugull.mongo.exception.FieldException;
+import java.lang.reflect.Field;
+
+/**
+ * FieldAccessor based on the accessible Field. 
+ * 
+ * <p>int, long and double value are read and written by Field.getInt()/setInt() etc., so they are never boxed. 
+ * The JVM generates bytecode accessor for the frequently used Field (JDK8), or uses direct method handle (JDK18+), 
+ * which is faster than a MethodHandle held in a non-constant field.</p>
+ * 
+ * @author Frank Wen(xbwen@hotmail.com)
+ */
+final class ReflectFieldAccessor implements FieldAccessor {
+    
+    private final Field field;
+    private final Class<?> type;
+    
+    ReflectFieldAccessor(Field field){
+        field.setAccessible(true);
+        this.field = field;
+        this.type = field.getType();
+    }
+
+    @Override
+    public Field getField() {
+        return field;
+    }
+
+    @Override
+    public Object get(Object obj) {
+        try{
+            return field.get(obj);
+        }catch(IllegalAccessException | IllegalArgumentException ex){
+            throw new FieldException(ex.getMessage());
+        }
+    }
+
+    @Override
+    public void set(Object obj, Object value) {
+        try{
+            field.set(obj, value);
+        }catch(IllegalAccessException | IllegalArgumentException ex){
+            throw new FieldException(ex.getMessage());
+        }
+    }
+
+    @Override
+    public int getInt(Object obj) {
+        try{
+            if(type == int.class){
+                return field.getInt(obj);
+            }
+            return ((Number)field.get(obj)).intValue();
+        }catch(IllegalAccessException | IllegalArgumentException ex){
+            throw new FieldException(ex.getMessage());
+        }
+    }
+
+    @Override
+    public long getLong(Object obj) {
+        try{
+            if(type == long.class){
+                return field.getLong(obj);
+            }
+            return ((Number)field.get(obj)).longValue();
+        }catch(IllegalAccessException | IllegalArgumentException ex){
+            throw new FieldException(ex.getMessage());
+        }
+    }
+
+    @Override
+    public double getDouble(Object obj) {
+        try{
+            if(type == double.class){
+                return field.getDouble(obj);
+            }
+            return ((Number)field.get(obj)).doubleValue();
+        }catch(IllegalAccessException | IllegalArgumentException ex){
+            throw new FieldException(ex.getMessage());
+        }
+    }
+
+    @Override
+    public void setInt(Object obj, int value) {
+        try{
+            if(type == int.class){
+                field.setInt(obj, value);
+            }else{
+                field.set(obj, value);
+            }
+        }catch(IllegalAccessException | IllegalArgumentException ex){
+            throw new FieldException(ex.getMessage());
+        }
+    }
+
+    @Override
+    public void setLong(Object obj, long value) {
+        try{
+            if(type == long.class){
+                field.setLong(obj, value);
+            }else{
+                field.set(obj, value);
+            }
+        }catch(IllegalAccessException | IllegalArgumentException ex){
+            throw new FieldException(ex.getMessage());
+        }
+    }
+
+    @Override
+    public void setDouble(Object obj, double value) {
+        try{
+            if(type == double.class){
+                field.setDouble(obj, value);
+            }else{
+                field.set(obj, value);
+            }
+        }catch(IllegalAccessException | IllegalArgumentException ex){
+            throw new FieldException(ex.getMessage());
+        }
+    }
+
+    @Override
+    public void copy(Object src, Object target) {
+        if(type == int.class){
+            setInt(target, getInt(src));
+        }else if(type == long.class){
+            setLong(target, getLong(src));
+        }else if(type == double.class){
+            setDouble(target, getDouble(src));
+        }else{
+            set(target, get(src));
+        }
+    }
+    
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) www.bugull.com
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bugull.mongo.mapper;
+
+import com.bugull.mongo.utils.FieldUtil;
+import java.lang.reflect.Field;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+
+/**
+ * The element type of a collection field, or the value type of a map field. 
+ * Resolved once from the field's generic type.
+ * 
+ * @author Frank Wen(xbwen@hotmail.com)
+ */
+final class ValueType {
+    
+    //3 different types of element: array, collection, or a single object
+    boolean isArray;
+    boolean isCollection;
+    boolean isSingle;
+    
+    Class collectionType;  //for isCollection: the raw type of the collection, such as List, Set
+    Class elementType;  //for isArray and isCollection: the element's type. for isSingle: the type itself
+    
+    /**
+     * Resolve the type argument of the field.
+     * @param field
+     * @param index 0 for Collection<T>, 1 for Map<K,V>
+     * @return null if the field is not generic declared
+     */
+    static ValueType resolve(Field field, int index){
+        Type genericType = field.getGenericType();
+        if(!(genericType instanceof ParameterizedType)){
+            return null;
+        }
+        Type[] types = ((ParameterizedType)genericType).getActualTypeArguments();
+        if(types.length <= index){
+            return null;
+        }
+        Type type = types[index];
+        ValueType vt = new ValueType();
+        //in JDK6, type of array, is instanceof GenericArrayType
+        if(type instanceof GenericArrayType){
+            vt.isArray = true;
+            GenericArrayType g = (GenericArrayType)type;
+            vt.elementType = (Class)g.getGenericComponentType();
+        }else if(type instanceof ParameterizedType){
+            vt.isCollection = true;
+            ParameterizedType p = (ParameterizedType)type;
+            vt.collectionType = (Class)p.getRawType();
+            vt.elementType = (Class)p.getActualTypeArguments()[0];
+        }else{
+            //in JDK8, type of array, is a class, not array
+            Class<?> actualType = (type instanceof Class) ? (Class)type : FieldUtil.getClassOfType(type);
+            if(actualType.isArray()){
+                vt.isArray = true;
+                vt.elementType = actualType.getComponentType();
+            }else{
+                vt.isSingle = true;
+                vt.elementType = actualType;
+            }
+        }
+        return vt;
+    }
+    
+}
@@ -0,0 +1,289 @@
+/*
+ * Copyright (c) www.bugull.com
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bugull.mongo.parallel;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The long-lived executor of the framework, shared by parallel query and entity listeners. 
+ * 
+ * <p>It runs tasks on virtual threads where the JDK supports them, with the number of running tasks bounded 
+ * by a semaphore. Otherwise it runs tasks on a fixed thread pool. The numbers of queued, active, completed 
+ * and failed tasks are counted.</p>
+ * 
+ * <p>A task submitted by a running task of the same executor is run inline, in the submitting thread. 
+ * Parallel query, split query, scanner and concurrent cascade fetch wait for their subtasks, so if all the threads 
+ * (or permits) were held by waiting parents, the subtasks could never run. So nested tasks are not run concurrently, 
+ * and the timeout of a nested parallel query is not effective.</p>
+ * 
+ * @author Frank Wen(xbwen@hotmail.com)
+ */
+public class BuguExecutor extends AbstractExecutorService {
+    
+    private static final Logger LOGGER = Logger.getLogger("com.bugull.mongo");
+    
+    //the executor whose task is running in current thread
+    private static final ThreadLocal<BuguExecutor> running = new ThreadLocal<>();
+    
+    private final ExecutorService delegate;
+    
+    private final Semaphore permits;  //only for virtual threads, the thread pool is bounded itself
+    
+    private final int maxConcurrency;
+    
+    private final AtomicInteger queuedCount = new AtomicInteger();
+    private final AtomicInteger activeCount = new AtomicInteger();
+    private final AtomicLong completedCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    
+    private BuguExecutor(ExecutorService delegate, Semaphore permits, int maxConcurrency){
+        this.delegate = delegate;
+        this.permits = permits;
+        this.maxConcurrency = maxConcurrency;
+    }
+    
+    /**
+     * Create an executor.
+     * @param maxConcurrency max number of running tasks
+     * @param virtualThreads if true, use virtual threads when available
+     * @return 
+     */
+    public static BuguExecutor create(int maxConcurrency, boolean virtualThreads){
+        if(virtualThreads){
+            ExecutorService es = newVirtualThreadExecutor();
+            if(es != null){
+                return new BuguExecutor(es, new Semaphore(maxConcurrency), maxConcurrency);
+            }
+        }
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(maxConcurrency, maxConcurrency, 0L, TimeUnit.MILLISECONDS, 
+                new LinkedBlockingQueue<Runnable>(), new PoolThreadFactory());
+        return new BuguExecutor(pool, null, maxConcurrency);
+    }
+    
+    /**
+     * JDK 21 or later has virtual threads. Get it by reflection, to be compatible with JDK 8.
+     */
+    private static ExecutorService newVirtualThreadExecutor(){
+        try{
+            Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService)method.invoke(null);
+        }catch(Exception ex){
+            return null;
+        }
+    }
+
+    @Override
+    public void execute(final Runnable command) {
+        if(running.get() == this){
+            runInline(command);
+            return;
+        }
+        queuedCount.incrementAndGet();
+        try{
+            delegate.execute(new Runnable(){
+                @Override
+                public void run(){
+                    runTask(command);
+                }
+            });
+        }catch(RejectedExecutionException ex){
+            queuedCount.decrementAndGet();
+            throw ex;
+        }
+    }
+    
+    private void runTask(Runnable command){
+        if(permits != null){
+            try{
+                permits.acquire();
+            }catch(InterruptedException ex){
+                queuedCount.decrementAndGet();
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        queuedCount.decrementAndGet();
+        activeCount.incrementAndGet();
+        running.set(this);
+        try{
+            command.run();
+        }catch(RuntimeException | Error ex){
+            failedCount.incrementAndGet();
+            throw ex;
+        }finally{
+            running.remove();
+            activeCount.decrementAndGet();
+            completedCount.incrementAndGet();
+            if(permits != null){
+                permits.release();
+            }
+        }
+    }
+    
+    /**
+     * Run a nested task in current thread. It holds no more thread or permit. 
+     * The exception is logged rather than thrown to the submitting task, as if it ran in other thread.
+     */
+    private void runInline(Runnable command){
+        activeCount.incrementAndGet();
+        try{
+            command.run();
+        }catch(RuntimeException ex){
+            failedCount.incrementAndGet();
+            LOGGER.log(Level.WARNING, "Error when running a nested task", ex);
+        }catch(Error ex){
+            failedCount.incrementAndGet();
+            throw ex;
+        }finally{
+            activeCount.decrementAndGet();
+            completedCount.incrementAndGet();
+        }
+    }
+    
+    /**
+     * Check if current thread is running a task of this executor. A task submitted in this case is run inline.
+     * @return 
+     */
+    public boolean isNested(){
+        return running.get() == this;
+    }
+
+    /**
+     * The exception of a submitted task is kept in the Future, count it here.
+     */
+    @Override
+    protected <T> RunnableFuture<T> newTaskFor(Callable<T> callable) {
+        return new CountedTask<>(callable);
+    }
+
+    @Override
+    protected <T> RunnableFuture<T> newTaskFor(Runnable runnable, T value) {
+        return new CountedTask<>(Executors.callable(runnable, value));
+    }
+
+    @Override
+    public void shutdown() {
+        delegate.shutdown();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        return delegate.shutdownNow();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return delegate.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return delegate.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return delegate.awaitTermination(timeout, unit);
+    }
+    
+    /**
+     * Check if tasks run on virtual threads.
+     * @return 
+     */
+    public boolean isVirtualThreads(){
+        return permits != null;
+    }
+
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+    
+    /**
+     * Number of tasks waiting to run.
+     * @return 
+     */
+    public int getQueuedCount() {
+        return queuedCount.get();
+    }
+
+    /**
+     * Number of tasks running.
+     * @return 
+     */
+    public int getActiveCount() {
+        return activeCount.get();
+    }
+
+    /**
+     * Number of tasks finished, including the failed ones.
+     * @return 
+     */
+    public long getCompletedCount() {
+        return completedCount.get();
+    }
+
+    /**
+     * Number of tasks finished with exception.
+     * @return 
+     */
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+    
+    private final class CountedTask<T> extends FutureTask<T> {
+        
+        CountedTask(Callable<T> callable){
+            super(callable);
+        }
+
+        @Override
+        protected void setException(Throwable t) {
+            failedCount.incrementAndGet();
+            super.setException(t);
+        }
+        
+    }
+    
+    private static final class PoolThreadFactory implements ThreadFactory {
+        
+        private final AtomicInteger number = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            return new Thread(r, "bugu-executor-" + number.incrementAndGet());
+        }
+        
+    }
+    
+}
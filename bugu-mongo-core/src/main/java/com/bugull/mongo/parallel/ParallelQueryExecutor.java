@@ -15,19 +15,25 @@
  */
 package com.bugull.mongo.parallel;
 
+import com.bugull.mongo.BuguFramework;
 import com.bugull.mongo.exception.BuguException;
-import com.bugull.mongo.utils.ThreadUtil;
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
+ * Execute BuguQuery or BuguAggregation in parallel, by the shared executor of BuguFramework, or a given one.
  * 
+ * <p>When a query fails or the timeout elapses, the other running queries are cancelled.</p>
  * 
  * @author Frank Wen(xbwen@hotmail.com)
  */
@@ -35,35 +41,75 @@ public class ParallelQueryExecutor {
     
     private static final Logger LOGGER = Logger.getLogger("com.bugull.mongo");
     
+    private final ExecutorService executor;
+    
+    public ParallelQueryExecutor(){
+        this(BuguFramework.getInstance().getExecutor());
+    }
+    
+    public ParallelQueryExecutor(ExecutorService executor){
+        this.executor = executor;
+    }
+    
     /**
      * Execute BuguQuery or BuguAggregation in parallel.
      * @param querys
      * @return
      */
     public List<Iterable> execute(Parallelable... querys) {
-        List<ParallelTask> taskList = new ArrayList<>();
-        for(Parallelable query : querys){
-            taskList.add(new ParallelTask(query));
-        }
+        return execute(0, TimeUnit.MILLISECONDS, querys);
+    }
+    
+    /**
+     * Execute BuguQuery or BuguAggregation in parallel, with a timeout for all of them.
+     * @param timeout max time to wait, 0 means no timeout
+     * @param unit
+     * @param querys
+     * @return the results, in the same order of the querys
+     */
+    public List<Iterable> execute(long timeout, TimeUnit unit, Parallelable... querys) {
         int len = querys.length;
         if(len <= 1){
             LOGGER.log(Level.WARNING, "You should NOT use parallel query when only one query!");
         }
-        int max = Runtime.getRuntime().availableProcessors() * 2 + 1;
-        if(len > max){
-            len = max;
-        }
-        ExecutorService es = Executors.newFixedThreadPool(len);
-        List<Iterable> result = new ArrayList<>();
+        long deadline = timeout > 0 ? System.nanoTime() + unit.toNanos(timeout) : 0;
+        CompletionService<Iterable> service = new ExecutorCompletionService<>(executor);
+        List<Future<Iterable>> futureList = new ArrayList<>();
+        Map<Future<Iterable>, Integer> indexes = new IdentityHashMap<>();
+        Iterable[] results = new Iterable[len];
         try{
-            List<Future<Iterable>> futureList = es.invokeAll(taskList);
-            for(Future<Iterable> future : futureList){
-                result.add(future.get());
+            for(int i=0; i<len; i++){
+                Future<Iterable> future = service.submit(new ParallelTask(querys[i]));
+                futureList.add(future);
+                indexes.put(future, i);
+            }
+            //take the results by finish order, so the first failure is found at once
+            for(int i=0; i<len; i++){
+                Future<Iterable> future;
+                if(deadline == 0){
+                    future = service.take();
+                }else{
+                    future = service.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if(future == null){
+                        throw new BuguException("Parallel query timeout after " + timeout + " " + unit);
+                    }
+                }
+                results[indexes.get(future)] = future.get();
             }
-        }catch(InterruptedException | ExecutionException ex){
-            throw new BuguException(ex.getMessage());
+        }catch(InterruptedException ex){
+            Thread.currentThread().interrupt();
+            throw new BuguException(ex);
+        }catch(ExecutionException ex){
+            throw new BuguException(ex.getCause());
         }finally{
-            ThreadUtil.safeClose(es);
+            //cancel the siblings, when fails or timeout
+            for(Future<Iterable> future : futureList){
+                future.cancel(true);
+            }
+        }
+        List<Iterable> result = new ArrayList<>();
+        for(Iterable it : results){
+            result.add(it);
         }
         return result;
     }
@@ -0,0 +1,216 @@
+/*
+ * Copyright (c) www.bugull.com
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bugull.mongo.utils;
+
+import com.bugull.mongo.exception.BuguException;
+import com.mongodb.BasicDBList;
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.List;
+import org.bson.BSONObject;
+import org.bson.BasicBSONDecoder;
+import org.bson.BasicBSONEncoder;
+
+/**
+ * Utility for keyset (seek) pagination. 
+ * 
+ * <p>The next page is read by a range condition on the sort keys, from the last document of current page, 
+ * instead of skipping the documents before it. The _id is appended to the sort keys as tiebreaker, so 
+ * the order is unique. The sort keys' values of the last document are encoded to an opaque token.</p>
+ * 
+ * <p>A missing or null sort value is sorted before all other values, as in mongoDB. 
+ * But the range operators only match the values of the same type, so a sort key whose values have 
+ * different types (except null), such as number and string, is not supported.</p>
+ * 
+ * @author Frank Wen(xbwen@hotmail.com)
+ */
+public final class KeysetUtil {
+    
+    private static final String SORT = "s";
+    private static final String VALUES = "v";
+    
+    /**
+     * Get the sort of keyset pagination, with _id as the last key.
+     * @param orderBy JSON string to sort, null means sort by _id
+     * @return 
+     */
+    public static DBObject getSort(String orderBy){
+        DBObject sort = (orderBy == null) ? new BasicDBObject() : SortUtil.getSort(orderBy);
+        if(!sort.containsField(Operator.ID)){
+            sort.put(Operator.ID, 1);
+        }
+        return sort;
+    }
+    
+    /**
+     * Make sure the sort keys are returned by the projection, to create the token.
+     * @param projection the fields to return, or not to return
+     * @param sort
+     * @return 
+     */
+    public static DBObject getProjection(DBObject projection, DBObject sort){
+        if(projection == null || projection.keySet().isEmpty()){
+            return projection;
+        }
+        DBObject result = new BasicDBObject(projection.toMap());
+        if(isInclusion(projection)){
+            for(String key : sort.keySet()){
+                result.put(key, 1);
+            }
+        }else{
+            for(String key : sort.keySet()){
+                for(String field : projection.keySet()){
+                    if(key.equals(field) || key.startsWith(field + ".")){
+                        result.removeField(field);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+    
+    private static boolean isInclusion(DBObject projection){
+        for(String field : projection.keySet()){
+            if(field.equals(Operator.ID)){
+                continue;
+            }
+            Object value = projection.get(field);
+            if(value instanceof Number){
+                return ((Number)value).intValue() != 0;
+            }
+            if(value instanceof Boolean){
+                return (Boolean)value;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Create the token from the last document of current page.
+     * @param sort
+     * @param last
+     * @return 
+     */
+    public static String getToken(DBObject sort, DBObject last){
+        BasicDBList values = new BasicDBList();
+        for(String key : sort.keySet()){
+            values.add(getValue(last, key));
+        }
+        DBObject dbo = new BasicDBObject(SORT, sort).append(VALUES, values);
+        byte[] bytes = new BasicBSONEncoder().encode(dbo);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+    
+    /**
+     * Get the condition to read the documents after the token.
+     * @param sort
+     * @param token
+     * @return 
+     */
+    public static DBObject getSeekCondition(DBObject sort, String token){
+        BSONObject bson;
+        try{
+            byte[] bytes = Base64.getUrlDecoder().decode(token);
+            bson = new BasicBSONDecoder().readObject(bytes);
+        }catch(RuntimeException ex){
+            throw new BuguException("Invalid continuation token", ex);
+        }
+        BSONObject tokenSort = (BSONObject)bson.get(SORT);
+        List values = (List)bson.get(VALUES);
+        if(tokenSort == null || values == null || !sameSort(sort, tokenSort) || values.size() != sort.keySet().size()){
+            throw new BuguException("The continuation token does not match the sort: " + sort);
+        }
+        //(k1 > v1) or (k1 = v1 and k2 > v2) or ... , use $lt for descending key
+        List<String> keys = new ArrayList<>(sort.keySet());
+        BasicDBList or = new BasicDBList();
+        for(int i=0; i<keys.size(); i++){
+            String key = keys.get(i);
+            boolean desc = isDescending(sort.get(key));
+            Object value = values.get(i);
+            if(desc && value == null){
+                //nothing is after null in descending order
+                continue;
+            }
+            DBObject branch = new BasicDBObject();
+            for(int j=0; j<i; j++){
+                //{k: null} matches both null and missing field
+                branch.put(keys.get(j), values.get(j));
+            }
+            if(value == null){
+                //$gt: null matches nothing, all non-null values are after null
+                branch.put(key, new BasicDBObject(Operator.NE, null));
+            }else if(desc){
+                //null and missing field are after all values in descending order
+                BasicDBList either = new BasicDBList();
+                either.add(new BasicDBObject(key, new BasicDBObject(Operator.LT, value)));
+                either.add(new BasicDBObject(key, null));
+                branch.put(Operator.OR, either);
+            }else{
+                branch.put(key, new BasicDBObject(Operator.GT, value));
+            }
+            or.add(branch);
+        }
+        return new BasicDBObject(Operator.OR, or);
+    }
+    
+    /**
+     * Combine the query condition and the seek condition.
+     * @param condition
+     * @param seek
+     * @return 
+     */
+    public static DBObject and(DBObject condition, DBObject seek){
+        if(condition == null || condition.keySet().isEmpty()){
+            return seek;
+        }
+        BasicDBList list = new BasicDBList();
+        list.add(condition);
+        list.add(seek);
+        return new BasicDBObject(Operator.AND, list);
+    }
+    
+    private static boolean sameSort(DBObject sort, BSONObject tokenSort){
+        Iterator<String> a = sort.keySet().iterator();
+        Iterator<String> b = tokenSort.keySet().iterator();
+        while(a.hasNext() && b.hasNext()){
+            String key = a.next();
+            if(!key.equals(b.next()) || isDescending(sort.get(key)) != isDescending(tokenSort.get(key))){
+                return false;
+            }
+        }
+        return !a.hasNext() && !b.hasNext();
+    }
+    
+    private static boolean isDescending(Object direction){
+        return (direction instanceof Number) && ((Number)direction).intValue() < 0;
+    }
+    
+    private static Object getValue(DBObject dbo, String key){
+        Object value = dbo;
+        for(String name : key.split("\\.")){
+            if(!(value instanceof DBObject)){
+                return null;
+            }
+            value = ((DBObject)value).get(name);
+        }
+        return value;
+    }
+    
+}
@@ -19,15 +19,12 @@ package com.bugull.mongo.utils;
 import com.bugull.mongo.annotations.Default;
 import com.bugull.mongo.annotations.Entity;
 import com.bugull.mongo.cache.ConstructorCache;
-import com.bugull.mongo.cache.FieldsCache;
-import com.bugull.mongo.decoder.Decoder;
-import com.bugull.mongo.decoder.DecoderFactory;
-import com.bugull.mongo.encoder.Encoder;
-import com.bugull.mongo.encoder.EncoderFactory;
-import com.mongodb.BasicDBObject;
+import com.bugull.mongo.cache.EntityPlanCache;
+import com.bugull.mongo.instrument.MappingProfiler;
+import com.bugull.mongo.instrument.MappingStats;
+import com.bugull.mongo.mapper.CascadeReadBatch;
 import com.mongodb.DBCursor;
 import com.mongodb.DBObject;
-import java.lang.reflect.Field;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -54,14 +51,7 @@ public final class MapperUtil {
             return null;
         }
         T obj = ConstructorCache.getInstance().create(clazz);
-        Field[] fields = FieldsCache.getInstance().get(clazz);
-        for(Field field : fields){
-            Decoder decoder = DecoderFactory.create(field, dbo);
-            if(decoder!=null && !decoder.isNullField()){
-                decoder.setWithoutCascade(withoutCascade);
-                decoder.decode(obj);
-            }
-        }
+        EntityPlanCache.getInstance().get(clazz).decode(obj, dbo, withoutCascade);
         return obj;
     }
     
@@ -79,36 +69,130 @@ public final class MapperUtil {
         if(obj == null){
             return null;
         }
-        Class<?> clazz = obj.getClass();
-        Field[] fields = FieldsCache.getInstance().get(clazz);
-        DBObject dbo = new BasicDBObject();
-        for(Field field : fields){
-            Encoder encoder = EncoderFactory.create(obj, field);
-            if(encoder!=null && !encoder.isNullField()){
-                encoder.setWithoutCascade(withoutCascade);
-                dbo.put(encoder.getFieldName(), encoder.encode());
-            }
-        }
-        return dbo;
+        return EntityPlanCache.getInstance().get(obj.getClass()).encode(obj, withoutCascade);
     }
     
     public static <T> List<T> toList(Class<T> clazz, DBCursor cursor){
         return toList(clazz, cursor, false);
     }
     
+    /**
+     * Convert all the documents of a cursor. 
+     * The cascade @Ref fields of the whole list are read by one $in query per entity class, see CascadeReadBatch.
+     * @param <T>
+     * @param clazz
+     * @param cursor
+     * @param withoutCascade
+     * @return 
+     */
     public static <T> List<T> toList(Class<T> clazz, DBCursor cursor, boolean withoutCascade){
+        if(MappingProfiler.getInstance().isEnabled()){
+            return toListProfiled(clazz, cursor, withoutCascade);
+        }
         List<T> list = new ArrayList<>();
+        CascadeReadBatch batch = CascadeReadBatch.open();
         try {
             while(cursor.hasNext()){
                 DBObject dbo = cursor.next();
                 list.add(fromDBObject(clazz, dbo, withoutCascade));
             }
+            if(batch != null){
+                batch.flush();
+            }
+        } finally {
+            cursor.close();
+            if(batch != null){
+                batch.close();
+            }
+        }
+        return list;
+    }
+    
+    /**
+     * Convert the documents which are already read to entities.
+     * @param <T>
+     * @param clazz
+     * @param list
+     * @param withoutCascade
+     * @return 
+     */
+    public static <T> List<T> toList(Class<T> clazz, List<DBObject> list, boolean withoutCascade){
+        MappingProfiler profiler = MappingProfiler.getInstance();
+        MappingStats stats = profiler.isEnabled() ? profiler.getStats(clazz) : null;
+        List<T> result = new ArrayList<>();
+        CascadeReadBatch batch = CascadeReadBatch.open();
+        try {
+            for(DBObject dbo : list){
+                if(stats != null){
+                    result.add(decodeProfiled(clazz, dbo, withoutCascade, stats));
+                }else{
+                    result.add(fromDBObject(clazz, dbo, withoutCascade));
+                }
+            }
+            if(batch != null){
+                flush(batch, clazz, stats);
+            }
+        } finally {
+            if(batch != null){
+                batch.close();
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Same as toList(), but records the time of fetching, decoding and cascade reading to MappingStats.
+     */
+    private static <T> List<T> toListProfiled(Class<T> clazz, DBCursor cursor, boolean withoutCascade){
+        MappingStats stats = MappingProfiler.getInstance().getStats(clazz);
+        List<T> list = new ArrayList<>();
+        CascadeReadBatch batch = CascadeReadBatch.open();
+        try {
+            while(true){
+                long start = System.nanoTime();
+                if(!cursor.hasNext()){
+                    break;
+                }
+                DBObject dbo = cursor.next();
+                stats.recordFetch(System.nanoTime() - start);
+                list.add(decodeProfiled(clazz, dbo, withoutCascade, stats));
+            }
+            if(batch != null){
+                flush(batch, clazz, stats);
+            }
         } finally {
             cursor.close();
+            if(batch != null){
+                batch.close();
+            }
         }
         return list;
     }
     
+    private static <T> T decodeProfiled(Class<T> clazz, DBObject dbo, boolean withoutCascade, MappingStats stats){
+        MappingProfiler profiler = MappingProfiler.getInstance();
+        long cascadeBefore = profiler.getThreadCascadeNanos();
+        long start = System.nanoTime();
+        T obj = fromDBObject(clazz, dbo, withoutCascade);
+        long cascadeNanos = profiler.getThreadCascadeNanos() - cascadeBefore;
+        stats.recordDecode(System.nanoTime() - start - cascadeNanos);
+        return obj;
+    }
+    
+    private static void flush(CascadeReadBatch batch, Class<?> clazz, MappingStats stats){
+        if(stats == null){
+            batch.flush();
+            return;
+        }
+        MappingProfiler profiler = MappingProfiler.getInstance();
+        long start = profiler.startCascade();
+        try{
+            batch.flush();
+        }finally{
+            profiler.endCascade(clazz, start);
+        }
+    }
+    
     /**
      * Get the name property of @Entity annotation. 
      * If the name property is not set, then return the class' name, in lower case type.
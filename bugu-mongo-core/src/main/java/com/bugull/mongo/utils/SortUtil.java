@@ -18,6 +18,14 @@ package com.bugull.mongo.utils;
 
 import com.mongodb.BasicDBObject;
 import com.mongodb.DBObject;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import org.bson.types.ObjectId;
 
 /**
  *
@@ -25,6 +33,9 @@ import com.mongodb.DBObject;
  */
 public final class SortUtil {
     
+    //the sort key of empty array, which is less than null
+    private static final Object EMPTY_ARRAY = new Object();
+    
     public static String asc(String key){
         return new StringBuilder().append("{").append(key).append(":1").append("}").toString();
     }
@@ -48,5 +59,206 @@ public final class SortUtil {
         }
         return BasicDBObject.parse(jsonString);
     }
+    
+    /**
+     * Get a comparator of documents, which has the same order as mongoDB sorts them by the sort spec. 
+     * Values of different types are ordered as mongoDB does: null, numbers, strings, objects, arrays, ObjectId, boolean, date. 
+     * An array is sorted by its smallest element in ascending order, and by its largest element in descending order. 
+     * Strings are compared by char, without collation.
+     * @param sort
+     * @return
+     */
+    public static Comparator<DBObject> getComparator(final DBObject sort) {
+        int size = sort.keySet().size();
+        final String[][] paths = new String[size][];
+        final boolean[] descs = new boolean[size];
+        int i = 0;
+        for(String key : sort.keySet()){
+            paths[i] = key.split("\\.");
+            descs[i] = Integer.parseInt(sort.get(key).toString()) < 0;
+            i++;
+        }
+        return new Comparator<DBObject>(){
+            @Override
+            public int compare(DBObject a, DBObject b) {
+                for(int i=0; i<paths.length; i++){
+                    boolean desc = descs[i];
+                    int result = compareValue(getSortKey(getValue(a, paths[i], 0), desc), getSortKey(getValue(b, paths[i], 0), desc));
+                    if(result != 0){
+                        return desc ? -result : result;
+                    }
+                }
+                return 0;
+            }
+        };
+    }
+    
+    /**
+     * Get the value which a field is sorted by. An array is sorted by its smallest element in ascending order, 
+     * and by its largest element in descending order. An empty array is less than null.
+     * @param value the field value
+     * @param desc
+     * @return 
+     */
+    public static Object getSortKey(Object value, boolean desc){
+        List list;
+        if(value instanceof List){
+            list = (List)value;
+        }else if(value instanceof Object[]){
+            list = Arrays.asList((Object[])value);
+        }else{
+            return value;
+        }
+        if(list.isEmpty()){
+            return EMPTY_ARRAY;
+        }
+        Object key = list.get(0);
+        for(Object o : list){
+            int result = compareValue(o, key);
+            if(desc ? result > 0 : result < 0){
+                key = o;
+            }
+        }
+        return key;
+    }
+    
+    /**
+     * Get the value of a dotted path. The values of the embedded documents in an array are returned as an array.
+     */
+    private static Object getValue(Object value, String[] names, int index){
+        if(index == names.length){
+            return value;
+        }
+        if(value instanceof List){
+            List list = (List)value;
+            String name = names[index];
+            if(name.matches("\\d+")){
+                int i = Integer.parseInt(name);
+                return i < list.size() ? getValue(list.get(i), names, index + 1) : null;
+            }
+            List<Object> values = new ArrayList<>();
+            for(Object o : list){
+                Object v = getValue(o, names, index);
+                if(v instanceof List){
+                    values.addAll((List)v);
+                }else{
+                    values.add(v);
+                }
+            }
+            return values.isEmpty() ? null : values;
+        }
+        if(!(value instanceof DBObject)){
+            return null;
+        }
+        return getValue(((DBObject)value).get(names[index]), names, index + 1);
+    }
+    
+    /**
+     * Compare two values, in the same order as mongoDB does.
+     * @param a
+     * @param b
+     * @return 
+     */
+    @SuppressWarnings("unchecked")
+    public static int compareValue(Object a, Object b){
+        int typeA = getTypeOrder(a);
+        int typeB = getTypeOrder(b);
+        if(typeA != typeB){
+            return Integer.compare(typeA, typeB);
+        }
+        if(a == null){
+            return 0;
+        }
+        if(a instanceof Number){
+            Number x = (Number)a;
+            Number y = (Number)b;
+            if((x instanceof Integer || x instanceof Long) && (y instanceof Integer || y instanceof Long)){
+                return Long.compare(x.longValue(), y.longValue());
+            }
+            return Double.compare(x.doubleValue(), y.doubleValue());
+        }
+        if(a instanceof List || a instanceof Object[]){
+            return compareArray(toList(a), toList(b));
+        }
+        if(a instanceof Map || a instanceof DBObject){
+            return compareDocument(toMap(a), toMap(b));
+        }
+        if(a instanceof Comparable && a.getClass() == b.getClass()){
+            return ((Comparable)a).compareTo(b);
+        }
+        return a.toString().compareTo(b.toString());
+    }
+    
+    /**
+     * Arrays are compared element by element, and the shorter one is less if all the elements are equal.
+     */
+    private static int compareArray(List a, List b){
+        int size = Math.min(a.size(), b.size());
+        for(int i=0; i<size; i++){
+            int result = compareValue(a.get(i), b.get(i));
+            if(result != 0){
+                return result;
+            }
+        }
+        return Integer.compare(a.size(), b.size());
+    }
+    
+    /**
+     * Embedded documents are compared by the fields in order: the type of value, the field name, then the value. 
+     * The one without more fields is less if all the fields are equal.
+     */
+    private static int compareDocument(Map<?, ?> a, Map<?, ?> b){
+        Iterator<? extends Map.Entry<?, ?>> x = a.entrySet().iterator();
+        Iterator<? extends Map.Entry<?, ?>> y = b.entrySet().iterator();
+        while(x.hasNext() && y.hasNext()){
+            Map.Entry<?, ?> ex = x.next();
+            Map.Entry<?, ?> ey = y.next();
+            int result = Integer.compare(getTypeOrder(ex.getValue()), getTypeOrder(ey.getValue()));
+            if(result != 0){
+                return result;
+            }
+            result = ex.getKey().toString().compareTo(ey.getKey().toString());
+            if(result != 0){
+                return result;
+            }
+            result = compareValue(ex.getValue(), ey.getValue());
+            if(result != 0){
+                return result;
+            }
+        }
+        return Boolean.compare(x.hasNext(), y.hasNext());
+    }
+    
+    private static List toList(Object value){
+        return value instanceof List ? (List)value : Arrays.asList((Object[])value);
+    }
+    
+    private static Map toMap(Object value){
+        return value instanceof Map ? (Map)value : ((DBObject)value).toMap();
+    }
+    
+    private static int getTypeOrder(Object value){
+        if(value == EMPTY_ARRAY){
+            return -1;
+        }else if(value == null){
+            return 0;
+        }else if(value instanceof Number){
+            return 1;
+        }else if(value instanceof String){
+            return 2;
+        }else if(value instanceof List || value instanceof Object[]){
+            return 4;
+        }else if(value instanceof Map || value instanceof DBObject){
+            return 3;
+        }else if(value instanceof ObjectId){
+            return 6;
+        }else if(value instanceof Boolean){
+            return 7;
+        }else if(value instanceof Date){
+            return 8;
+        }else{
+            return 5;
+        }
+    }
 
 }
@@ -22,6 +22,7 @@ import com.bugull.mongo.cache.DaoCache;
 import java.util.ArrayList;
 import java.util.List;
 import org.junit.Test;
+import static org.junit.Assert.*;
 
 /**
  *
@@ -84,4 +85,29 @@ public class CascadeTest extends ReplicaSetBaseTest {
         disconnectDB();
     }
     
+    //@Test
+    public void testMissingRef(){
+        connectDB();
+        
+        BuguDao<Node> dao = DaoCache.getInstance().get(Node.class);
+        
+        Node father = new Node();
+        father.setName("missing father");
+        Node child = new Node();
+        child.setName("orphan");
+        child.setFather(father);
+        dao.save(child);
+        dao.remove(father);
+        
+        //the referenced entity does not exist, so the field is null, both reading one and reading a list
+        Node one = dao.findOne(child.getId());
+        assertNull(one.getFather());
+        List<Node> list = dao.query().is("name", "orphan").results();
+        assertNull(list.get(0).getFather());
+        
+        dao.remove(child);
+        
+        disconnectDB();
+    }
+    
 }
@@ -0,0 +1,33 @@
+/*
+ * Copyright (c) www.bugull.com
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bugull.mongo.codec;
+
+import com.bugull.mongo.BuguDao;
+
+/**
+ *
+ * @author Frank Wen(xbwen@hotmail.com)
+ */
+public class BarDao extends BuguDao<Bar> {
+    
+    public BarDao(){
+        super(Bar.class);
+        //read and write Bar by EntityCodec
+        setEntityCodec(true);
+    }
+
+}
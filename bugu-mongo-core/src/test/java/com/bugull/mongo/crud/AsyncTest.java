@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) www.bugull.com
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bugull.mongo.crud;
+
+import com.bugull.mongo.BuguAsyncDao;
+import com.bugull.mongo.base.ReplicaSetBaseTest;
+import com.bugull.mongo.dao.OrderDao;
+import com.bugull.mongo.entity.Order;
+import com.bugull.mongo.utils.SortUtil;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import org.junit.Test;
+
+/**
+ *
+ * @author Frank Wen(xbwen@hotmail.com)
+ */
+public class AsyncTest extends ReplicaSetBaseTest {
+    
+    //@Test
+    public void testResultsAsync() throws Exception {
+        connectDB();
+        
+        OrderDao orderDao = new OrderDao();
+        BuguAsyncDao<Order> asyncDao = orderDao.async();
+        CompletableFuture<List<Order>> future = asyncDao.resultsAsync(orderDao.query().sort(SortUtil.desc("money")).pageNumber(1).pageSize(100), "user", "productList");
+        CompletableFuture<Long> count = asyncDao.countAsync(orderDao.query());
+        
+        List<Order> list = future.get();
+        for(Order order : list){
+            System.out.println("money: " + order.getMoney() + ", user: " + order.getUser().getUsername());
+        }
+        System.out.println("count: " + count.get());
+        
+        disconnectDB();
+    }
+    
+}
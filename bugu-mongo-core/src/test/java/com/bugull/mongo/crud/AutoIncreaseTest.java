@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) www.bugull.com
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bugull.mongo.crud;
+
+import com.bugull.mongo.base.ReplicaSetBaseTest;
+import com.bugull.mongo.dao.TicketDao;
+import com.bugull.mongo.entity.Ticket;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+/**
+ *
+ * @author Frank Wen(xbwen@hotmail.com)
+ */
+public class AutoIncreaseTest extends ReplicaSetBaseTest {
+    
+    //@Test
+    public void testInsert(){
+        connectDB();
+        
+        TicketDao dao = new TicketDao();
+        
+        //ids are handed out from a reserved block of 100
+        for(int i=0; i<10; i++){
+            Ticket t = new Ticket();
+            t.setTitle("single " + i);
+            dao.insert(t);
+            System.out.println("id: " + t.getId());
+        }
+        
+        //the list reserves its ids by one round trip, and is inserted by one batch
+        List<Ticket> list = new ArrayList<>();
+        for(int i=0; i<500; i++){
+            Ticket t = new Ticket();
+            t.setTitle("batch " + i);
+            list.add(t);
+        }
+        dao.insert(list);
+        System.out.println("first id: " + list.get(0).getId());
+        System.out.println("last id: " + list.get(list.size()-1).getId());
+        
+        disconnectDB();
+    }
+    
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) www.bugull.com
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bugull.mongo.crud;
+
+import com.bugull.mongo.BuguBulkResult;
+import com.bugull.mongo.BuguBulkWriter;
+import com.bugull.mongo.base.ReplicaSetBaseTest;
+import com.bugull.mongo.dao.ProductDao;
+import com.bugull.mongo.entity.Product;
+import org.junit.Test;
+
+/**
+ *
+ * @author Frank Wen(xbwen@hotmail.com)
+ */
+public class BulkWriteTest extends ReplicaSetBaseTest {
+    
+    //@Test
+    public void testMixedWrite(){
+        connectDB();
+        
+        ProductDao dao = new ProductDao();
+        BuguBulkWriter<Product> writer = dao.bulkWriter().ordered(false).batchSize(500);
+        for(int i=0; i<2000; i++){
+            Product p = new Product();
+            p.setName("bulk-" + i);
+            p.setPrice(10F);
+            writer.insert(p);
+            if(i % 10 == 0){
+                writer.update(p.getId(), dao.update().set("price", 20F));
+            }
+            if(i % 100 == 0){
+                writer.remove(p);
+            }
+        }
+        writer.remove(dao.query().is("price", 20F));
+        BuguBulkResult result = writer.flush();
+        System.out.println("flush: " + result.getFlushCount());
+        System.out.println("inserted: " + result.getInsertedCount());
+        System.out.println("modified: " + result.getModifiedCount());
+        System.out.println("removed: " + result.getRemovedCount());
+        
+        disconnectDB();
+    }
+    
+}
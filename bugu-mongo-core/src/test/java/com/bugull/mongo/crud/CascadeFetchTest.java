@@ -55,6 +55,48 @@ public class CascadeFetchTest extends ReplicaSetBaseTest {
         disconnectDB();
     }
     
+    //@Test
+    public void testFetchRefOfList(){
+        connectDB();
+        
+        //the users of all orders are read by one $in query
+        OrderDao orderDao = new OrderDao();
+        List<Order> orderList = orderDao.query().sort(SortUtil.desc("money")).pageNumber(1).pageSize(100).results();
+        BuguMapper.fetchCascade(orderList, "user");
+        for(Order order : orderList){
+            User user = order.getUser();
+            if(user != null){
+                System.out.println("username: " + user.getUsername());
+            }
+        }
+        
+        disconnectDB();
+    }
+    
+    //@Test
+    public void testFetchPathsOfList(){
+        connectDB();
+        
+        //every path is fetched level by level for the whole list, the independent paths run concurrently
+        OrderDao orderDao = new OrderDao();
+        List<Order> orderList = orderDao.query().sort(SortUtil.desc("money")).pageNumber(1).pageSize(500).results();
+        BuguMapper.fetchCascadeConcurrently(orderList, "user", "productList");
+        for(Order order : orderList){
+            User user = order.getUser();
+            if(user != null){
+                System.out.println("username: " + user.getUsername());
+            }
+            List<Product> productList = order.getProductList();
+            if(productList != null){
+                for(Product product : productList){
+                    System.out.println("product name: " + product.getName());
+                }
+            }
+        }
+        
+        disconnectDB();
+    }
+    
     //@Test
     public void testComplexRefList(){
         connectDB();
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) www.bugull.com
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bugull.mongo.crud;
+
+import com.bugull.mongo.BuguCursor;
+import com.bugull.mongo.base.ReplicaSetBaseTest;
+import com.bugull.mongo.dao.ProductDao;
+import com.bugull.mongo.entity.Product;
+import com.mongodb.DBObject;
+import java.util.concurrent.CountDownLatch;
+import java.util.stream.Stream;
+import org.junit.Test;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+/**
+ *
+ * @author Frank Wen(xbwen@hotmail.com)
+ */
+public class CursorTest extends ReplicaSetBaseTest {
+    
+    //@Test
+    public void testCursor(){
+        connectDB();
+        
+        ProductDao dao = new ProductDao();
+        try(BuguCursor<Product> cursor = dao.query().sortAsc("name").batchSize(100).noCursorTimeout(true).cursor()){
+            for(Product p : cursor){
+                System.out.println(p.getName());
+            }
+        }
+        
+        //the cursor is closed when limit is reached
+        BuguCursor<Product> cursor = dao.query().limit(2).cursor();
+        while(cursor.hasNext()){
+            System.out.println(cursor.next().getName());
+        }
+        System.out.println("closed: " + cursor.isClosed());
+        
+        disconnectDB();
+    }
+    
+    //@Test
+    public void testStream(){
+        connectDB();
+        
+        ProductDao dao = new ProductDao();
+        try(Stream<Product> stream = dao.query().batchSize(100).stream()){
+            double total = stream.filter(p -> p.getPrice() != null).mapToDouble(p -> p.getPrice()).sum();
+            System.out.println("total price: " + total);
+        }
+        
+        try(Stream<DBObject> stream = dao.aggregate().group("{_id:'$name', count:{$sum:1}}").batchSize(100).stream()){
+            stream.forEach(dbo -> System.out.println(dbo));
+        }
+        
+        disconnectDB();
+    }
+    
+    //@Test
+    public void testPublisher() throws Exception {
+        connectDB();
+        
+        ProductDao dao = new ProductDao();
+        final CountDownLatch latch = new CountDownLatch(1);
+        //a slow subscriber, which requests 10 products each time
+        dao.query().sortAsc("name").batchSize(10).publisher().subscribe(new Subscriber<Product>(){
+            
+            private Subscription subscription;
+            private int count;
+            
+            @Override
+            public void onSubscribe(Subscription s) {
+                subscription = s;
+                subscription.request(10);
+            }
+
+            @Override
+            public void onNext(Product p) {
+                System.out.println(p.getName());
+                if(++count % 10 == 0){
+                    subscription.request(10);
+                }
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                t.printStackTrace();
+                latch.countDown();
+            }
+
+            @Override
+            public void onComplete() {
+                System.out.println("total: " + count);
+                latch.countDown();
+            }
+        });
+        latch.await();
+        
+        disconnectDB();
+    }
+    
+}
@@ -17,6 +17,8 @@
 package com.bugull.mongo.crud;
 
 import com.bugull.mongo.BuguMapper;
+import com.bugull.mongo.BuguPage;
+import com.bugull.mongo.BuguQuery;
 import com.bugull.mongo.base.ReplicaSetBaseTest;
 import com.bugull.mongo.dao.GroupContactDao;
 import com.bugull.mongo.dao.GroupProductDao;
@@ -170,5 +172,25 @@ public class QueryTest extends ReplicaSetBaseTest {
         
         disconnectDB();
     }
+    
+    //@Test
+    public void testKeysetPage(){
+        connectDB();
+        
+        UserDao userDao = new UserDao();
+        BuguQuery<User> query = userDao.query().greaterThan("age", 18).sort(SortUtil.desc("age")).returnFields("username", "age");
+        String token = null;
+        int pageNum = 0;
+        do{
+            BuguPage<User> page = query.keysetPage(token, 10);
+            pageNum++;
+            for(User user : page.getList()){
+                System.out.println("page " + pageNum + ": " + user.getUsername() + " " + user.getAge());
+            }
+            token = page.getNextToken();
+        }while(token != null);
+        
+        disconnectDB();
+    }
 
 }
@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) www.bugull.com
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bugull.mongo.crud;
+
+import com.bugull.mongo.BuguDao;
+import com.bugull.mongo.BuguMapper;
+import com.bugull.mongo.BuguSession;
+import com.bugull.mongo.base.ReplicaSetBaseTest;
+import com.bugull.mongo.cache.DaoCache;
+import com.bugull.mongo.cascade.Node;
+import com.bugull.mongo.dao.OrderDao;
+import com.bugull.mongo.dao.UserDao;
+import com.bugull.mongo.entity.Order;
+import com.bugull.mongo.entity.User;
+import java.util.Arrays;
+import java.util.List;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import org.junit.Test;
+
+/**
+ *
+ * @author Frank Wen(xbwen@hotmail.com)
+ */
+public class SessionTest extends ReplicaSetBaseTest {
+    
+    //@Test
+    public void testIdentity(){
+        connectDB();
+        
+        UserDao userDao = new UserDao();
+        User frank = userDao.query().is("username", "frank").result();
+        
+        try(BuguSession session = BuguSession.open()){
+            User u1 = userDao.findOne(frank.getId());
+            User u2 = userDao.findOne(frank.getId());
+            System.out.println("same object: " + (u1 == u2));
+            
+            OrderDao orderDao = new OrderDao();
+            List<Order> orderList = orderDao.query().is("user", frank).results();
+            BuguMapper.fetchCascade(orderList, "user");
+            for(Order order : orderList){
+                System.out.println("same user: " + (order.getUser() == u1));
+            }
+            
+            //write through the dao removes the entity from session
+            userDao.update().inc("age", 1).execute(u1);
+            User u3 = userDao.findOne(frank.getId());
+            System.out.println("read again: " + (u3 != u1));
+            
+            System.out.println("hit: " + session.getHitCount() + ", miss: " + session.getMissCount());
+        }
+        
+        disconnectDB();
+    }
+    
+    //@Test
+    public void testConcurrentIdentity(){
+        connectDB();
+        
+        BuguDao<Node> dao = DaoCache.getInstance().get(Node.class);
+        Node shared = new Node();
+        shared.setName("shared");
+        dao.save(shared);
+        Node child = new Node();
+        child.setName("child");
+        child.setFather(shared);
+        dao.save(child);
+        Node parent = new Node();
+        parent.setName("parent");
+        parent.setChildren(Arrays.asList(shared));
+        dao.save(parent);
+        
+        try(BuguSession session = BuguSession.open()){
+            List<Node> list = Arrays.asList(dao.findOne(child.getId()), dao.findOne(parent.getId()));
+            //the two paths are fetched by different threads, and resolve to the same id
+            BuguMapper.fetchCascadeConcurrently(list, "father", "children");
+            Node father = list.get(0).getFather();
+            Node first = list.get(1).getChildren().get(0);
+            assertEquals(shared.getId(), father.getId());
+            assertSame(father, first);
+        }
+        
+        dao.remove(shared);
+        dao.remove(child);
+        dao.remove(parent);
+        
+        disconnectDB();
+    }
+    
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) www.bugull.com
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bugull.mongo.instrument;
+
+import com.bugull.mongo.base.ReplicaSetBaseTest;
+import com.bugull.mongo.dao.UserDao;
+import com.bugull.mongo.entity.User;
+import java.util.List;
+import java.util.Map.Entry;
+import org.HdrHistogram.Histogram;
+import org.junit.Test;
+
+/**
+ *
+ * @author Frank Wen(xbwen@hotmail.com)
+ */
+public class InstrumentTest extends ReplicaSetBaseTest {
+    
+    //@Test
+    public void testHistogram(){
+        HistogramInstrumentation histogram = new HistogramInstrumentation();
+        Instrumentor.getInstance().add(histogram);
+        Instrumentor.getInstance().add(new SlowQueryLogger(100));
+        
+        connectDB();
+        
+        UserDao userDao = new UserDao();
+        for(int i=0; i<100; i++){
+            List<User> list = userDao.query().greaterThan("age", i).results();
+        }
+        
+        for(Entry<String, Histogram> entry : histogram.getHistograms().entrySet()){
+            Histogram h = entry.getValue();
+            System.out.println(entry.getKey() + " count: " + h.getTotalCount() + ", p50: " + h.getValueAtPercentile(50) + "us, p99: " + h.getValueAtPercentile(99) + "us");
+        }
+        
+        disconnectDB();
+    }
+    
+    //@Test
+    public void testMappingProfiler(){
+        MappingProfiler.getInstance().setEnabled(true);
+        
+        connectDB();
+        
+        UserDao userDao = new UserDao();
+        List<User> list = userDao.findAll();
+        
+        for(MappingStats stats : MappingProfiler.getInstance().getAllStats()){
+            System.out.println(stats.getEntityClass() + " fetch: " + stats.getFetchTimeMillis() + "ms, decode: " + stats.getDecodeTimeMillis() 
+                    + "ms, cascade: " + stats.getCascadeTimeMillis() + "ms, fields: " + stats.getFieldCounts());
+        }
+        
+        disconnectDB();
+    }
+    
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) www.bugull.com
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bugull.mongo.parallel;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ *
+ * @author Frank Wen(xbwen@hotmail.com)
+ */
+public class BuguExecutorTest {
+    
+    @Test
+    public void testNested() throws Exception {
+        final BuguExecutor executor = BuguExecutor.create(1, false);
+        assertFalse(executor.isNested());
+        //the only thread waits for its subtask, which must run inline
+        Future<Integer> future = executor.submit(new Callable<Integer>(){
+            @Override
+            public Integer call() throws Exception {
+                assertTrue(executor.isNested());
+                Future<Integer> sub = executor.submit(new Callable<Integer>(){
+                    @Override
+                    public Integer call(){
+                        return 1;
+                    }
+                });
+                return sub.get(1, TimeUnit.SECONDS) + 1;
+            }
+        });
+        assertEquals(2, (int)future.get(5, TimeUnit.SECONDS));
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        assertEquals(2, executor.getCompletedCount());
+    }
+    
+}
@@ -18,13 +18,18 @@ package com.bugull.mongo.parallel;
 
 import com.bugull.mongo.BuguAggregation;
 import com.bugull.mongo.BuguDao;
+import com.bugull.mongo.BuguFramework;
 import com.bugull.mongo.BuguQuery;
+import com.bugull.mongo.BuguScanner;
 import com.bugull.mongo.base.ReplicaSetBaseTest;
 import com.bugull.mongo.cache.DaoCache;
 import com.bugull.mongo.utils.SortUtil;
 import com.mongodb.DBObject;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 import org.junit.Test;
 
 /**
@@ -109,4 +114,48 @@ public class ParallelTest extends ReplicaSetBaseTest {
         disconnectDB();
     }
     
+    //@Test
+    public void testParallelQueryTimeout(){
+        connectDB();
+        
+        BuguDao<LargeData> dao = new BuguDao(LargeData.class);
+        BuguAggregation<LargeData> agg1 = dao.aggregate().group("{_id:null, maxValue:{$max:'$randomValue'}}");
+        BuguAggregation<LargeData> agg2 = dao.aggregate().group("{_id:null, minValue:{$min:'$randomValue'}}");
+        //the other query is cancelled if one fails or the timeout elapses
+        List<Iterable> list = new ParallelQueryExecutor().execute(5, TimeUnit.SECONDS, agg1, agg2);
+        System.out.println("result size: " + list.size());
+        
+        BuguExecutor executor = BuguFramework.getInstance().getExecutor();
+        System.out.println("virtual threads: " + executor.isVirtualThreads());
+        System.out.println("completed: " + executor.getCompletedCount() + ", failed: " + executor.getFailedCount());
+        
+        disconnectDB();
+    }
+    
+    //@Test
+    public void testParallelScan(){
+        connectDB();
+        
+        BuguDao<LargeData> dao = new BuguDao(LargeData.class);
+        final AtomicLong count = new AtomicLong();
+        BuguScanner<LargeData> scanner = dao.scanner().partitions(8).split(BuguScanner.Split.OBJECT_ID_TIME);
+        scanner.progressListener(new Consumer<BuguScanner.Partition>(){
+            @Override
+            public void accept(BuguScanner.Partition p){
+                if(p.isFinished()){
+                    System.out.println("partition " + p.getIndex() + " finished, scanned: " + p.getScanned());
+                }
+            }
+        });
+        scanner.scan(new Consumer<LargeData>(){
+            @Override
+            public void accept(LargeData data){
+                count.incrementAndGet();
+            }
+        });
+        System.out.println("scanned: " + count.get() + ", count: " + dao.count());
+        
+        disconnectDB();
+    }
+    
 }
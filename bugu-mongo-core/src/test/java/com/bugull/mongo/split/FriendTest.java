@@ -16,7 +16,10 @@
 
 package com.bugull.mongo.split;
 
+import com.bugull.mongo.BuguQuery;
+import com.bugull.mongo.BuguSplitQuery;
 import com.bugull.mongo.base.MongosConnectionTest;
+import com.bugull.mongo.utils.SortUtil;
 import java.util.List;
 import org.junit.Test;
 
@@ -71,5 +74,22 @@ public class FriendTest extends MongosConnectionTest {
         
         disconnectDB();
     }
+    
+    //@Test
+    public void testSplitQuery(){
+        connectDB();
+        
+        FriendDao dao = new FriendDao();
+        BuguQuery<Friend> query = dao.query().sort(SortUtil.asc("name")).pageNumber(1).pageSize(10);
+        BuguSplitQuery<Friend> splitQuery = dao.splitQuery("Zhejiang", "Shanghai", "Beijing");
+        System.out.println("suffixes: " + splitQuery.getSuffixes());
+        List<Friend> list = splitQuery.results(query);
+        for(Friend f : list){
+            System.out.println("name: " + f.getName() + ", province: " + f.getProvince());
+        }
+        System.out.println("count: " + splitQuery.count(query));
+        
+        disconnectDB();
+    }
 
 }
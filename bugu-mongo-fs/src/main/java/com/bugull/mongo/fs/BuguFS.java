@@ -17,7 +17,9 @@
 package com.bugull.mongo.fs;
 
 import com.bugull.mongo.BuguFramework;
+import com.bugull.mongo.BuguPage;
 import com.bugull.mongo.annotations.Default;
+import com.bugull.mongo.utils.KeysetUtil;
 import com.bugull.mongo.utils.Operator;
 import com.bugull.mongo.utils.SortUtil;
 import com.mongodb.BasicDBObject;
@@ -172,6 +174,29 @@ public class BuguFS {
         return toFileList(cursor);
     }
     
+    /**
+     * Find one page of files by keyset pagination, without skip.
+     * @param query
+     * @param orderBy
+     * @param token the token of previous page, null for the first page
+     * @param pageSize
+     * @return 
+     */
+    public BuguPage<GridFSDBFile> find(DBObject query, String orderBy, String token, int pageSize){
+        DBObject sort = KeysetUtil.getSort(orderBy);
+        if(token != null){
+            query = KeysetUtil.and(query, KeysetUtil.getSeekCondition(sort, token));
+        }
+        DBCursor cursor = files.find(query).sort(sort).limit(pageSize + 1);
+        List<GridFSDBFile> list = toFileList(cursor);
+        String nextToken = null;
+        if(list.size() > pageSize){
+            list = list.subList(0, pageSize);
+            nextToken = KeysetUtil.getToken(sort, list.get(pageSize - 1));
+        }
+        return new BuguPage<GridFSDBFile>(list, nextToken);
+    }
+    
     public void rename(String oldName, String newName){
         DBObject query = new BasicDBObject(FILENAME, oldName);
         DBObject dbo = files.findOne(query);